@@ -0,0 +1,87 @@
+package com.codegik.gitflow.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.lib.Ref;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.codegik.gitflow.core.impl.DefaultGitFlow;
+import com.codegik.gitflow.core.impl.DefaultGitFlowPattern;
+
+
+/**
+ * Branch lookups on repositories with many remote feature branches: findBranch and replaceAll
+ *
+ * @author Inacio G Klassmann
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BranchBenchmark {
+
+	@Param({"1000", "10000", "100000"})
+	private int features;
+
+	@Param({"100"})
+	private int releases;
+
+	private SyntheticRepository repository;
+	private DefaultGitFlow gitFlow;
+	private String branchName;
+	private Ref branchRef;
+
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		repository 	= new SyntheticRepository(0, releases, features);
+		gitFlow 	= new DefaultGitFlow(new DefaultGitFlowPattern(), new QuietLog(), repository.getDirectory());
+		branchName 	= SyntheticRepository.buildFeatureName(features / 2, releases);
+
+		gitFlow.setGit(repository.getGit());
+		branchRef = gitFlow.findBranch(branchName);
+	}
+
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		gitFlow.close();
+		repository.delete();
+	}
+
+
+	@Benchmark
+	public Ref findBranch() throws Exception {
+		return gitFlow.findBranch(branchName);
+	}
+
+
+	/**
+	 * Lookup after a push or pull, when the snapshot of branches is taken again
+	 */
+	@Benchmark
+	public Ref findBranchAfterInvalidate() throws Exception {
+		gitFlow.invalidateRefSnapshot();
+		return gitFlow.findBranch(branchName);
+	}
+
+
+	@Benchmark
+	public String replaceAll() {
+		return gitFlow.replaceAll(branchRef);
+	}
+}
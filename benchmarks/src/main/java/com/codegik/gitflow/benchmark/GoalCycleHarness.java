@@ -0,0 +1,338 @@
+package com.codegik.gitflow.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.settings.Settings;
+import org.codehaus.mojo.versions.api.PomHelper;
+import org.codehaus.plexus.util.cli.Commandline;
+
+import com.codegik.gitflow.command.CommandExecutor;
+import com.codegik.gitflow.command.CommandOutput;
+import com.codegik.gitflow.core.GitFlowMojo;
+import com.codegik.gitflow.core.Statistics;
+import com.codegik.gitflow.mojo.FinishDevelopmentMojo;
+import com.codegik.gitflow.mojo.FinishHotfixMojo;
+import com.codegik.gitflow.mojo.FinishReleaseMojo;
+import com.codegik.gitflow.mojo.InitMojo;
+import com.codegik.gitflow.mojo.PublishReleaseMojo;
+import com.codegik.gitflow.mojo.StartDevelopmentMojo;
+import com.codegik.gitflow.mojo.StartHotfixMojo;
+import com.codegik.gitflow.mojo.StartReleaseMojo;
+
+
+/**
+ * Run the whole cycle of goals in process against a synthetic project whose origin is a local bare repository
+ * For each goal the wall time, the number of forked processes and the number of network operations are recorded
+ * and compared with the baselines.
+ *
+ * System properties:
+ * modules - Number of modules of synthetic project (default 5)
+ * gitTransport - jgit or git (default jgit)
+ * build - false to skip the maven builds of goals (default true)
+ * offline - true to build the synthetic project offline (default false)
+ * baselines - File of baselines (default e2e-baselines.properties)
+ * record - true to write the results as new baselines (default false)
+ * tolerance - Accepted increase of wall time over the baseline (default 0.5 = 50%)
+ * results - File of results in JSON (default e2e-results.json)
+ * trace - true to write the trace of each goal into e2e-trace-<goal>.json (default false)
+ *
+ * @author Inacio G Klassmann
+ */
+public class GoalCycleHarness {
+	private static final String WALL_MILLIS 		= "wallMillis";
+	private static final String FORKED_PROCESSES 	= "forkedProcesses";
+	private static final String NETWORK_OPERATIONS 	= "networkOperations";
+
+	private final SyntheticProject project;
+	private final Log log;
+	private final String gitTransport;
+	private final boolean build;
+	private final boolean offline;
+	private final Map<String, Map<String, Long>> results = new LinkedHashMap<String, Map<String, Long>>();
+
+
+	public GoalCycleHarness(SyntheticProject project, Log log, String gitTransport, boolean build, boolean offline) {
+		this.project 		= project;
+		this.log 			= log;
+		this.gitTransport 	= gitTransport;
+		this.build 			= build;
+		this.offline 		= offline;
+	}
+
+
+	public static void main(String[] args) throws Exception {
+		int modules 		= Integer.parseInt(System.getProperty("modules", "5"));
+		File baselines 		= new File(System.getProperty("baselines", "e2e-baselines.properties"));
+		File resultsFile 	= new File(System.getProperty("results", "e2e-results.json"));
+		double tolerance 	= Double.parseDouble(System.getProperty("tolerance", "0.5"));
+		SyntheticProject project = new SyntheticProject(modules);
+
+		try {
+			GoalCycleHarness harness = new GoalCycleHarness(
+					project,
+					new SystemStreamLog(),
+					System.getProperty("gitTransport", "jgit"),
+					Boolean.parseBoolean(System.getProperty("build", "true")),
+					Boolean.getBoolean("offline"));
+
+			harness.runCycle();
+			harness.writeResults(resultsFile);
+
+			if (Boolean.getBoolean("record")) {
+				harness.writeBaselines(baselines);
+				System.out.println("Baselines written to " + baselines.getAbsolutePath());
+			} else if (!harness.compare(baselines, tolerance)) {
+				System.exit(1);
+			}
+		} finally {
+			project.delete();
+		}
+	}
+
+
+	/**
+	 * init -> start-release -> start-development -> finish-development -> finish-release -> publish-release -> start-hotfix -> finish-hotfix
+	 *
+	 * @throws Exception
+	 */
+	public void runCycle() throws Exception {
+		run("init", new InitMojo());
+		run("start-release", new StartReleaseMojo(), "version", "1.1");
+		run("start-development", new StartDevelopmentMojo(), "fullBranchName", "feature/1.1/task1");
+
+		project.commitChange();
+		run("finish-development", new FinishDevelopmentMojo(), "branchName", "feature/1.1/task1", "keepBranch", Boolean.TRUE);
+
+		project.checkout("develop");
+		run("finish-release", new FinishReleaseMojo(), "version", "1.1");
+		run("publish-release", new PublishReleaseMojo(), "version", "1.1");
+
+		project.checkout("master");
+		run("start-hotfix", new StartHotfixMojo(), "branchName", "fix1");
+
+		project.commitChange();
+		run("finish-hotfix", new FinishHotfixMojo(), "branchName", "fix1");
+	}
+
+
+	private void run(String goal, GitFlowMojo mojo, Object... parameters) throws Exception {
+		log.info("==== gitflow:" + goal);
+
+		configure(mojo);
+
+		if (Boolean.getBoolean("trace")) {
+			mojo.setTrace(Boolean.TRUE);
+			mojo.setTraceFile(new File("e2e-trace-" + goal + ".json"));
+		}
+
+		for (int i = 0; i < parameters.length; i += 2) {
+			setParameter(mojo, (String) parameters[i], parameters[i + 1]);
+		}
+
+		Statistics.reset();
+		long start = System.nanoTime();
+
+		mojo.execute();
+
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		result.put(WALL_MILLIS, (System.nanoTime() - start) / 1000000L);
+		result.put(FORKED_PROCESSES, (long) Statistics.getForkedProcesses());
+		result.put(NETWORK_OPERATIONS, (long) Statistics.getNetworkOperations());
+		results.put(goal, result);
+
+		log.info("==== gitflow:" + goal + " " + result);
+	}
+
+
+	/**
+	 * Inject the parameters that maven would inject
+	 */
+	private void configure(GitFlowMojo mojo) throws Exception {
+		Model model 			= PomHelper.getRawModel(project.getPomFile());
+		MavenProject mavenProject = new MavenProject(model);
+		Settings settings 		= new Settings();
+
+		mavenProject.setFile(project.getPomFile());
+		settings.setOffline(offline);
+
+		mojo.setLog(log);
+		mojo.setProject(mavenProject);
+		mojo.setSettings(settings);
+		mojo.setSkipTests(Boolean.TRUE);
+		mojo.setGitTransport(gitTransport);
+		mojo.setBuildCache(Boolean.TRUE);
+
+		if (!build) {
+			mojo.setMvnExecutor(new SkippedCommandExecutor(log));
+		}
+	}
+
+
+	private void setParameter(Object mojo, String name, Object value) throws Exception {
+		for (Class<?> type = mojo.getClass(); type != null; type = type.getSuperclass()) {
+			try {
+				Field field = type.getDeclaredField(name);
+				field.setAccessible(true);
+				field.set(mojo, value);
+				return;
+			} catch (NoSuchFieldException e) {
+				continue;
+			}
+		}
+
+		throw new IllegalArgumentException("Parameter " + name + " not found on " + mojo.getClass().getName());
+	}
+
+
+	/**
+	 * Compare the results with the baselines, forked processes and network operations must not increase
+	 * and wall time must not increase more than tolerance
+	 *
+	 * @return true if there is no regression
+	 */
+	public boolean compare(File baselinesFile, double tolerance) throws IOException {
+		if (!baselinesFile.isFile()) {
+			System.out.println("Baselines " + baselinesFile.getAbsolutePath() + " not found, run with -Drecord=true to create them");
+			printResults(null);
+			return true;
+		}
+
+		Properties baselines = new Properties();
+		InputStream input = new FileInputStream(baselinesFile);
+
+		try {
+			baselines.load(input);
+		} finally {
+			input.close();
+		}
+
+		List<String> regressions = new ArrayList<String>();
+		printResults(baselines);
+
+		for (Map.Entry<String, Map<String, Long>> goal : results.entrySet()) {
+			for (Map.Entry<String, Long> metric : goal.getValue().entrySet()) {
+				String baseline = baselines.getProperty(goal.getKey() + "." + metric.getKey());
+
+				if (baseline == null) {
+					continue;
+				}
+
+				double limit = Long.parseLong(baseline) * (WALL_MILLIS.equals(metric.getKey()) ? 1 + tolerance : 1);
+
+				if (metric.getValue() > limit) {
+					regressions.add(goal.getKey() + " " + metric.getKey() + ": " + metric.getValue() + " > " + baseline);
+				}
+			}
+		}
+
+		for (String regression : regressions) {
+			System.out.println("REGRESSION " + regression);
+		}
+
+		return regressions.isEmpty();
+	}
+
+
+	private void printResults(Properties baselines) {
+		System.out.println(String.format("%-20s %16s %16s %20s", "goal", WALL_MILLIS, FORKED_PROCESSES, NETWORK_OPERATIONS));
+
+		for (Map.Entry<String, Map<String, Long>> goal : results.entrySet()) {
+			List<String> columns = new ArrayList<String>();
+
+			for (Map.Entry<String, Long> metric : goal.getValue().entrySet()) {
+				String baseline = baselines == null ? null : baselines.getProperty(goal.getKey() + "." + metric.getKey());
+				columns.add(metric.getValue() + (baseline == null ? "" : " (" + baseline + ")"));
+			}
+
+			System.out.println(String.format("%-20s %16s %16s %20s", goal.getKey(), columns.get(0), columns.get(1), columns.get(2)));
+		}
+	}
+
+
+	/**
+	 * Write the results as baselines, in the order of goals
+	 */
+	public void writeBaselines(File baselinesFile) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(baselinesFile), "ISO-8859-1");
+
+		try {
+			writer.write("# Baselines of GoalCycleHarness: gitTransport=" + gitTransport + ", build=" + build + "\n");
+
+			for (Map.Entry<String, Map<String, Long>> goal : results.entrySet()) {
+				for (Map.Entry<String, Long> metric : goal.getValue().entrySet()) {
+					writer.write(goal.getKey() + "." + metric.getKey() + "=" + metric.getValue() + "\n");
+				}
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+
+	public void writeResults(File resultsFile) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(resultsFile), "UTF-8");
+
+		try {
+			writer.write("[\n");
+			int goals = 0;
+
+			for (Map.Entry<String, Map<String, Long>> goal : results.entrySet()) {
+				writer.write(goals++ > 0 ? ",\n" : "");
+				writer.write("  {\"goal\": \"" + goal.getKey() + "\", \"gitTransport\": \"" + gitTransport + "\", \"build\": " + build);
+
+				for (Map.Entry<String, Long> metric : goal.getValue().entrySet()) {
+					writer.write(", \"" + metric.getKey() + "\": " + metric.getValue());
+				}
+
+				writer.write("}");
+			}
+
+			writer.write("\n]\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+
+	/**
+	 * Executor used when the builds are skipped, nothing is forked
+	 */
+	private static class SkippedCommandExecutor extends CommandExecutor {
+		private final Log log;
+
+		private SkippedCommandExecutor(Log log) {
+			this.log = log;
+		}
+
+		@Override
+		public CommandOutput execute(String... args) throws Exception {
+			return new CommandOutput(0);
+		}
+
+		@Override
+		protected Commandline getCommandline() {
+			return null;
+		}
+
+		@Override
+		protected Log getLog() {
+			return log;
+		}
+	}
+}
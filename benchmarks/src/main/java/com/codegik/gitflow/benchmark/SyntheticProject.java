@@ -0,0 +1,189 @@
+package com.codegik.gitflow.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.util.FileUtils;
+
+
+/**
+ * Throw-away multi-module maven project cloned from a local bare repository
+ * The origin is accessed with file:// transport, so the goals push and fetch like against a real server.
+ * Each module depends on the previous one, so version updates also rewrite dependencies between modules.
+ *
+ * @author Inacio G Klassmann
+ */
+public class SyntheticProject {
+	public static final String GROUP_ID 		= "com.codegik.gitflow.synthetic";
+	public static final String FIRST_VERSION 	= "0.0.1-SNAPSHOT";
+
+	private final File directory;
+	private final File origin;
+	private final File workTree;
+	private final int modules;
+	private Git git;
+	private int changes;
+
+
+	/**
+	 * Create the origin and clone it
+	 *
+	 * @param modules - Number of modules
+	 * @throws Exception
+	 */
+	public SyntheticProject(int modules) throws Exception {
+		this.modules 	= modules;
+		this.directory 	= File.createTempFile("gitflow-e2e", "");
+		this.origin 	= new File(directory, "origin.git");
+		this.workTree 	= new File(directory, "work");
+
+		FileUtils.delete(directory);
+		FileUtils.mkdirs(directory);
+
+		Git.init().setBare(true).setDirectory(origin).call().close();
+
+		git = Git.cloneRepository().setURI(origin.toURI().toString()).setDirectory(workTree).call();
+
+		writeRootPom();
+
+		for (int i = 1; i <= modules; i++) {
+			writeModule(i);
+		}
+
+		write(new File(workTree, ".gitignore"), "target/\n");
+
+		git.add().addFilepattern(".").call();
+		git.commit().setMessage("Synthetic project with " + modules + " modules").call();
+		git.push().setRemote("origin").add("master").call();
+	}
+
+
+	private void writeRootPom() throws IOException {
+		StringBuilder pom = new StringBuilder();
+		pom.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		pom.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+		pom.append("\t<modelVersion>4.0.0</modelVersion>\n");
+		pom.append("\t<groupId>").append(GROUP_ID).append("</groupId>\n");
+		pom.append("\t<artifactId>synthetic</artifactId>\n");
+		pom.append("\t<version>").append(FIRST_VERSION).append("</version>\n");
+		pom.append("\t<packaging>pom</packaging>\n\n");
+		pom.append("\t<properties>\n");
+		pom.append("\t\t<project.build.sourceEncoding>UTF-8</project.build.sourceEncoding>\n");
+		pom.append("\t\t<maven.compiler.source>1.8</maven.compiler.source>\n");
+		pom.append("\t\t<maven.compiler.target>1.8</maven.compiler.target>\n");
+		pom.append("\t</properties>\n\n");
+		pom.append("\t<modules>\n");
+
+		for (int i = 1; i <= modules; i++) {
+			pom.append("\t\t<module>").append(getModuleName(i)).append("</module>\n");
+		}
+
+		pom.append("\t</modules>\n");
+		pom.append("</project>\n");
+
+		write(new File(workTree, "pom.xml"), pom.toString());
+	}
+
+
+	private void writeModule(int module) throws IOException {
+		File moduleDir 		= new File(workTree, getModuleName(module));
+		StringBuilder pom 	= new StringBuilder();
+
+		pom.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		pom.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+		pom.append("\t<modelVersion>4.0.0</modelVersion>\n");
+		pom.append("\t<parent>\n");
+		pom.append("\t\t<groupId>").append(GROUP_ID).append("</groupId>\n");
+		pom.append("\t\t<artifactId>synthetic</artifactId>\n");
+		pom.append("\t\t<version>").append(FIRST_VERSION).append("</version>\n");
+		pom.append("\t</parent>\n");
+		pom.append("\t<artifactId>").append(getModuleName(module)).append("</artifactId>\n");
+
+		if (module > 1) {
+			pom.append("\n\t<dependencies>\n");
+			pom.append("\t\t<dependency>\n");
+			pom.append("\t\t\t<groupId>").append(GROUP_ID).append("</groupId>\n");
+			pom.append("\t\t\t<artifactId>").append(getModuleName(module - 1)).append("</artifactId>\n");
+			pom.append("\t\t\t<version>").append(FIRST_VERSION).append("</version>\n");
+			pom.append("\t\t</dependency>\n");
+			pom.append("\t</dependencies>\n");
+		}
+
+		pom.append("</project>\n");
+
+		write(new File(moduleDir, "pom.xml"), pom.toString());
+		writeSource(module, 0);
+	}
+
+
+	private void writeSource(int module, int change) throws IOException {
+		String className 	= "Module" + module;
+		File source 		= new File(workTree, getModuleName(module) + "/src/main/java/synthetic/" + className + ".java");
+
+		write(source, "package synthetic;\n\npublic class " + className + " {\n\tpublic static final int CHANGE = " + change + ";\n}\n");
+	}
+
+
+	/**
+	 * Change the source of first module and push it to current branch, like a developer working on a branch
+	 *
+	 * @throws Exception
+	 */
+	public void commitChange() throws Exception {
+		String branch = git.getRepository().getBranch();
+
+		writeSource(1, ++changes);
+
+		git.add().addFilepattern(".").call();
+		git.commit().setMessage("Change " + changes + " on " + branch).call();
+		git.push().setRemote("origin").add(branch).call();
+	}
+
+
+	public void checkout(String branchName) throws Exception {
+		git.checkout().setName(branchName).call();
+	}
+
+
+	public String getModuleName(int module) {
+		return "module" + module;
+	}
+
+
+	public File getWorkTree() {
+		return workTree;
+	}
+
+
+	public File getPomFile() {
+		return new File(workTree, "pom.xml");
+	}
+
+
+	public Git getGit() {
+		return git;
+	}
+
+
+	public void delete() throws IOException {
+		git.close();
+		FileUtils.delete(directory, FileUtils.RECURSIVE | FileUtils.RETRY);
+	}
+
+
+	private void write(File file, String content) throws IOException {
+		file.getParentFile().mkdirs();
+
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+}
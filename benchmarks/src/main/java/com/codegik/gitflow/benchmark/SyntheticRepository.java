@@ -0,0 +1,117 @@
+package com.codegik.gitflow.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.util.FileUtils;
+
+
+/**
+ * Throw-away repository with many tags and branches pointing to one commit
+ * The refs are written straight into packed-refs, so creating 100k tags takes a few seconds.
+ * Tags are spread over release lines (Ex: 1.0.0, 1.1.0, ..., 1.0.1) and feature branches are remote branches of release lines.
+ *
+ * @author Inacio G Klassmann
+ */
+public class SyntheticRepository {
+	private final File directory;
+	private final Git git;
+
+
+	/**
+	 * Create the repository
+	 *
+	 * @param tags - Number of tags
+	 * @param releases - Number of release lines
+	 * @param features - Number of remote feature branches
+	 * @throws Exception
+	 */
+	public SyntheticRepository(int tags, int releases, int features) throws Exception {
+		this.directory 	= File.createTempFile("gitflow-benchmark", "");
+		FileUtils.delete(directory);
+
+		this.git = Git.init().setDirectory(directory).call();
+
+		RevCommit commit 			= git.commit().setMessage("init").call();
+		Map<String, ObjectId> refs 	= new TreeMap<String, ObjectId>();
+
+		for (int i = 0; i < tags; i++) {
+			refs.put("refs/tags/" + buildTagName(i, releases), commit);
+		}
+
+		for (int i = 0; i < releases; i++) {
+			refs.put("refs/remotes/origin/release/" + buildReleaseName(i), commit);
+		}
+
+		for (int i = 0; i < features; i++) {
+			refs.put("refs/remotes/origin/" + buildFeatureName(i, releases), commit);
+		}
+
+		refs.put("refs/heads/develop", commit);
+		refs.put("refs/remotes/origin/develop", commit);
+		refs.put("refs/remotes/origin/master", commit);
+
+		writePackedRefs(refs);
+	}
+
+
+	private void writePackedRefs(Map<String, ObjectId> refs) throws IOException {
+		File packedRefs 		= new File(git.getRepository().getDirectory(), "packed-refs");
+		BufferedWriter writer 	= new BufferedWriter(new OutputStreamWriter(new FileOutputStream(packedRefs), "UTF-8"));
+
+		try {
+			writer.write("# pack-refs with: peeled fully-peeled \n");
+
+			for (Map.Entry<String, ObjectId> ref : refs.entrySet()) {
+				writer.write(ref.getValue().name() + " " + ref.getKey() + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+
+	public static String buildReleaseName(int release) {
+		return "1." + release;
+	}
+
+
+	public static String buildTagName(int tag, int releases) {
+		return buildReleaseName(tag % releases) + "." + (tag / releases);
+	}
+
+
+	public static String buildFeatureName(int feature, int releases) {
+		return "feature/" + buildReleaseName(feature % releases) + "/task" + feature;
+	}
+
+
+	public File getDirectory() {
+		return directory;
+	}
+
+
+	public Git getGit() {
+		return git;
+	}
+
+
+	public Repository getRepository() {
+		return git.getRepository();
+	}
+
+
+	public void delete() throws IOException {
+		git.close();
+		FileUtils.delete(directory, FileUtils.RECURSIVE | FileUtils.RETRY);
+	}
+}
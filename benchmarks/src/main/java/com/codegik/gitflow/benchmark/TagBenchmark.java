@@ -0,0 +1,83 @@
+package com.codegik.gitflow.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.lib.Ref;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.codegik.gitflow.core.impl.DefaultGitFlow;
+import com.codegik.gitflow.core.impl.DefaultGitFlowPattern;
+
+
+/**
+ * Tag selection on repositories with many tags: findLastTag and increaseVersionBasedOnTag
+ *
+ * @author Inacio G Klassmann
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagBenchmark {
+
+	@Param({"1000", "10000", "100000"})
+	private int tags;
+
+	@Param({"100"})
+	private int releases;
+
+	private SyntheticRepository repository;
+	private DefaultGitFlow gitFlow;
+	private String release;
+	private Ref lastTag;
+
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		repository 	= new SyntheticRepository(tags, releases, 0);
+		gitFlow 	= new DefaultGitFlow(new DefaultGitFlowPattern(), new QuietLog(), repository.getDirectory());
+		release 	= SyntheticRepository.buildReleaseName(releases / 2);
+
+		gitFlow.setGit(repository.getGit());
+		lastTag = gitFlow.findLastTag(release);
+	}
+
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		gitFlow.close();
+		repository.delete();
+	}
+
+
+	@Benchmark
+	public Ref findLastTag() throws Exception {
+		return gitFlow.findLastTag();
+	}
+
+
+	@Benchmark
+	public Ref findLastTagOfRelease() throws Exception {
+		return gitFlow.findLastTag(release);
+	}
+
+
+	@Benchmark
+	public String increaseVersionBasedOnTag() throws Exception {
+		return gitFlow.increaseVersionBasedOnTag(lastTag);
+	}
+}
@@ -0,0 +1,82 @@
+package com.codegik.gitflow.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.codegik.gitflow.core.Version;
+import com.codegik.gitflow.core.impl.DefaultGitFlow;
+import com.codegik.gitflow.core.impl.DefaultGitFlowPattern;
+
+
+/**
+ * Version math: parsing, comparing and the DefaultGitFlow methods built on them
+ *
+ * @author Inacio G Klassmann
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionBenchmark {
+
+	@Param({"1.4.3", "1.40000.3.2.1"})
+	private String firstVersion;
+
+	@Param({"1.4.12"})
+	private String secondVersion;
+
+	private DefaultGitFlow gitFlow;
+	private Version first;
+	private Version second;
+
+
+	@Setup
+	public void setUp() {
+		gitFlow = new DefaultGitFlow(new DefaultGitFlowPattern(), new QuietLog());
+		first 	= Version.parse(firstVersion);
+		second 	= Version.parse(secondVersion);
+	}
+
+
+	@Benchmark
+	public Version parse() {
+		return Version.parse(firstVersion);
+	}
+
+
+	@Benchmark
+	public int compareTo() {
+		return first.compareTo(second);
+	}
+
+
+	@Benchmark
+	public Integer whatIsTheBigger() throws Exception {
+		return gitFlow.whatIsTheBigger(firstVersion, secondVersion);
+	}
+
+
+	@Benchmark
+	public String increaseVersion() throws Exception {
+		return gitFlow.increaseVersion(firstVersion);
+	}
+
+
+	@Benchmark
+	public Boolean isReleaseSmallerThanCurrentVersion() throws Exception {
+		return gitFlow.isReleaseSmallerThanCurrentVersion("1.4", secondVersion);
+	}
+}
@@ -0,0 +1,33 @@
+package com.codegik.gitflow.command;
+
+import org.apache.maven.shared.release.exec.MavenExecutorException;
+
+
+/**
+ * Thrown when a forked command exits with error, it keeps the tail off output for who needs to parse it
+ *
+ * @author Inacio G Klassmann
+ */
+public class CommandException extends MavenExecutorException {
+	private static final long serialVersionUID = 1L;
+
+	private final String stdOut;
+	private final String stdErr;
+
+
+	public CommandException(String message, int exitCode, String stdOut, String stdErr) {
+		super(message, exitCode, stdOut, stdErr);
+		this.stdOut = stdOut;
+		this.stdErr = stdErr;
+	}
+
+
+	public String getStdOut() {
+		return stdOut;
+	}
+
+
+	public String getStdErr() {
+		return stdErr;
+	}
+}
@@ -1,14 +1,33 @@
 package com.codegik.gitflow.command;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.maven.plugin.logging.Log;
-import org.apache.maven.shared.release.exec.ForkedMavenExecutor;
-import org.apache.maven.shared.release.exec.MavenExecutorException;
-import org.apache.maven.shared.release.exec.TeeOutputStream;
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.Commandline;
 
+import com.codegik.gitflow.core.Statistics;
+import com.codegik.gitflow.core.Tracer;
+
 
 public abstract class CommandExecutor {
+	private static final int TAIL_SIZE 			= 64 * 1024;
+	private static final long SPILL_FILE_SIZE 	= 10 * 1024 * 1024;
+	private static final int SPILL_FILES 		= 5;
+	private static final int ASYNC_THREADS 		= 4;
+	private static final ExecutorService ASYNC 	= Executors.newFixedThreadPool(ASYNC_THREADS, new AsyncThreadFactory());
+
+	private File spillFile;
+	private boolean quiet;
 
 
 	protected abstract Commandline getCommandline();
@@ -17,21 +36,235 @@ public abstract class CommandExecutor {
 	protected abstract Log getLog();
 
 
-	public String execute(final String... args) throws Exception {
+	/**
+	 * Directory where the commands are executed, the current directory off JVM is used when not defined
+	 *
+	 * @param workingDirectory - The directory
+	 */
+	public void setWorkingDirectory(File workingDirectory) {
+		getCommandline().setWorkingDirectory(workingDirectory);
+	}
+
+
+	/**
+	 * File that receives the whole standard output off each command, rotated each 10MB and keeping 5 files
+	 * Without it only the last 64KB off output are kept
+	 *
+	 * @param spillFile - The log file or null. Ex: .git/gitflow/build.log
+	 */
+	public void setSpillFile(File spillFile) {
+		this.spillFile = spillFile;
+	}
+
+
+	public File getSpillFile() {
+		return spillFile;
+	}
+
+
+	/**
+	 * When quiet the output is not printed on console, only captured. Used when many commands run at same time
+	 *
+	 * @param quiet - True to not print the output
+	 */
+	public void setQuiet(boolean quiet) {
+		this.quiet = quiet;
+	}
+
+
+	/**
+	 * Execute the command, the output is printed on console while it is captured
+	 *
+	 * @param args - Arguments off command
+	 * @return The captured output
+	 * @throws Exception
+	 */
+	public CommandOutput execute(final String... args) throws Exception {
+		return execute(quiet ? null : System.out, args);
+	}
+
+
+	/**
+	 * Execute the command copying the whole standard output to the stream instead off console
+	 * Used by the commands whose output is read and can be bigger than the tail. Ex: git ls-remote
+	 *
+	 * @param output - The stream that receives the standard output or null
+	 * @param args - Arguments off command
+	 * @return The captured output
+	 * @throws Exception
+	 */
+	public CommandOutput execute(OutputStream output, final String... args) throws Exception {
+		String arguments = StringUtils.join(args, " ");
+
+		getLog().info(getCommandline().getExecutable() + " " + arguments);
+
+		// Cada execucao tem a sua linha de comando, assim o executor pode ser usado por varias threads
+		Commandline commandline = new Commandline();
+		commandline.setExecutable(getCommandline().getExecutable());
+		commandline.setWorkingDirectory(getCommandline().getWorkingDirectory());
+		commandline.addArguments(args);
 
-		getLog().info(getCommandline().getExecutable() + " " + StringUtils.join(args, " "));
+        Statistics.incrementForkedProcesses();
 
-		getCommandline().clearArgs();
-		getCommandline().addArguments(args);
+		Tracer.Span span 		= Tracer.start("command", getCommandline().getExecutable()).arg("args", arguments);
+		CommandOutput stdOut 	= new CommandOutput(TAIL_SIZE, openSpill());
+		CommandOutput stdErr 	= new CommandOutput(TAIL_SIZE);
 
-        TeeOutputStream stdOut 	= new TeeOutputStream(System.out);
-        TeeOutputStream stdErr 	= new TeeOutputStream(System.err);
-		final int exitCode 		= ForkedMavenExecutor.executeCommandLine(getCommandline(), System.in, stdOut, stdErr);
+		try {
+			final int exitCode = executeCommandLine(commandline, stdOut.tee(output), stdErr);
 
-		if (exitCode != 0) {
-			throw new MavenExecutorException("Error, exit code: '" + exitCode + "'", exitCode, stdOut.toString(), stdErr.toString());
+			closeSpill(stdOut);
+			span.arg("exitCode", exitCode).arg("bytes", stdOut.getSize());
+
+			if (exitCode != 0) {
+				throw new CommandException("Error, exit code: '" + exitCode + "'", exitCode, stdOut.getTail(), stdErr.getTail());
+			}
+
+			return stdOut;
+		} catch (Exception e) {
+			closeSpill(stdOut);
+			throw span.fail(e);
+		} finally {
+			span.end();
 		}
+	}
+
+
+	/**
+	 * Execute the command on the async threads, the caller does its own work and joins the future when it needs the output
+	 * The future must be waited also when the caller fails, cancel does not stop the processes forked by the command. Ex: the JVM off mvn
+	 *
+	 * @param args - Arguments off command
+	 * @return The future off captured output, it fails with the error off command
+	 */
+	public Future<CommandOutput> executeAsync(final String... args) {
+		return submit(new Callable<CommandOutput>() {
+			public CommandOutput call() throws Exception {
+				return execute(args);
+			}
+		});
+	}
+
+
+	/**
+	 * Run the work on the async threads, at most 4 works run at same time and the others wait in queue
+	 *
+	 * @param work - The work. Ex: a build
+	 * @return The future off work
+	 */
+	public static <T> Future<T> submit(Callable<T> work) {
+		return ASYNC.submit(work);
+	}
+
+
+	/**
+	 * Fork the command and wait until the whole output is read, the command does not read the standard input
+	 */
+	private int executeCommandLine(Commandline commandline, OutputStream stdOut, CommandOutput stdErr) throws Exception {
+		Process process = commandline.execute();
+		process.getOutputStream().close();
+
+		StreamPump outPump = new StreamPump(process.getInputStream(), stdOut);
+		StreamPump errPump = new StreamPump(process.getErrorStream(), stdErr.tee(quiet ? null : System.err));
 
-		return stdOut.toString();
+		outPump.start();
+		errPump.start();
+
+		try {
+			int exitCode = process.waitFor();
+
+			outPump.join();
+			errPump.join();
+			outPump.checkFailure();
+			errPump.checkFailure();
+
+			return exitCode;
+		} catch (InterruptedException e) {
+			process.destroy();
+			throw e;
+		}
+	}
+
+
+	private RotatingLogFile openSpill() {
+		if (spillFile == null) {
+			return null;
+		}
+
+		RotatingLogFile spill = new RotatingLogFile(spillFile, SPILL_FILE_SIZE, SPILL_FILES);
+
+		try {
+			spill.open();
+			return spill;
+		} catch (IOException e) {
+			getLog().warn("Could not write the output into " + spillFile.getAbsolutePath() + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+
+	private void closeSpill(CommandOutput output) {
+		try {
+			output.close();
+		} catch (IOException e) {
+			getLog().warn("Could not write the output into " + spillFile.getAbsolutePath() + ": " + e.getMessage());
+		}
+	}
+
+
+	/**
+	 * Daemon threads, the JVM off maven does not wait for them
+	 */
+	private static class AsyncThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "gitflow-async-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+
+	/**
+	 * Copy the output off process until its end
+	 */
+	private static class StreamPump extends Thread {
+		private final InputStream input;
+		private final OutputStream output;
+		private IOException failure;
+
+		private StreamPump(InputStream input, OutputStream output) {
+			this.input 	= input;
+			this.output = output;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			byte[] buffer = new byte[8192];
+
+			try {
+				for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+					output.write(buffer, 0, read);
+				}
+
+				output.flush();
+			} catch (IOException e) {
+				failure = e;
+			} finally {
+				try {
+					input.close();
+				} catch (IOException e) {
+					failure = failure == null ? e : failure;
+				}
+			}
+		}
+
+		private void checkFailure() throws IOException {
+			if (failure != null) {
+				throw failure;
+			}
+		}
 	}
 }
@@ -0,0 +1,184 @@
+package com.codegik.gitflow.command;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+
+/**
+ * Output off a forked command, only the tail is kept in memory
+ * The whole output is available by openStream while the spill file off executor is not reused by the next command.
+ *
+ * @author Inacio G Klassmann
+ */
+public class CommandOutput {
+	private final byte[] tail;
+	private final RotatingLogFile spill;
+	private final MessageDigest digest;
+	private int position;
+	private long size;
+
+
+	/**
+	 * @param tailSize - Number off last bytes kept in memory
+	 */
+	public CommandOutput(int tailSize) {
+		this(tailSize, null);
+	}
+
+
+	/**
+	 * @param tailSize - Number off last bytes kept in memory
+	 * @param spill - Log file that receives the whole output or null
+	 */
+	public CommandOutput(int tailSize, RotatingLogFile spill) {
+		this.tail 	= new byte[tailSize];
+		this.spill 	= spill;
+
+		try {
+			this.digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+	/**
+	 * Stream that copies the bytes to console and keeps them in this output
+	 *
+	 * @param console - Ex: System.out, or null to only keep the bytes
+	 * @return OutputStream
+	 */
+	public OutputStream tee(final OutputStream console) {
+		return new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				if (console != null) {
+					console.write(b, off, len);
+				}
+
+				append(b, off, len);
+			}
+
+			@Override
+			public void flush() throws IOException {
+				if (console != null) {
+					console.flush();
+				}
+			}
+		};
+	}
+
+
+	private synchronized void append(byte[] b, int off, int len) throws IOException {
+		size += len;
+		digest.update(b, off, len);
+
+		if (spill != null) {
+			spill.write(b, off, len);
+		}
+
+		if (tail.length == 0) {
+			return;
+		}
+
+		// Somente os ultimos bytes interessam
+		if (len > tail.length) {
+			off += len - tail.length;
+			len = tail.length;
+		}
+
+		int first = Math.min(len, tail.length - position);
+		System.arraycopy(b, off, tail, position, first);
+		System.arraycopy(b, off + first, tail, 0, len - first);
+		position = (position + len) % tail.length;
+	}
+
+
+	/**
+	 * Wait the spill file be written
+	 *
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		if (spill != null) {
+			spill.close();
+		}
+	}
+
+
+	/**
+	 * Returns the number off bytes written by command
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+
+	/**
+	 * Returns true when the output is bigger than the tail
+	 */
+	public synchronized boolean isTruncated() {
+		return size > tail.length;
+	}
+
+
+	private synchronized byte[] getTailBytes() {
+		if (!isTruncated()) {
+			byte[] result = new byte[(int) size];
+			System.arraycopy(tail, 0, result, 0, result.length);
+			return result;
+		}
+
+		byte[] result = new byte[tail.length];
+		System.arraycopy(tail, position, result, 0, tail.length - position);
+		System.arraycopy(tail, 0, result, tail.length - position, position);
+		return result;
+	}
+
+
+	/**
+	 * Returns the last bytes off output as text, the whole output when it is not truncated
+	 */
+	public String getTail() {
+		return new String(getTailBytes());
+	}
+
+
+	/**
+	 * Returns the SHA-1 off whole output
+	 */
+	public synchronized String getDigest() {
+		try {
+			return ObjectId.fromRaw(((MessageDigest) digest.clone()).digest()).name();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+	/**
+	 * Read the whole output from spill file, or only the tail when there is no spill file
+	 *
+	 * @return InputStream
+	 */
+	public InputStream openStream() {
+		return spill == null ? new ByteArrayInputStream(getTailBytes()) : spill.openStream();
+	}
+
+
+	@Override
+	public String toString() {
+		return getTail();
+	}
+}
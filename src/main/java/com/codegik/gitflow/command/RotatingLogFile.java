@@ -0,0 +1,215 @@
+package com.codegik.gitflow.command;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+
+/**
+ * Log file written by a background thread and rotated by size: build.log, build.log.1, ... build.log.<maxFiles-1>
+ * The writers only copy the bytes into a bounded queue, when the disk is slower than the command the writers wait.
+ *
+ * @author Inacio G Klassmann
+ */
+public class RotatingLogFile {
+	private static final int QUEUE_SIZE 	= 256;
+	private static final byte[] END 		= new byte[0];
+
+	private final File file;
+	private final long maxFileSize;
+	private final int maxFiles;
+	private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<byte[]>(QUEUE_SIZE);
+	private volatile Thread writer;
+	private volatile IOException failure;
+
+
+	/**
+	 * @param file - The current log file. Ex: .git/gitflow/build.log
+	 * @param maxFileSize - Size off each file in bytes
+	 * @param maxFiles - Number off files kept, including the current one
+	 */
+	public RotatingLogFile(File file, long maxFileSize, int maxFiles) {
+		this.file 			= file;
+		this.maxFileSize 	= maxFileSize;
+		this.maxFiles 		= Math.max(1, maxFiles);
+	}
+
+
+	/**
+	 * Delete the files off previous command and start the writer thread
+	 *
+	 * @throws IOException
+	 */
+	public void open() throws IOException {
+		for (int i = 0; i < maxFiles; i++) {
+			getFile(i).delete();
+		}
+
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+
+		final OutputStream first = new FileOutputStream(file);
+
+		failure = null;
+		writer 	= new Thread(new Runnable() {
+			public void run() {
+				drain(first);
+			}
+		}, "gitflow-log-" + file.getName());
+
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (writer == null || failure != null || len == 0) {
+			return;
+		}
+
+		byte[] chunk = new byte[len];
+		System.arraycopy(b, off, chunk, 0, len);
+
+		try {
+			queue.put(chunk);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted writing " + file.getName());
+		}
+	}
+
+
+	/**
+	 * Wait the pending bytes be written and stop the writer thread
+	 *
+	 * @throws IOException - The failure off writer thread
+	 */
+	public void close() throws IOException {
+		if (writer == null) {
+			return;
+		}
+
+		try {
+			queue.put(END);
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted closing " + file.getName());
+		} finally {
+			writer = null;
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+
+	private void drain(OutputStream first) {
+		OutputStream out 	= new BufferedOutputStream(first, 64 * 1024);
+		long written 		= 0;
+
+		try {
+			for (byte[] chunk = queue.take(); chunk != END; chunk = queue.take()) {
+				if (failure != null) {
+					// Continua consumindo a fila para nao bloquear quem escreve
+					continue;
+				}
+
+				try {
+					if (written + chunk.length > maxFileSize && written > 0) {
+						out.close();
+						rotate();
+						out 	= new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+						written = 0;
+					}
+
+					out.write(chunk);
+					written += chunk.length;
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+		} catch (InterruptedException e) {
+			failure = new InterruptedIOException("Interrupted writing " + file.getName());
+		} finally {
+			try {
+				out.close();
+			} catch (IOException e) {
+				failure = failure == null ? e : failure;
+			}
+		}
+	}
+
+
+	private void rotate() throws IOException {
+		getFile(maxFiles - 1).delete();
+
+		for (int i = maxFiles - 2; i >= 0; i--) {
+			File source = getFile(i);
+
+			if (source.exists() && !source.renameTo(getFile(i + 1))) {
+				throw new IOException("Could not rotate " + source.getAbsolutePath());
+			}
+		}
+	}
+
+
+	private File getFile(int index) {
+		return index == 0 ? file : new File(file.getPath() + "." + index);
+	}
+
+
+	/**
+	 * Read the files from the oldest to the current one, each file is only opened when the previous one is read
+	 *
+	 * @return InputStream
+	 */
+	public InputStream openStream() {
+		List<File> files = new ArrayList<File>();
+
+		for (int i = maxFiles - 1; i >= 0; i--) {
+			if (getFile(i).isFile()) {
+				files.add(getFile(i));
+			}
+		}
+
+		final Iterator<File> iterator = files.iterator();
+
+		return new SequenceInputStream(new Enumeration<InputStream>() {
+			public boolean hasMoreElements() {
+				return iterator.hasNext();
+			}
+
+			public InputStream nextElement() {
+				try {
+					return new FileInputStream(iterator.next());
+				} catch (FileNotFoundException e) {
+					NoSuchElementException exception = new NoSuchElementException(e.getMessage());
+					exception.initCause(e);
+					throw exception;
+				}
+			}
+		});
+	}
+
+
+	public File getFile() {
+		return file;
+	}
+}
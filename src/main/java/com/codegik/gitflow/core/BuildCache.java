@@ -0,0 +1,221 @@
+package com.codegik.gitflow.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.IO;
+
+
+/**
+ * Results of project builds stored in .git/gitflow/build-cache
+ * A build is identified by the tree of HEAD, the content of uncommitted files and the build arguments,
+ * so the same tree is not built twice with the same arguments
+ *
+ * @author Inacio G Klassmann
+ */
+public class BuildCache {
+	private static final int MAX_ENTRIES = 500;
+
+	private final Repository repository;
+	private final File cacheFile;
+
+
+	public BuildCache(Repository repository) {
+		this.repository = repository;
+		this.cacheFile 	= new File(new File(repository.getDirectory(), "gitflow"), "build-cache");
+	}
+
+
+	/**
+	 * Build the key of current working tree and build arguments
+	 *
+	 * @param args - The build arguments. Ex: clean, install, -DskipTests
+	 * @return The key
+	 * @throws Exception
+	 */
+	public String buildKey(List<String> args) throws Exception {
+		MessageDigest digest 	= MessageDigest.getInstance("SHA-1");
+		ObjectId head 			= repository.resolve(Constants.HEAD);
+
+		if (head != null) {
+			RevWalk walk = RepositoryPool.borrowWalk(repository);
+
+			try {
+				digest.update(Constants.encode(walk.parseCommit(head).getTree().name()));
+			} finally {
+				RepositoryPool.giveBack(repository, walk);
+			}
+		}
+
+		ObjectInserter.Formatter formatter 	= new ObjectInserter.Formatter();
+		Status status 						= new Git(repository).status().call();
+		Set<String> changed 				= new TreeSet<String>();
+
+		changed.addAll(status.getAdded());
+		changed.addAll(status.getChanged());
+		changed.addAll(status.getModified());
+		changed.addAll(status.getRemoved());
+		changed.addAll(status.getMissing());
+		changed.addAll(status.getUntracked());
+
+		for (String path : changed) {
+			File file = new File(repository.getWorkTree(), path);
+			digest.update(Constants.encode("\n" + path + "\t"));
+
+			if (file.isFile()) {
+				digest.update(Constants.encode(formatter.idFor(Constants.OBJ_BLOB, IO.readFully(file)).name()));
+			}
+		}
+
+		for (String arg : args) {
+			digest.update(Constants.encode("\n" + arg));
+		}
+
+		return ObjectId.fromRaw(digest.digest()).name();
+	}
+
+
+	/**
+	 * Returns the last result recorded for the key or null if the key was never built
+	 *
+	 * @param key - The key returned by buildKey
+	 * @return Entry
+	 * @throws IOException
+	 */
+	public Entry find(String key) throws IOException {
+		Entry result = null;
+
+		for (Entry entry : load()) {
+			if (entry.getKey().equals(key)) {
+				result = entry;
+			}
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Record the result of a build
+	 *
+	 * @param key - The key returned by buildKey
+	 * @param success - True if the build was successful
+	 * @param duration - Duration of build in milliseconds
+	 * @param logDigest - SHA-1 of build output, see digest
+	 * @throws Exception
+	 */
+	public void record(String key, boolean success, long duration, String logDigest) throws Exception {
+		List<Entry> entries = load();
+		entries.add(new Entry(key, success, duration, logDigest, System.currentTimeMillis()));
+
+		if (entries.size() > MAX_ENTRIES) {
+			entries = entries.subList(entries.size() - MAX_ENTRIES, entries.size());
+		}
+
+		cacheFile.getParentFile().mkdirs();
+
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(cacheFile), "UTF-8"));
+
+		try {
+			for (Entry entry : entries) {
+				writer.write(entry.getKey() + "\t" + entry.isSuccess() + "\t" + entry.getDuration() + "\t" + entry.getLogDigest() + "\t" + entry.getWhen());
+				writer.newLine();
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+
+	/**
+	 * Returns the SHA-1 of a build output kept in memory
+	 *
+	 * @param output - Output of build or null
+	 * @return The digest
+	 * @throws Exception
+	 */
+	public static String digest(String output) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance("SHA-1");
+		return ObjectId.fromRaw(digest.digest(Constants.encode(output == null ? "" : output))).name();
+	}
+
+
+	private List<Entry> load() throws IOException {
+		List<Entry> entries = new ArrayList<Entry>();
+
+		if (!cacheFile.isFile()) {
+			return entries;
+		}
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), "UTF-8"));
+
+		try {
+			String line = null;
+
+			while ((line = reader.readLine()) != null) {
+				String[] columns = line.split("\t");
+
+				if (columns.length == 5) {
+					entries.add(new Entry(columns[0], Boolean.parseBoolean(columns[1]), Long.parseLong(columns[2]), columns[3], Long.parseLong(columns[4])));
+				}
+			}
+		} catch (NumberFormatException e) {
+			entries.clear();
+		} finally {
+			reader.close();
+		}
+
+		return entries;
+	}
+
+
+	public static class Entry {
+		private final String key;
+		private final boolean success;
+		private final long duration;
+		private final String logDigest;
+		private final long when;
+
+		public Entry(String key, boolean success, long duration, String logDigest, long when) {
+			this.key 		= key;
+			this.success 	= success;
+			this.duration 	= duration;
+			this.logDigest 	= logDigest;
+			this.when 		= when;
+		}
+
+		public String getKey() {
+			return key;
+		}
+		public boolean isSuccess() {
+			return success;
+		}
+		public long getDuration() {
+			return duration;
+		}
+		public String getLogDigest() {
+			return logDigest;
+		}
+		public long getWhen() {
+			return when;
+		}
+	}
+}
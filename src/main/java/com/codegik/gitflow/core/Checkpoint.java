@@ -0,0 +1,325 @@
+package com.codegik.gitflow.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.StringUtils;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+
+/**
+ * Steps completed by a goal, stored in .git/gitflow/checkpoint-<goal>.properties
+ * It keeps the refs before the goal, the refs and the branch after the last step, the ref updates
+ * waiting the push and the values computed by the steps, so a failed goal can continue with -Dresume
+ *
+ * @author Inacio G Klassmann
+ */
+public class Checkpoint {
+	private static final String SIGNATURE 	= "signature";
+	private static final String START 		= "start.branch";
+	private static final String STEPS 		= "steps";
+	private static final String BRANCH 		= "branch";
+	private static final String UPSTREAM 	= "push.upstream";
+	private static final String START_REF 	= "start.ref.";
+	private static final String REF 		= "ref.";
+	private static final String PUSH 		= "push.ref.";
+	private static final String VALUE 		= "value.";
+	private static final String ORDER 		= "order";
+	private static final String SEPARATOR 	= " ";
+
+	private final File file;
+	private final String goal;
+	private Properties properties = new Properties();
+
+
+	/**
+	 * @param directory - The directory off checkpoints. Ex: .git/gitflow
+	 * @param goal - The goal. Ex: finish-hotfix
+	 */
+	public Checkpoint(File directory, String goal) {
+		this.file = new File(directory, "checkpoint-" + goal + ".properties");
+		this.goal = goal;
+	}
+
+
+	public File getFile() {
+		return file;
+	}
+
+
+	/**
+	 * Read the checkpoint file
+	 *
+	 * @return False when there is no checkpoint
+	 * @throws IOException
+	 */
+	public boolean load() throws IOException {
+		if (!file.isFile()) {
+			return false;
+		}
+
+		InputStream input = new FileInputStream(file);
+
+		try {
+			properties.load(input);
+		} finally {
+			input.close();
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Write the checkpoint file, a new file replaces the old one so a crash does not leave half a checkpoint
+	 *
+	 * @throws IOException
+	 */
+	public void save() throws IOException {
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		file.getParentFile().mkdirs();
+
+		OutputStream output = new FileOutputStream(temp);
+
+		try {
+			properties.store(output, "gitflow checkpoint");
+		} finally {
+			output.close();
+		}
+
+		if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+			throw new IOException("Could not write " + file.getAbsolutePath());
+		}
+	}
+
+
+	public void delete() {
+		file.delete();
+		properties = new Properties();
+	}
+
+
+	public String getSignature() {
+		return properties.getProperty(SIGNATURE);
+	}
+
+
+	public void setSignature(String signature) {
+		properties.setProperty(SIGNATURE, signature);
+	}
+
+
+	/**
+	 * Returns the branch checked out when the goal started
+	 */
+	public String getStartBranch() {
+		return properties.getProperty(START);
+	}
+
+
+	public void setStartBranch(String branch) {
+		properties.setProperty(START, branch);
+	}
+
+
+	/**
+	 * Returns the branch checked out after the last step
+	 */
+	public String getBranch() {
+		return properties.getProperty(BRANCH);
+	}
+
+
+	public void setBranch(String branch) {
+		properties.setProperty(BRANCH, branch);
+	}
+
+
+	public List<String> getSteps() {
+		String steps = properties.getProperty(STEPS);
+		return steps == null ? new ArrayList<String>() : new ArrayList<String>(Arrays.asList(StringUtils.split(steps, ",")));
+	}
+
+
+	public void addStep(String step) {
+		List<String> steps = getSteps();
+		steps.add(step);
+		properties.setProperty(STEPS, StringUtils.join(steps.iterator(), ","));
+	}
+
+
+	/**
+	 * Returns the refs changed by the goal with their ids before the goal, zeroId when they did not exist
+	 */
+	public Map<String, ObjectId> getStartRefs() {
+		return getIds(START_REF);
+	}
+
+
+	/**
+	 * Record the id off ref before the goal, only the first id is kept
+	 */
+	public void putStartRef(String refName, ObjectId id) {
+		if (properties.getProperty(START_REF + refName) == null) {
+			put(START_REF, refName, id.name());
+		}
+	}
+
+
+	/**
+	 * Returns the refs changed by the goal with their ids after the last step, zeroId when they were deleted
+	 */
+	public Map<String, ObjectId> getRefs() {
+		return getIds(REF);
+	}
+
+
+	public void putRef(String refName, ObjectId id) {
+		put(REF, refName, id.name());
+	}
+
+
+	private Map<String, ObjectId> getIds(String prefix) {
+		Map<String, ObjectId> ids = new LinkedHashMap<String, ObjectId>();
+
+		for (Map.Entry<String, String> entry : getAll(prefix).entrySet()) {
+			ids.put(entry.getKey(), ObjectId.fromString(entry.getValue()));
+		}
+
+		return ids;
+	}
+
+
+	/**
+	 * Returns the ref updates waiting the push, the remote ref with its refspec
+	 */
+	public Map<String, String> getPushes() {
+		return getAll(PUSH);
+	}
+
+
+	/**
+	 * Replace the ref updates waiting the push
+	 */
+	public void setPushes(Map<String, String> pushes, boolean setUpstream) {
+		for (String name : getNames(PUSH)) {
+			properties.remove(PUSH + name);
+		}
+
+		properties.remove(PUSH + ORDER);
+
+		for (Map.Entry<String, String> push : pushes.entrySet()) {
+			put(PUSH, push.getKey(), push.getValue());
+		}
+
+		properties.setProperty(UPSTREAM, String.valueOf(setUpstream));
+	}
+
+
+	/**
+	 * Add the ref updates waiting the push to batch, in the order they were collected
+	 */
+	public void restorePushes(PushBatch pushBatch) {
+		for (Map.Entry<String, String> push : getPushes().entrySet()) {
+			pushBatch.add(push.getKey(), push.getValue(), isSetUpstream());
+		}
+	}
+
+
+	/**
+	 * The checkpoint is valid while the parameters off goal are the same and the refs are as they were before the goal,
+	 * it means the failed execution was rolled back and nobody changed the refs after it
+	 *
+	 * @param signature - The parameters off goal now
+	 * @param branch - The branch checked out now
+	 * @param repository - The repository resumed
+	 * @throws MojoExecutionException when the goal must start again
+	 * @throws IOException
+	 */
+	public void validate(String signature, String branch, Repository repository) throws MojoExecutionException, IOException {
+		String resumeMessage = ", execute the goal without -Dresume to start again";
+
+		if (!signature.equals(getSignature())) {
+			throw new MojoExecutionException("The checkpoint of " + goal + " was saved with other parameters" + resumeMessage);
+		}
+
+		if (!branch.equals(getStartBranch())) {
+			throw new MojoExecutionException("The checkpoint of " + goal + " was saved on branch " + getStartBranch() + resumeMessage);
+		}
+
+		for (Map.Entry<String, ObjectId> ref : getStartRefs().entrySet()) {
+			Ref current = repository.getRefDatabase().getRef(ref.getKey());
+
+			if (!ref.getValue().equals(current == null ? ObjectId.zeroId() : current.getObjectId())) {
+				throw new MojoExecutionException("The ref " + ref.getKey() + " was changed after the checkpoint" + resumeMessage);
+			}
+		}
+
+		for (Map.Entry<String, ObjectId> ref : getRefs().entrySet()) {
+			if (!ObjectId.zeroId().equals(ref.getValue()) && !repository.hasObject(ref.getValue())) {
+				throw new MojoExecutionException("The commit " + ref.getValue().name() + " of " + ref.getKey() + " does not exist anymore" + resumeMessage);
+			}
+		}
+	}
+
+
+	/**
+	 * Properties does not keep the order off keys, so the names off each prefix are kept in order in prefix + order
+	 * The names are refs, which can not have spaces. Ex: push.ref.order=refs/heads/release/1.4 refs/heads/develop
+	 */
+	private void put(String prefix, String name, String value) {
+		List<String> names = getNames(prefix);
+
+		if (!names.contains(name)) {
+			names.add(name);
+			properties.setProperty(prefix + ORDER, StringUtils.join(names.iterator(), SEPARATOR));
+		}
+
+		properties.setProperty(prefix + name, value);
+	}
+
+
+	private List<String> getNames(String prefix) {
+		String names = properties.getProperty(prefix + ORDER);
+		return names == null ? new ArrayList<String>() : new ArrayList<String>(Arrays.asList(StringUtils.split(names, SEPARATOR)));
+	}
+
+
+	private Map<String, String> getAll(String prefix) {
+		Map<String, String> values = new LinkedHashMap<String, String>();
+
+		for (String name : getNames(prefix)) {
+			values.put(name, properties.getProperty(prefix + name));
+		}
+
+		return values;
+	}
+
+
+	public boolean isSetUpstream() {
+		return Boolean.parseBoolean(properties.getProperty(UPSTREAM));
+	}
+
+
+	public String getValue(String key) {
+		return properties.getProperty(VALUE + key);
+	}
+
+
+	public void putValue(String key, String value) {
+		properties.setProperty(VALUE + key, value);
+	}
+}
@@ -2,120 +2,1195 @@ package com.codegik.gitflow.core;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.Set;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
+import org.eclipse.jgit.api.AddCommand;
+import org.eclipse.jgit.api.CheckoutCommand;
 import org.eclipse.jgit.api.CheckoutCommand.Stage;
 import org.eclipse.jgit.api.CreateBranchCommand.SetupUpstreamMode;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.ListBranchCommand.ListMode;
+import org.eclipse.jgit.api.MergeCommand.FastForwardMode;
 import org.eclipse.jgit.api.MergeResult;
 import org.eclipse.jgit.api.ResetCommand.ResetType;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.dircache.DirCacheIterator;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeMessageFormatter;
 import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.Merger;
+import org.eclipse.jgit.merge.ResolveMerger;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
 import com.codegik.gitflow.command.CommandExecutor;
 import com.codegik.gitflow.command.GitCommandExecutor;
 import com.codegik.gitflow.core.impl.DefaultBranchType;
+import com.codegik.gitflow.core.impl.ForkedGitTransport;
+import com.codegik.gitflow.core.impl.JGitTransport;
 
 
 public abstract class GitFlow {
+	private static final int DEEPEN_COMMITS = 32;
+
 	private Git git;
 	private Log log;
 	private File repository;
 	private CommandExecutor gitExecutor;
 	private GitFlowPattern gitFlowPattern;
+	private TagIndex tagIndex;
+	private RefSnapshot refSnapshot;
+	private RemoteSnapshot remoteSnapshot;
+	private GitTransport transport;
+	private GitTransport atomicTransport;
+	private PushBatch pushBatch;
+	private RefJournal journal;
+	private PartialClone partialClone;
+	private TransportType transportType = TransportType.jgit;
+	private boolean pooled;
 	
 
-	public GitFlow(GitFlowPattern gitFlowPattern, Log log, File repository) {
-		this.log 			= log;
-		this.repository 	= repository;
-		this.gitFlowPattern	= gitFlowPattern;
-		this.gitExecutor	= new GitCommandExecutor(log);
+	public GitFlow(GitFlowPattern gitFlowPattern, Log log, File repository) {
+		this.log 			= log;
+		this.repository 	= repository;
+		this.gitFlowPattern	= gitFlowPattern;
+		this.gitExecutor	= new GitCommandExecutor(log);
+		this.gitExecutor.setWorkingDirectory(repository);
+	}
+
+
+	/**
+	 * Use a repository open outside, it is not closed by close. Ex: the daemon keeps it open between goals
+	 */
+	public synchronized void setGit(Git git) {
+		this.git 	= git;
+		this.pooled = false;
+	}
+
+	/**
+	 * Check the format off repository before the goal opens it, see PartialClone.prepareFormat
+	 * The repository open outside was already checked by its owner
+	 */
+	public synchronized void prepareRepositoryFormat(boolean convert) throws Exception {
+		if (git == null) {
+			PartialClone.prepareFormat(repository, convert, getLog());
+		}
+	}
+
+
+	/**
+	 * Returns the repository shared by RepositoryPool, it is given back by close
+	 */
+	public synchronized Git getGit() throws Exception {
+		if (git == null) {
+			git 	= RepositoryPool.open(repository);
+			pooled 	= true;
+		}
+
+		return git;
+	}
+
+
+	/**
+	 * Returns the transport off remote operations. The shallow and partial clones always use the forked git, JGit
+	 * does not fetch them without bringing the whole history and all blobs
+	 */
+	public GitTransport getTransport() throws Exception {
+		if (transport == null) {
+			if (!TransportType.git.equals(transportType) && (getPartialClone().isShallow() || getPartialClone().isPartial())) {
+				getLog().info("Shallow or partial clone, the remote operations use the git command line");
+				transportType = TransportType.git;
+			}
+
+			if (TransportType.git.equals(transportType)) {
+				transport = new ForkedGitTransport(gitExecutor, gitFlowPattern.getOriginName());
+			} else {
+				transport = new JGitTransport(getGit().getRepository(), gitFlowPattern.getOriginName(), log);
+			}
+		}
+
+		return transport;
+	}
+
+
+	/**
+	 * Returns the transport off atomic pushes. The pushAtomic off JGit 3.7 pushes and then restores the refs already
+	 * updated when some ref is rejected, so the git command line is preferred when it supports push --atomic (git 2.4)
+	 */
+	public GitTransport getAtomicTransport() throws Exception {
+		if (atomicTransport == null) {
+			if (getTransport() instanceof JGitTransport && ForkedGitTransport.supportsAtomic(gitExecutor)) {
+				getLog().info("The atomic pushes use the git command line");
+				atomicTransport = new ForkedGitTransport(gitExecutor, gitFlowPattern.getOriginName());
+			} else {
+				atomicTransport = getTransport();
+			}
+		}
+
+		return atomicTransport;
+	}
+
+
+	public void setTransportType(TransportType transportType) {
+		this.transportType = transportType;
+	}
+
+
+	/**
+	 * From now on the ref updates are collected and only pushed by flushPushBatch
+	 */
+	public void startPushBatch() {
+		pushBatch = new PushBatch();
+	}
+
+
+	/**
+	 * Push all collected ref updates in one atomic push
+	 * When the push is rejected the updates are kept, so the goal can replay its change and flush again
+	 *
+	 * @return The output of push
+	 * @throws RefUpdateRejectedException when a remote branch was changed by someone else
+	 * @throws Exception
+	 */
+	public String flushPushBatch() throws Exception {
+		Tracer.Span span = Tracer.start("gitflow", "flushPushBatch");
+
+		try {
+			if (pushBatch == null || pushBatch.isEmpty()) {
+				return null;
+			}
+
+			getLog().info("Pushing " + pushBatch.getRefSpecs().size() + " ref updates");
+
+			String[] refSpecs 	= pushBatch.getRefSpecs().toArray(new String[pushBatch.getRefSpecs().size()]);
+			boolean setUpstream = pushBatch.isSetUpstream();
+
+			span.arg("refSpecs", refSpecs.length);
+
+			Map<String, ObjectId> expectedOldIds 	= findExpectedOldIds(refSpecs);
+			String result 							= getAtomicTransport().pushAtomic(setUpstream, expectedOldIds, refSpecs);
+
+			journalRemote(expectedOldIds, refSpecs);
+			updateRemoteSnapshot(refSpecs);
+			pushBatch.clear();
+			invalidateRefSnapshot();
+
+			return result;
+		} catch (PartialPushException e) {
+			journalPartialPush(e);
+			throw span.fail(e);
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
+	}
+
+
+	/**
+	 * Returns the ref updates collected and not pushed yet, or null when they are pushed right away
+	 */
+	public PushBatch getPushBatch() {
+		return pushBatch;
+	}
+
+
+	/**
+	 * Discard all collected ref updates, the remote stays untouched
+	 */
+	public void discardPushBatch() {
+		if (pushBatch != null && !pushBatch.isEmpty()) {
+			getLog().info("Discarding " + pushBatch.getRefSpecs().size() + " ref updates");
+			pushBatch.clear();
+		}
+	}
+
+
+	private String push(String remoteRef, String refSpec, boolean setUpstream) throws Exception {
+		Tracer.Span span = Tracer.start("gitflow", "push").arg("ref", remoteRef);
+
+		try {
+			if (pushBatch != null) {
+				span.arg("batched", "true");
+				pushBatch.add(remoteRef, refSpec, setUpstream);
+				return refSpec;
+			}
+
+			Map<String, ObjectId> expectedOldIds 	= findExpectedOldIds(refSpec);
+			String result 							= getTransport().push(setUpstream, expectedOldIds, refSpec);
+
+			journalRemote(expectedOldIds, refSpec);
+			updateRemoteSnapshot(refSpec);
+			invalidateRefSnapshot();
+
+			return result;
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
+	}
+
+
+	/**
+	 * Returns the id that each remote branch must have for the push be accepted, it is the id off remote-tracking
+	 * branch or zeroId when the branch is new. The tags are not checked, the remote already refuses to move them
+	 * A deleted branch expects the id off remote snapshot, the one seen when the goal started. An updated branch keeps
+	 * the remote tracking branch, which is the commit the local work is based on: expecting a newer id would force
+	 * the push over remote commits not merged
+	 */
+	private Map<String, ObjectId> findExpectedOldIds(String... refSpecs) throws Exception {
+		Map<String, ObjectId> expectedOldIds = new HashMap<String, ObjectId>();
+
+		for (String refSpec : refSpecs) {
+			RefSpec spec 		= new RefSpec(refSpec);
+			String remoteRef 	= spec.getDestination();
+
+			if (remoteRef.startsWith(Constants.R_HEADS)) {
+				ObjectId expected = null;
+
+				if (spec.getSource() == null && remoteSnapshot != null) {
+					expected = remoteSnapshot.getId(remoteRef);
+				} else {
+					Ref tracking = findRemoteTrackingBranch(remoteRef.substring(Constants.R_HEADS.length()));
+					expected = tracking == null ? null : tracking.getObjectId();
+				}
+
+				expectedOldIds.put(remoteRef, expected == null ? ObjectId.zeroId() : expected);
+			}
+		}
+
+		return expectedOldIds;
+	}
+
+
+	/**
+	 * Fail when the working tree has changes not committed. A failed goal is rolled back with a forced checkout
+	 * and reset --hard off the start branch, so these changes would be lost. The untracked files are not touched
+	 *
+	 * @throws MojoExecutionException when there are uncommitted changes
+	 * @throws Exception
+	 */
+	public void validateCleanWorkingTree() throws Exception {
+		Set<String> changes = getGit().status().call().getUncommittedChanges();
+
+		if (!changes.isEmpty()) {
+			throw new MojoExecutionException("There are uncommitted changes " + changes + ", commit or stash them before execute this goal!");
+		}
+	}
+
+
+	/**
+	 * From now on every ref changed is recorded, so rollback can put all of them back
+	 */
+	public void startJournal() throws Exception {
+		journal = new RefJournal(getBranch());
+	}
+
+
+	public RefJournal getJournal() {
+		return journal;
+	}
+
+
+	/**
+	 * Mark the working tree as changed by the goal, so rollback resets it even when no ref was changed
+	 */
+	public void journalWorkingTree() {
+		if (journal != null) {
+			journal.recordWorkingTree();
+		}
+	}
+
+
+	/**
+	 * Record the id off local ref before it is changed
+	 *
+	 * @param refName - The full name. Ex: refs/heads/develop
+	 */
+	private void journal(String refName) throws Exception {
+		if (journal != null && !journal.containsLocal(refName)) {
+			Ref ref = getGit().getRepository().getRefDatabase().getRef(refName);
+			journal.recordLocal(refName, ref == null ? ObjectId.zeroId() : ref.getObjectId());
+		}
+	}
+
+
+	private void journalBranch(String branchName) throws Exception {
+		journal(Constants.R_HEADS + branchName);
+	}
+
+
+	/**
+	 * Record the remote refs pushed, the deletion off tags is not recorded because their id is unknown
+	 */
+	private void journalRemote(Map<String, ObjectId> expectedOldIds, String... refSpecs) throws Exception {
+		if (journal == null) {
+			return;
+		}
+
+		for (String refSpec : refSpecs) {
+			RefSpec spec 	= new RefSpec(refSpec);
+			ObjectId before = expectedOldIds.get(spec.getDestination());
+			ObjectId after 	= spec.getSource() == null ? ObjectId.zeroId() : getGit().getRepository().resolve(spec.getSource());
+
+			// As tags nao sao verificadas no push, somente as novas sao enviadas
+			if (before == null && spec.getSource() != null && spec.getDestination().startsWith(Constants.R_TAGS)) {
+				before = ObjectId.zeroId();
+			}
+
+			if (before != null && after != null) {
+				journal.recordRemote(spec.getDestination(), before, after);
+			}
+		}
+	}
+
+
+	/**
+	 * Record the remote refs left updated by an atomic push that failed, so the rollback puts them back
+	 */
+	private void journalPartialPush(PartialPushException e) {
+		if (journal == null) {
+			return;
+		}
+
+		for (Map.Entry<String, ObjectId> before : e.getBefore().entrySet()) {
+			journal.recordRemote(before.getKey(), before.getValue(), e.getAfter().get(before.getKey()));
+		}
+	}
+
+
+	/**
+	 * Record the remote refs pushed in the remote snapshot, so the next lookups see the refs as they are now on remote
+	 */
+	private void updateRemoteSnapshot(String... refSpecs) throws Exception {
+		if (remoteSnapshot == null) {
+			return;
+		}
+
+		for (String refSpec : refSpecs) {
+			RefSpec spec = new RefSpec(refSpec);
+			remoteSnapshot.update(spec.getDestination(), spec.getSource() == null ? null : getGit().getRepository().resolve(spec.getSource()));
+		}
+	}
+
+
+	/**
+	 * Put back every ref recorded since startJournal: the remote refs in one atomic push and the local refs
+	 * in one batch ref update, then the branch where the goal started is checked out with a clean working tree
+	 * No commit is created and nothing is compiled
+	 *
+	 * @throws Exception when some ref could not be restored, the others are restored anyway
+	 */
+	public void rollback() throws Exception {
+		Tracer.Span span 		= Tracer.start("gitflow", "rollback");
+		List<String> failures 	= new ArrayList<String>();
+
+		try {
+			if (journal == null || journal.isEmpty()) {
+				return;
+			}
+
+			span.arg("localRefs", journal.getLocalRefs().size()).arg("remoteRefs", journal.getRemoteRefs().size());
+
+			try {
+				rollbackRemote();
+			} catch (Exception e) {
+				failures.add(e.getMessage());
+			}
+
+			failures.addAll(rollbackLocal());
+
+			// O checkout forcado do JGit 3.7 recusa os arquivos alterados sem commit, eles sao descartados antes
+			getGit().reset().setMode(ResetType.HARD).call();
+			getGit().checkout().setForce(true).setName(journal.getBranch()).call();
+			getGit().reset().setMode(ResetType.HARD).call();
+
+			journal 	= null;
+			tagIndex 	= null;
+			invalidateRefSnapshot();
+
+			if (!failures.isEmpty()) {
+				throw new MojoExecutionException("Could not restore " + failures);
+			}
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
+	}
+
+
+	private void rollbackRemote() throws Exception {
+		List<String> refSpecs 					= new ArrayList<String>();
+		Map<String, ObjectId> expectedOldIds 	= new HashMap<String, ObjectId>();
+
+		for (RefJournal.Entry entry : journal.getRemoteRefs()) {
+			if (!entry.getBefore().equals(entry.getAfter())) {
+				getLog().info("Restoring remote " + entry.getName() + " to " + entry.getBefore().abbreviate(7).name());
+				expectedOldIds.put(entry.getName(), entry.getAfter());
+				refSpecs.add(ObjectId.zeroId().equals(entry.getBefore()) ? ":" + entry.getName() : "+" + entry.getBefore().name() + ":" + entry.getName());
+			}
+		}
+
+		if (!refSpecs.isEmpty()) {
+			getAtomicTransport().pushAtomic(false, expectedOldIds, refSpecs.toArray(new String[refSpecs.size()]));
+		}
+	}
+
+
+	/**
+	 * Restore the local refs, the HEAD is detached first so the current branch can also be moved or deleted
+	 *
+	 * @return The refs that could not be restored
+	 */
+	private List<String> rollbackLocal() throws Exception {
+		return updateRefs(journal.getLocalRefs(), "rollback");
+	}
+
+
+	/**
+	 * Returns the current id off each ref, zeroId when the ref does not exist
+	 *
+	 * @param refNames - The full names. Ex: refs/heads/develop
+	 * @return The ids by ref name
+	 * @throws Exception
+	 */
+	public Map<String, ObjectId> findRefs(Collection<String> refNames) throws Exception {
+		Map<String, ObjectId> ids = new LinkedHashMap<String, ObjectId>();
+
+		for (String refName : refNames) {
+			Ref ref = getGit().getRepository().getRefDatabase().getRef(refName);
+			ids.put(refName, ref == null ? ObjectId.zeroId() : ref.getObjectId());
+		}
+
+		return ids;
+	}
+
+
+	/**
+	 * Move the local refs to the ids in one batch ref update and checkout the branch with a clean working tree
+	 * The refs are recorded in the journal, so a rollback puts them back. Used to continue a goal from its checkpoint
+	 *
+	 * @param refs - The ids by ref name, zeroId to delete the ref
+	 * @param branchName - The branch to checkout. Ex: master
+	 * @throws Exception
+	 */
+	public void restoreRefs(Map<String, ObjectId> refs, String branchName) throws Exception {
+		Tracer.Span span = Tracer.start("gitflow", "restoreRefs").arg("refs", refs.size());
+
+		try {
+			for (String refName : refs.keySet()) {
+				journal(refName);
+			}
+
+			List<String> failures = updateRefs(refs, "restore checkpoint");
+
+			if (!failures.isEmpty()) {
+				throw new MojoExecutionException("Could not restore " + failures);
+			}
+
+			fetchMissingBlobs(getGit().getRepository().resolve(Constants.HEAD), getGit().getRepository().resolve(branchName));
+			getGit().checkout().setForce(true).setName(branchName).call();
+			getGit().reset().setMode(ResetType.HARD).call();
+
+			tagIndex = null;
+			invalidateRefSnapshot();
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
+	}
+
+
+	private List<String> updateRefs(Map<String, ObjectId> refs, String reason) throws Exception {
+		Repository repository 	= getGit().getRepository();
+		BatchRefUpdate batch 	= repository.getRefDatabase().newBatchUpdate();
+		ObjectId head 			= repository.resolve(Constants.HEAD);
+		List<String> failures 	= new ArrayList<String>();
+
+		batch.setAllowNonFastForwards(true);
+		batch.setRefLogMessage("gitflow: " + reason, false);
+
+		for (Map.Entry<String, ObjectId> entry : refs.entrySet()) {
+			Ref current 	= repository.getRefDatabase().getRef(entry.getKey());
+			ObjectId after 	= current == null ? ObjectId.zeroId() : current.getObjectId();
+
+			if (!after.equals(entry.getValue())) {
+				getLog().info("Restoring " + entry.getKey() + " to " + (ObjectId.zeroId().equals(entry.getValue()) ? "deleted" : entry.getValue().abbreviate(7).name()));
+				batch.addCommand(new ReceiveCommand(after, entry.getValue(), entry.getKey()));
+			}
+		}
+
+		if (batch.getCommands().isEmpty()) {
+			return failures;
+		}
+
+		// Solta o HEAD para poder mover ou apagar o branch atual
+		if (head != null) {
+			RefUpdate detach = repository.updateRef(Constants.HEAD, true);
+			detach.setNewObjectId(head);
+			detach.forceUpdate();
+		}
+
+		RevWalk walk = RepositoryPool.borrowWalk(repository);
+
+		try {
+			batch.execute(walk, NullProgressMonitor.INSTANCE);
+		} finally {
+			RepositoryPool.giveBack(repository, walk);
+		}
+
+		for (ReceiveCommand command : batch.getCommands()) {
+			if (command.getResult() != ReceiveCommand.Result.OK) {
+				failures.add(command.getRefName() + " " + command.getResult());
+			}
+		}
+
+		return failures;
+	}
+
+
+	private Ref findRemoteTrackingBranch(String branchName) throws Exception {
+		return getGit().getRepository().getRefDatabase().getRef(Constants.R_REMOTES + gitFlowPattern.getOriginName() + "/" + branchName);
+	}
+
+
+	/**
+	 * Release the connection with remote, discard the ref updates not pushed and give back the repository to RepositoryPool
+	 */
+	public void close() {
+		discardPushBatch();
+		pushBatch 		= null;
+		remoteSnapshot 	= null;
+
+		if (atomicTransport != null && atomicTransport != transport) {
+			atomicTransport.close();
+		}
+
+		atomicTransport = null;
+
+		if (transport != null) {
+			transport.close();
+			transport = null;
+		}
+
+		synchronized (this) {
+			if (pooled) {
+				RepositoryPool.close(git);
+				git 		= null;
+				pooled 		= false;
+				tagIndex 		= null;
+				refSnapshot 	= null;
+				partialClone 	= null;
+			}
+		}
+	}
+
+
+	public String getBranch() throws Exception {
+		return getGit().getRepository().getBranch();
+	}
+
+
+	public synchronized PartialClone getPartialClone() throws Exception {
+		if (partialClone == null) {
+			partialClone = new PartialClone(getGit().getRepository(), gitExecutor, gitFlowPattern.getOriginName());
+		}
+
+		return partialClone;
+	}
+
+
+	public synchronized TagIndex getTagIndex() throws Exception {
+		if (tagIndex == null) {
+			tagIndex = new TagIndex(gitFlowPattern, getGit().getRepository());
+		}
+
+		return tagIndex;
+	}
+
+
+	/**
+	 * Returns the snapshot of branches, taken once and patched by the operations that change branches
+	 *
+	 * @return RefSnapshot
+	 * @throws Exception
+	 */
+	public synchronized RefSnapshot getRefSnapshot() throws Exception {
+		if (refSnapshot == null) {
+			Tracer.Span span 		= Tracer.start("gitflow", "getRefSnapshot");
+			RefSnapshot snapshot 	= new RefSnapshot(gitFlowPattern.getGitSeparator());
+			int refs 				= 0;
+
+			try {
+				for (Ref ref : getGit().getRepository().getRefDatabase().getRefs(Constants.R_HEADS).values()) {
+					snapshot.putLocal(ref.getName().replace(Constants.R_HEADS, ""), ref);
+					refs++;
+				}
+
+				for (Ref ref : getGit().getRepository().getRefDatabase().getRefs(Constants.R_REMOTES).values()) {
+					snapshot.putRemote(getSimpleBranchName(ref), ref);
+					refs++;
+				}
+			} catch (Exception e) {
+				throw span.fail(e);
+			} finally {
+				span.arg("refs", refs).end();
+			}
+
+			refSnapshot = snapshot;
+		}
+
+		return refSnapshot;
+	}
+
+
+	/**
+	 * List the refs of remote once (ls-remote), only the branches of gitflow and the tags, no object is fetched
+	 * From now on findBranch answers by the remote and not by the remote tracking branches, a branch changed on
+	 * remote is fetched alone when it is looked up
+	 *
+	 * @return RemoteSnapshot
+	 * @throws Exception
+	 */
+	public RemoteSnapshot loadRemoteSnapshot() throws Exception {
+		Tracer.Span span = Tracer.start("gitflow", "loadRemoteSnapshot");
+
+		try {
+			Map<String, ObjectId> refs = new LinkedHashMap<String, ObjectId>();
+
+			for (Map.Entry<String, ObjectId> remoteRef : getTransport().lsRemote().entrySet()) {
+				String refName = remoteRef.getKey();
+
+				if (refName.startsWith(Constants.R_TAGS) || (refName.startsWith(Constants.R_HEADS) && isGitFlowBranch(refName.substring(Constants.R_HEADS.length())))) {
+					refs.put(refName, remoteRef.getValue());
+				}
+			}
+
+			remoteSnapshot = new RemoteSnapshot(refs);
+			span.arg("refs", refs.size());
+
+			return remoteSnapshot;
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
+	}
+
+
+	/**
+	 * Returns the refs of remote listed at the start of goal, or null when they were not listed
+	 */
+	public RemoteSnapshot getRemoteSnapshot() {
+		return remoteSnapshot;
+	}
+
+
+	/**
+	 * Discard the snapshot of branches, it will be taken again on next lookup
+	 */
+	public synchronized void invalidateRefSnapshot() {
+		refSnapshot = null;
+	}
+
+
+	private synchronized void updateLocalBranch(String branchName) throws Exception {
+		if (refSnapshot != null) {
+			Ref ref = getGit().getRepository().getRefDatabase().getRef(Constants.R_HEADS + branchName);
+
+			if (ref == null) {
+				refSnapshot.removeLocal(branchName);
+			} else {
+				refSnapshot.putLocal(branchName, ref);
+			}
+		}
+	}
+
+
+	public Ref tag(String tagName, String message) throws Exception {
+		Tracer.Span span = Tracer.start("gitflow", "tag").arg("tag", tagName);
+
+		try {
+			getLog().info("Tagging " + tagName);
+			journal(Constants.R_TAGS + tagName);
+			Ref tag = getGit().tag().setName(tagName).setMessage(message).call();
+			getTagIndex().add(tag);
+			return tag;
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
+	}
+
+
+	public void merge(MergeGitFlow mergeGitFlow) throws Exception {
+		merge(mergeGitFlow, null);
+	}
+
+
+	public void merge(MergeGitFlow mergeGitFlow, MergeStrategy mergeStrategy) throws Exception {
+		Tracer.Span span = Tracer.start("gitflow", "merge").arg("from", mergeGitFlow.getTargetRef().getName()).arg("into", mergeGitFlow.getBranchName());
+
+		try {
+			if (mergeGitFlow.isInCore() && !getBranch().equals(mergeGitFlow.getBranchName())) {
+				mergeInCore(mergeGitFlow, mergeStrategy);
+				return;
+			}
+
+			getLog().info("Merging " + mergeGitFlow.getTargetRef().getName() + " into " + mergeGitFlow.getBranchName());
+			journalBranch(getBranch());
+			ObjectId head = getGit().getRepository().resolve(Constants.HEAD);
+			mergeGitFlow.setMergeBase(findMergeBase(head, mergeGitFlow.getTargetRef().getObjectId()));
+			fetchMissingBlobs(mergeGitFlow.getMergeBase(), head, mergeGitFlow.getTargetRef().getObjectId());
+
+			MergeResult mergeResult = null;
+
+			if (mergeStrategy == null) {
+				mergeResult = getGit().merge().include(mergeGitFlow.getTargetRef()).call();
+			} else {
+				mergeResult = getGit().merge().setStrategy(mergeStrategy).include(mergeGitFlow.getTargetRef()).call();
+			}
+
+			if (!mergeResult.getMergeStatus().isSuccessful()) {
+				processPreferentialConflicts(mergeGitFlow, mergeResult);
+			}
+
+			updateLocalBranch(getBranch());
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
+	}
+
+
+	/**
+	 * Merge the target ref into branch without checkout, the working directory and index stay untouched
+	 * The conflicts on ignoring files are resolved using the stage of mergeGitFlow
+	 */
+	private void mergeInCore(MergeGitFlow mergeGitFlow, MergeStrategy mergeStrategy) throws Exception {
+		getLog().info("Merging in-core " + mergeGitFlow.getTargetRef().getName() + " into " + mergeGitFlow.getBranchName());
+		journalBranch(mergeGitFlow.getBranchName());
+
+		Repository repository 	= getGit().getRepository();
+		Ref branchRef 			= findOrCreateLocalBranch(mergeGitFlow.getBranchName());
+		MergeStrategy strategy 	= mergeStrategy == null ? MergeStrategy.RECURSIVE : mergeStrategy;
+
+		// A base eh buscada antes do merge, num clone raso o historico eh aprofundado ate ela
+		mergeGitFlow.setMergeBase(findMergeBase(branchRef.getObjectId(), mergeGitFlow.getTargetRef().getObjectId()));
+		fetchMissingBlobs(mergeGitFlow.getMergeBase(), branchRef.getObjectId(), mergeGitFlow.getTargetRef().getObjectId());
+
+		RevWalk walk 			= RepositoryPool.borrowWalk(repository);
+		ObjectInserter inserter = repository.newObjectInserter();
+
+		try {
+			RevCommit ours 		= walk.parseCommit(branchRef.getObjectId());
+			RevCommit theirs 	= walk.parseCommit(mergeGitFlow.getTargetRef().getObjectId());
+			ObjectId merged 	= mergeCommits(mergeGitFlow, strategy, branchRef, ours, theirs, walk, inserter);
+
+			if (merged.equals(ours)) {
+				getLog().info("Already up-to-date");
+				return;
+			}
+
+			updateRef(branchRef, ours, merged, "merge " + mergeGitFlow.getTargetRef().getName() + ": " + (merged.equals(theirs) ? "Fast-forward" : "Merge made by " + strategy.getName()), false);
+		} finally {
+			inserter.release();
+			RepositoryPool.giveBack(repository, walk);
+		}
+	}
+
+
+	/**
+	 * Merge theirs into ours in-core
+	 *
+	 * @return The id of merge commit, ours when theirs is already merged or theirs when it is a fast-forward
+	 */
+	private ObjectId mergeCommits(MergeGitFlow mergeGitFlow, MergeStrategy strategy, Ref branchRef, RevCommit ours, RevCommit theirs, RevWalk walk, ObjectInserter inserter) throws Exception {
+		if (walk.isMergedInto(theirs, ours)) {
+			return ours;
+		}
+
+		if (walk.isMergedInto(ours, theirs)) {
+			return theirs;
+		}
+
+		Repository repository 	= getGit().getRepository();
+		Merger merger 			= strategy.newMerger(repository, true);
+		DirCache dirCache 		= DirCache.newInCore();
+		ObjectId tree 			= null;
+
+		if (merger instanceof ResolveMerger) {
+			((ResolveMerger) merger).setDirCache(dirCache);
+		}
+
+		if (merger.merge(ours, theirs)) {
+			tree = merger.getResultTreeId();
+		} else if (merger instanceof ResolveMerger && ((ResolveMerger) merger).getFailingPaths() == null) {
+			tree = resolvePreferentialConflicts(mergeGitFlow, ((ResolveMerger) merger).getUnmergedPaths(), dirCache, inserter);
+		} else if (merger instanceof ResolveMerger) {
+			throw buildConflictExeption(mergeGitFlow, ((ResolveMerger) merger).getFailingPaths().keySet());
+		} else {
+			throw buildConflictExeption(mergeGitFlow, new ArrayList<String>());
+		}
+
+		CommitBuilder commit 	= new CommitBuilder();
+		PersonIdent person 		= new PersonIdent(repository);
+
+		commit.setTreeId(tree);
+		commit.setParentIds(ours, theirs);
+		commit.setAuthor(person);
+		commit.setCommitter(person);
+		commit.setMessage(new MergeMessageFormatter().format(Collections.singletonList(mergeGitFlow.getTargetRef()), branchRef));
+
+		ObjectId commitId = inserter.insert(commit);
+		inserter.flush();
+
+		return commitId;
+	}
+
+
+	/**
+	 * Returns the best common ancestor off two commits, null when they have no common history
+	 * In a shallow clone the history off both commits is deepened step by step until the common ancestor is found
+	 */
+	public ObjectId findMergeBase(ObjectId commitA, ObjectId commitB) throws Exception {
+		ObjectId base = walkMergeBase(commitA, commitB);
+
+		for (int commits = DEEPEN_COMMITS; base == null && getPartialClone().isShallow(); commits *= 2) {
+			getLog().info("The common history of " + commitA.abbreviate(7).name() + " and " + commitB.abbreviate(7).name() + " is not in the shallow clone, deepening " + commits + " commits");
+
+			if (!getPartialClone().deepen(commits, commitA, commitB)) {
+				break;
+			}
+
+			base = walkMergeBase(commitA, commitB);
+		}
+
+		return base;
+	}
+
+
+	private ObjectId walkMergeBase(ObjectId commitA, ObjectId commitB) throws Exception {
+		Repository repository 	= getGit().getRepository();
+		RevWalk walk 			= RepositoryPool.borrowWalk(repository);
+
+		try {
+			walk.setRevFilter(RevFilter.MERGE_BASE);
+			walk.markStart(walk.parseCommit(commitA));
+			walk.markStart(walk.parseCommit(commitB));
+
+			RevCommit base = walk.next();
+			return base == null ? null : base.copy();
+		} finally {
+			RepositoryPool.giveBack(repository, walk);
+		}
+	}
+
+
+	/**
+	 * Returns the paths changed from the tree off commit to the index. After a merge the index has the merged tree
+	 *
+	 * @param commitId - The commit. Ex: the merge base
+	 * @return The paths relative to the work tree. Ex: core/src/main/java/App.java
+	 * @throws Exception
+	 */
+	public List<String> findChangedPaths(ObjectId commitId) throws Exception {
+		Repository repository 	= getGit().getRepository();
+		RevWalk walk 			= RepositoryPool.borrowWalk(repository);
+		TreeWalk treeWalk 		= new TreeWalk(repository);
+		List<String> paths 		= new ArrayList<String>();
+
+		try {
+			treeWalk.addTree(walk.parseCommit(commitId).getTree());
+			treeWalk.addTree(new DirCacheIterator(repository.readDirCache()));
+			treeWalk.setFilter(TreeFilter.ANY_DIFF);
+			treeWalk.setRecursive(true);
+
+			while (treeWalk.next()) {
+				paths.add(treeWalk.getPathString());
+			}
+
+			return paths;
+		} finally {
+			treeWalk.release();
+			RepositoryPool.giveBack(repository, walk);
+		}
+	}
+
+
+	/**
+	 * In a partial clone fetch at once the blobs missing locally that JGit will read
+	 * With two commits (a checkout) the blobs off second commit where it differs from the first one, with three
+	 * commits (a merge: base, ours and theirs) the changes off theirs and, where both sides changed, the blobs off all of them
+	 *
+	 * @param commits - The commits, null for no commit. Ex: the merge base off unrelated histories
+	 * @throws Exception
+	 */
+	private void fetchMissingBlobs(ObjectId... commits) throws Exception {
+		if (!getPartialClone().isPartial()) {
+			return;
+		}
+
+		Repository repository 	= getGit().getRepository();
+		RevWalk walk 			= RepositoryPool.borrowWalk(repository);
+		TreeWalk treeWalk 		= new TreeWalk(repository);
+		Set<ObjectId> blobs 	= new HashSet<ObjectId>();
+		int last 				= commits.length - 1;
+
+		try {
+			for (ObjectId commit : commits) {
+				if (commit == null) {
+					treeWalk.addTree(new EmptyTreeIterator());
+				} else {
+					treeWalk.addTree(walk.parseCommit(commit).getTree());
+				}
+			}
+
+			treeWalk.setFilter(TreeFilter.ANY_DIFF);
+			treeWalk.setRecursive(true);
+
+			while (treeWalk.next()) {
+				if (treeWalk.idEqual(0, last)) {
+					continue;
+				}
+
+				addBlob(blobs, treeWalk, last);
+
+				if (last == 2 && !treeWalk.idEqual(0, 1) && !treeWalk.idEqual(1, 2)) {
+					addBlob(blobs, treeWalk, 0);
+					addBlob(blobs, treeWalk, 1);
+				}
+			}
+		} finally {
+			treeWalk.release();
+			RepositoryPool.giveBack(repository, walk);
+		}
+
+		int fetched = getPartialClone().fetchMissing(blobs);
+
+		if (fetched > 0) {
+			getLog().info("Fetched " + fetched + " blobs missing in the partial clone");
+		}
 	}
 
 
-	public void setGit(Git git) {
-		this.git = git;
+	private void addBlob(Set<ObjectId> blobs, TreeWalk treeWalk, int index) {
+		if (treeWalk.getFileMode(index).getObjectType() == Constants.OBJ_BLOB) {
+			blobs.add(treeWalk.getObjectId(index));
+		}
 	}
 
-	public Git getGit() throws Exception {
-		if (git == null) {
-			git = Git.open(repository);
-		}
 
-		return git;
-	}
+	/**
+	 * Replay the merge on the new tip off remote branch, used when the push lost the race with another goal
+	 * The remote branch is fetched, the target ref is merged in-core into its tip and the local branch is moved
+	 * to the new merge, the working tree is reset when the branch is checked out
+	 *
+	 * @param mergeGitFlow - The merge done before the push
+	 * @return True when the tree off new merge is not the tree already built, so the project must be compiled again
+	 * @throws Exception
+	 */
+	public boolean replayMerge(MergeGitFlow mergeGitFlow) throws Exception {
+		Tracer.Span span 	= Tracer.start("gitflow", "replayMerge").arg("from", mergeGitFlow.getTargetRef().getName()).arg("into", mergeGitFlow.getBranchName());
+		String branchName 	= mergeGitFlow.getBranchName();
+
+		try {
+			getLog().info("Replaying merge of " + mergeGitFlow.getTargetRef().getName() + " on the new tip of " + branchName);
+			journalBranch(branchName);
+
+			getTransport().fetch(buildFetchRefSpec(branchName));
+			invalidateRefSnapshot();
+
+			Repository repository 	= getGit().getRepository();
+			Ref branchRef 			= repository.getRefDatabase().getRef(Constants.R_HEADS + branchName);
+			Ref tipRef 				= findRemoteTrackingBranch(branchName);
+			RevWalk walk 			= RepositoryPool.borrowWalk(repository);
+			ObjectInserter inserter = repository.newObjectInserter();
+
+			if (branchRef == null || tipRef == null) {
+				throw new MojoExecutionException("Branch " + branchName + " not found");
+			}
 
+			try {
+				mergeGitFlow.setMergeBase(findMergeBase(tipRef.getObjectId(), mergeGitFlow.getTargetRef().getObjectId()));
+				fetchMissingBlobs(mergeGitFlow.getMergeBase(), tipRef.getObjectId(), mergeGitFlow.getTargetRef().getObjectId());
 
-	public String getBranch() throws Exception {
-		return getGit().getRepository().getBranch();
-	}
+				RevCommit local 	= walk.parseCommit(branchRef.getObjectId());
+				RevCommit tip 		= walk.parseCommit(tipRef.getObjectId());
+				RevCommit theirs 	= walk.parseCommit(mergeGitFlow.getTargetRef().getObjectId());
+				ObjectId merged 	= mergeCommits(mergeGitFlow, MergeStrategy.RECURSIVE, branchRef, tip, theirs, walk, inserter);
+
+				if (getBranch().equals(branchName)) {
+					fetchMissingBlobs(local, merged);
+				}
 
+				updateRef(branchRef, local, merged, "replay merge " + mergeGitFlow.getTargetRef().getName() + " on " + tip.name(), true);
 
-	public Ref tag(String tagName, String message) throws Exception {
-		getLog().info("Tagging " + tagName);
-		return getGit().tag().setName(tagName).setMessage(message).call();
-	}
+				if (getBranch().equals(branchName)) {
+					getGit().reset().setMode(ResetType.HARD).call();
+				}
 
+				boolean changed = !walk.parseCommit(merged).getTree().equals(local.getTree());
+				span.arg("treeChanged", String.valueOf(changed));
 
-	public void merge(MergeGitFlow mergeGitFlow) throws Exception {
-		merge(mergeGitFlow, null);
+				return changed;
+			} finally {
+				inserter.release();
+				RepositoryPool.giveBack(repository, walk);
+			}
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
 	}
 
 
-	public void merge(MergeGitFlow mergeGitFlow, MergeStrategy mergeStrategy) throws Exception {
-		getLog().info("Merging " + mergeGitFlow.getTargetRef().getName() + " into " + mergeGitFlow.getBranchName());
+	/**
+	 * Resolve the conflicts of ignoring files on the merged index and write the tree
+	 *
+	 * @return The id of tree
+	 */
+	private ObjectId resolvePreferentialConflicts(MergeGitFlow mergeGitFlow, List<String> unmergedPaths, DirCache dirCache, ObjectInserter inserter) throws Exception {
+		List<String> conflicts 	= new ArrayList<String>();
+		Set<String> resolved 	= new HashSet<String>(splitPreferentialConflicts(mergeGitFlow, unmergedPaths, conflicts));
+		int stage 				= Stage.OURS.equals(mergeGitFlow.getIgnoringFilesStage()) ? DirCacheEntry.STAGE_2 : DirCacheEntry.STAGE_3;
+
+		if (conflicts.size() > 0) {
+			throw buildConflictExeption(mergeGitFlow, conflicts);
+		}
 
-		MergeResult mergeResult = null;
+		DirCache result 		= DirCache.newInCore();
+		DirCacheBuilder builder = result.builder();
 
-		if (mergeStrategy == null) {
-			mergeResult = getGit().merge().include(mergeGitFlow.getTargetRef()).call();
-		} else {
-			mergeResult = getGit().merge().setStrategy(mergeStrategy).include(mergeGitFlow.getTargetRef()).call();
+		for (int i = 0; i < dirCache.getEntryCount(); i++) {
+			DirCacheEntry entry = dirCache.getEntry(i);
+
+			if (entry.getStage() == DirCacheEntry.STAGE_0) {
+				builder.add(entry);
+			} else if (entry.getStage() == stage && resolved.contains(entry.getPathString())) {
+				DirCacheEntry resolvedEntry = new DirCacheEntry(entry.getPathString());
+				resolvedEntry.setFileMode(entry.getFileMode());
+				resolvedEntry.setObjectId(entry.getObjectId());
+				builder.add(resolvedEntry);
+			}
 		}
 
-		if (!mergeResult.getMergeStatus().isSuccessful()) {
-			processPreferentialConflicts(mergeGitFlow, mergeResult);
+		builder.finish();
+
+		return result.writeTree(inserter);
+	}
+
+
+	private void updateRef(Ref branchRef, ObjectId oldId, ObjectId newId, String message, boolean force) throws Exception {
+		RefUpdate refUpdate = getGit().getRepository().updateRef(branchRef.getName());
+		refUpdate.setExpectedOldObjectId(oldId);
+		refUpdate.setNewObjectId(newId);
+		refUpdate.setForceUpdate(force);
+		refUpdate.setRefLogMessage(message, false);
+
+		RefUpdate.Result result = refUpdate.update();
+
+		if (!RefUpdate.Result.FAST_FORWARD.equals(result) && !RefUpdate.Result.NEW.equals(result) && !RefUpdate.Result.FORCED.equals(result) && !RefUpdate.Result.NO_CHANGE.equals(result)) {
+			throw new MojoExecutionException("Could not update " + branchRef.getName() + ": " + result.name());
 		}
+
+		updateLocalBranch(Repository.shortenRefName(branchRef.getName()));
 	}
 
 
 	private void processPreferentialConflicts(MergeGitFlow mergeGitFlow, MergeResult merge) throws Exception {
-		List<String> toRemove = new ArrayList<String>();
+		List<String> conflicts 	= new ArrayList<String>();
+		List<String> resolved 	= splitPreferentialConflicts(mergeGitFlow, merge.getConflicts().keySet(), conflicts);
 
-		for (String key : merge.getConflicts().keySet()) {
-			for (String file : mergeGitFlow.getIgnoringFiles()) {
-				if (key.contains(file)) {
-					checkoutFiles(mergeGitFlow.getBranchName(), key, mergeGitFlow.getIgnoringFilesStage());
-					toRemove.add(key);
-				}
-			}
+		if (conflicts.size() > 0) {
+			throw buildConflictExeption(mergeGitFlow, conflicts);
 		}
 
-		for (String key : toRemove) {
-			merge.getConflicts().remove(key);
-		}
+		checkoutFiles(mergeGitFlow.getBranchName(), resolved, mergeGitFlow.getIgnoringFilesStage());
+		commit("Commiting resolved conflicts");
+	}
 
-		if (merge.getConflicts().size() > 0) {
-			throw buildConflictExeption(mergeGitFlow, merge);
+
+	/**
+	 * Split the conflicting paths into the paths resolved by ignoring files and the paths left for the user
+	 *
+	 * @param mergeGitFlow - The merge
+	 * @param paths - The conflicting paths
+	 * @param conflicts - Receives the paths that still have conflicts
+	 * @return The paths resolved using the stage of ignoring files
+	 */
+	private List<String> splitPreferentialConflicts(MergeGitFlow mergeGitFlow, Collection<String> paths, List<String> conflicts) {
+		PathSuffixMatcher matcher 	= new PathSuffixMatcher(mergeGitFlow.getIgnoringFiles());
+		List<String> resolved 		= new ArrayList<String>();
+
+		for (String path : paths) {
+			if (matcher.matches(path)) {
+				resolved.add(path);
+			} else {
+				conflicts.add(path);
+			}
 		}
 
-		commit("Commiting resolved conflicts");
+		getLog().info(resolved.size() + " conflicting files resolved using " + mergeGitFlow.getIgnoringFilesStage().toString() + ", " + conflicts.size() + " left to resolve manually");
+
+		return resolved;
 	}
 
 
 	public String deleteRemoteBranch(Ref branchRef) throws Exception {
-		String simpleName = getSimpleBranchName(branchRef);
+		return deleteRemoteBranchByName(getSimpleBranchName(branchRef));
+	}
+
 
-		deleteLocalBranch(simpleName);
+	private String deleteRemoteBranchByName(String simpleName) throws Exception {
+		Tracer.Span span = Tracer.start("gitflow", "deleteRemoteBranch").arg("branch", simpleName);
 
-		return gitExecutor.execute("push", "origin", ":" + simpleName);
+		try {
+			deleteLocalBranch(simpleName);
+			getRefSnapshot().removeRemote(simpleName);
+
+			if (remoteSnapshot != null && remoteSnapshot.getId(gitFlowPattern.getPrefixGitHeads() + simpleName) == null) {
+				getLog().info("Branch " + simpleName + " is not on remote anymore");
+				return null;
+			}
+
+			return push(gitFlowPattern.getPrefixGitHeads() + simpleName, ":" + gitFlowPattern.getPrefixGitHeads() + simpleName, false);
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
 	}
 
 
@@ -132,139 +1207,779 @@ public abstract class GitFlow {
 
 
 	public void deleteRemoteBranch(String version, BranchType branchType) throws Exception {
-		getLog().info("Deleting " + branchType.toString() + " branch of release " + version);
+		Tracer.Span span = Tracer.start("gitflow", "deleteRemoteBranches").arg("release", version).arg("branchType", branchType.toString());
+
+		try {
+			getLog().info("Deleting " + branchType.toString() + " branch of release " + version);
+
+			Set<String> branches = getRefSnapshot().findByPrefix(branchType.toString(), version);
+
+			// Os branches que ainda nao foram buscados do remoto tambem sao apagados
+			if (remoteSnapshot != null) {
+				branches.addAll(remoteSnapshot.findByPrefix(buildDevBranchName(branchType.toString(), version, "")));
+			}
 
-		List<String> deleted = new ArrayList<String>();
-		String release = branchType.toString() + gitFlowPattern.getGitSeparator() + version;
+			span.arg("branches", branches.size());
 
-		for (Ref b : getGit().branchList().setListMode(ListMode.ALL).call()) {
-			if (b.getName().contains(release) && !deleted.contains(getSimpleBranchName(b))) {
-				deleteRemoteBranch(b);
-				deleted.add(getSimpleBranchName(b));
+			for (String simpleName : branches) {
+				deleteRemoteBranchByName(simpleName);
 			}
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
 		}
 	}
 
 
 	public String deleteLocalBranch(String branchName) throws Exception {
-		getLog().info("Deleting local branch " + branchName);
+		Tracer.Span span = Tracer.start("gitflow", "deleteLocalBranch").arg("branch", branchName);
 
-		if (getBranch().equals(branchName)) {
-			throw new MojoExecutionException("Please change to another branch before delete");
-		}
+		try {
+			getLog().info("Deleting local branch " + branchName);
 
-		if (findLocalBranch(branchName) != null) {
-			return gitExecutor.execute("branch", "-D", branchName);
-		}
+			if (getBranch().equals(branchName)) {
+				throw new MojoExecutionException("Please change to another branch before delete");
+			}
 
-		return null;
+			if (findLocalBranch(branchName) != null) {
+				journalBranch(branchName);
+				String result = gitExecutor.execute("branch", "-D", branchName).getTail();
+				getRefSnapshot().removeLocal(branchName);
+				return result;
+			}
+
+			return null;
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
 	}
 
 
 	public String deleteTag(String tagName) throws Exception {
-		return gitExecutor.execute("push", "origin", ":" + tagName);
+		Tracer.Span span = Tracer.start("gitflow", "deleteTag").arg("tag", tagName);
+
+		try {
+			return push(Constants.R_TAGS + tagName, ":" + Constants.R_TAGS + tagName, false);
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
 	}
 
 
 	public Ref reset(String branchName) throws Exception {
-		getLog().info("Reseting into " + branchName);
-		return getGit().reset().setMode(ResetType.HARD).setRef(branchName).call();
+		Tracer.Span span = Tracer.start("gitflow", "reset").arg("branch", branchName);
+
+		try {
+			getLog().info("Reseting into " + branchName);
+			journalBranch(getBranch());
+			fetchMissingBlobs(getGit().getRepository().resolve(Constants.HEAD), getGit().getRepository().resolve(branchName));
+			Ref ref = getGit().reset().setMode(ResetType.HARD).setRef(branchName).call();
+			updateLocalBranch(getBranch());
+			return ref;
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
 	}
 
 
 	public Ref checkoutBranchForced(String branchName) throws Exception {
-		getLog().info("Checkout forced into " + branchName);
-		return getGit().checkout().setCreateBranch(false).setForce(true).setName(branchName).call();
+		Tracer.Span span = Tracer.start("gitflow", "checkoutBranchForced").arg("branch", branchName);
+
+		try {
+			getLog().info("Checkout forced into " + branchName);
+			fetchMissingBlobs(getGit().getRepository().resolve(Constants.HEAD), getGit().getRepository().resolve(branchName));
+			return getGit().checkout().setCreateBranch(false).setForce(true).setName(branchName).call();
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
 	}
 
 
 	public Ref checkoutBranch(String branchName) throws Exception {
-		getLog().info("Checkout into " + branchName);
-		Boolean branchExists = getGit().getRepository().getRef(branchName) != null;
+		Tracer.Span span = Tracer.start("gitflow", "checkoutBranch").arg("branch", branchName);
+
+		try {
+			getLog().info("Checkout into " + branchName);
+			Ref branchRef = findOrCreateLocalBranch(branchName);
+			fetchMissingBlobs(getGit().getRepository().resolve(Constants.HEAD), branchRef.getObjectId());
+
+			return getGit().checkout().setName(branchName).call();
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
+	}
+
+
+	private Ref findOrCreateLocalBranch(String branchName) throws Exception {
+		Ref ref = getGit().getRepository().getRef(branchName);
+
+		if (ref == null) {
+			// O branch local eh criado do remoto atual e nao do ultimo fetch
+			if (remoteSnapshot != null && isGitFlowBranch(branchName)) {
+				syncRemoteTrackingBranch(branchName);
+			}
+
+			journalBranch(branchName);
+			ref = getGit().branchCreate().setName(branchName).setUpstreamMode(SetupUpstreamMode.TRACK).setStartPoint("origin/" + branchName).call();
+			updateLocalBranch(branchName);
+		}
+
+		return ref;
+	}
+
+
+	/**
+	 * Move the branch to start point without checkout, like reset --hard when the branch is checked out
+	 *
+	 * @param branchName - Name of local branch. Ex: master
+	 * @param startPoint - Name of ref. Ex: origin/master
+	 * @return Ref
+	 * @throws Exception
+	 */
+	public Ref resetBranch(String branchName, String startPoint) throws Exception {
+		Tracer.Span span = Tracer.start("gitflow", "resetBranch").arg("branch", branchName).arg("startPoint", startPoint);
+
+		try {
+			if (getBranch().equals(branchName)) {
+				return reset(startPoint);
+			}
 
-		if (!branchExists) {
-			getGit().branchCreate().setName(branchName).setUpstreamMode(SetupUpstreamMode.TRACK).setStartPoint("origin/" + branchName).call();
+			getLog().info("Reseting " + branchName + " into " + startPoint);
+			journalBranch(branchName);
+			Ref ref = getGit().branchCreate().setName(branchName).setForce(true).setStartPoint(startPoint).call();
+			updateLocalBranch(branchName);
+			return ref;
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
 		}
+	}
+
+
+	/**
+	 * Bring the local branch up to its remote tracking branch before the goal works on it, the local branch is created when it does not exist
+	 * The local commits not pushed yet are kept, the branch is refused when it diverged from remote
+	 *
+	 * @param branchName - Name of local branch. Ex: hotfix/issue312
+	 * @return Ref - The local branch
+	 * @throws Exception
+	 */
+	public Ref syncLocalBranch(String branchName) throws Exception {
+		Tracer.Span span = Tracer.start("gitflow", "syncLocalBranch").arg("branch", branchName);
+
+		try {
+			Repository repository 	= getGit().getRepository();
+			Ref branchRef 			= repository.getRefDatabase().getRef(Constants.R_HEADS + branchName);
+			Ref trackingRef 		= findRemoteTrackingBranch(branchName);
+
+			if (branchRef == null || trackingRef == null) {
+				return findOrCreateLocalBranch(branchName);
+			}
+
+			RevWalk walk = RepositoryPool.borrowWalk(repository);
+
+			try {
+				RevCommit local 	= walk.parseCommit(branchRef.getObjectId());
+				RevCommit remote 	= walk.parseCommit(trackingRef.getObjectId());
+
+				if (walk.isMergedInto(remote, local)) {
+					return branchRef;
+				}
 
-		return getGit().checkout().setName(branchName).call();
+				if (!walk.isMergedInto(local, remote)) {
+					throw new MojoExecutionException("The branch " + branchName + " diverged from " + trackingRef.getName() + ", rebase or reset it before execute this goal!");
+				}
+			} finally {
+				RepositoryPool.giveBack(repository, walk);
+			}
+
+			journalBranch(branchName);
+			fastForward(branchName);
+
+			return repository.getRefDatabase().getRef(Constants.R_HEADS + branchName);
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
 	}
 
 
 	public Ref checkoutFiles(String branchName, String file, Stage stage) throws Exception {
-		getLog().info("Updating file " + file + " from branch " + branchName + " using " + stage.toString());
-		Ref ref = getGit().checkout().addPath(file).setName(branchName).setCreateBranch(false).setStage(stage).call();
-		getGit().add().addFilepattern(file).call();
-		return ref;
+		return checkoutFiles(branchName, Collections.singletonList(file), stage);
+	}
+
+
+	/**
+	 * Checkout all files using the stage and add them to index, the index is written once for all files
+	 *
+	 * @param branchName - Name of branch
+	 * @param files - Paths of files
+	 * @param stage - Stage of conflicting files
+	 * @return Ref
+	 * @throws Exception
+	 */
+	public Ref checkoutFiles(String branchName, Collection<String> files, Stage stage) throws Exception {
+		Tracer.Span span = Tracer.start("gitflow", "checkoutFiles").arg("branch", branchName).arg("files", files.size());
+
+		try {
+			getLog().info("Updating " + files.size() + " files from branch " + branchName + " using " + stage.toString());
+
+			if (files.isEmpty()) {
+				return null;
+			}
+
+			CheckoutCommand checkout 	= getGit().checkout().setName(branchName).setCreateBranch(false).setStage(stage);
+			AddCommand add 				= getGit().add();
+
+			for (String file : files) {
+				checkout.addPath(file);
+				add.addFilepattern(file);
+			}
+
+			Ref ref = checkout.call();
+			add.call();
+			return ref;
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
 	}
 
 
 	public Ref createBranch(String branchName) throws Exception {
-		getLog().info("Creating branch " + branchName);
-		return getGit().checkout().setCreateBranch(true).setName(branchName).call();
+		Tracer.Span span = Tracer.start("gitflow", "createBranch").arg("branch", branchName);
+
+		try {
+			getLog().info("Creating branch " + branchName);
+			journalBranch(branchName);
+			Ref ref = getGit().checkout().setCreateBranch(true).setName(branchName).call();
+			updateLocalBranch(branchName);
+			return ref;
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
 	}
 
 
+	/**
+	 * Add all files of working tree and commit
+	 *
+	 * @param message - Message of commit
+	 * @return RevCommit
+	 * @throws Exception
+	 */
 	public RevCommit commit(String message) throws Exception {
-		getLog().info("Commiting... " + message);
-		getGit().add().addFilepattern(".").call();
-		return getGit().commit().setAll(true).setMessage(message).call();
+		Tracer.Span span = Tracer.start("gitflow", "commit");
+
+		try {
+			getLog().info("Commiting... " + message);
+			journalBranch(getBranch());
+			getGit().add().addFilepattern(".").call();
+			RevCommit commit = getGit().commit().setAll(true).setMessage(message).call();
+			updateLocalBranch(getBranch());
+			return commit;
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
+	}
+
+
+	/**
+	 * Add only the paths and commit, the rest off working tree is not scanned
+	 *
+	 * @param message - Message of commit
+	 * @param paths - Paths relative to working tree, when empty only the index is commited. Ex: module/pom.xml
+	 * @return RevCommit
+	 * @throws Exception
+	 */
+	public RevCommit commit(String message, Collection<String> paths) throws Exception {
+		Tracer.Span span = Tracer.start("gitflow", "commit").arg("paths", paths.size());
+
+		try {
+			getLog().info("Commiting " + paths.size() + " files... " + message);
+			journalBranch(getBranch());
+
+			if (!paths.isEmpty()) {
+				AddCommand add = getGit().add();
+
+				for (String path : paths) {
+					add.addFilepattern(path);
+				}
+
+				add.call();
+			}
+
+			RevCommit commit = getGit().commit().setMessage(message).call();
+			updateLocalBranch(getBranch());
+			return commit;
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
+	}
+
+
+	/**
+	 * Convert the files into paths relative to working tree, files outside working tree are ignored
+	 *
+	 * @param files - The files. Ex: /home/project/module/pom.xml
+	 * @return The paths. Ex: module/pom.xml
+	 * @throws Exception
+	 */
+	public List<String> getRepositoryPaths(Collection<File> files) throws Exception {
+		String workTree 	= getGit().getRepository().getWorkTree().getCanonicalPath() + File.separator;
+		List<String> paths 	= new ArrayList<String>();
+
+		for (File file : files) {
+			String path = file.getCanonicalPath();
+
+			if (path.startsWith(workTree)) {
+				paths.add(path.substring(workTree.length()).replace(File.separatorChar, '/'));
+			}
+		}
+
+		return paths;
+	}
+
+
+	/**
+	 * Fetch only the refs off gitflow: master, develop, the release and hotfix branches, the feature and bugfix branches
+	 * off the release being operated, the tags off its release line and the last tag off each other release line
+	 * The remote refs are listed first, so only the refs changed since the last fetch are asked, with explicit refspecs.
+	 * Then the local branches behind their remote branch are fast-forwarded, the branches with local commits are not touched
+	 *
+	 * @param releaseVersion - The release being operated or null. Ex: 1.4
+	 * @return The local branches fast-forwarded
+	 * @throws Exception
+	 */
+	public List<String> fetch(String releaseVersion) throws Exception {
+		Tracer.Span span = Tracer.start("gitflow", "fetch").arg("release", releaseVersion);
+
+		try {
+			Map<String, ObjectId> remoteRefs 	= listRemoteRefs();
+			List<String> branches 				= fetchRefs(remoteRefs, selectFetchRefs(remoteRefs, releaseVersion, true));
+			List<String> forwarded 				= new ArrayList<String>();
+
+			pruneRemoteTrackingBranches(branches, releaseVersion);
+
+			for (String branchName : branches) {
+				if (fastForward(branchName)) {
+					forwarded.add(branchName);
+				}
+			}
+
+			invalidateRefSnapshot();
+			span.arg("forwarded", forwarded.size());
+
+			return forwarded;
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
+	}
+
+
+	/**
+	 * Fetch only the tags off fetch(releaseVersion), without their history in a shallow clone
+	 * Used by the goals on shallow clones, which usually have no tags to resolve the versions
+	 *
+	 * @param releaseVersion - The release being operated or null. Ex: 1.4
+	 * @throws Exception
+	 */
+	public void fetchTags(String releaseVersion) throws Exception {
+		Tracer.Span span = Tracer.start("gitflow", "fetchTags").arg("release", releaseVersion);
+
+		try {
+			Map<String, ObjectId> remoteRefs = listRemoteRefs();
+			fetchRefs(remoteRefs, selectFetchRefs(remoteRefs, releaseVersion, false));
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
+	}
+
+
+	/**
+	 * Returns the refs of remote snapshot, the remote is only listed again when there is no snapshot
+	 */
+	private Map<String, ObjectId> listRemoteRefs() throws Exception {
+		return remoteSnapshot == null ? getTransport().lsRemote() : remoteSnapshot.getRefs();
+	}
+
+
+	/**
+	 * Fetch the selected remote refs changed since the last fetch, with explicit refspecs
+	 * A ref whose object is already in the repository is created or moved locally. In a shallow clone the refs off
+	 * commits not in the repository are fetched without history, the other refs can not be fetched so because git
+	 * would mark their commits as shallow and cut the history already cloned
+	 *
+	 * @param remoteRefs - All refs listed by lsRemote
+	 * @param selected - The refs to fetch
+	 * @return The branches off selected refs
+	 */
+	private List<String> fetchRefs(Map<String, ObjectId> remoteRefs, Map<String, ObjectId> selected) throws Exception {
+		Repository repository 		= getGit().getRepository();
+		boolean shallow 			= getPartialClone().isShallow();
+		List<String> branches 		= new ArrayList<String>();
+		List<String> refSpecs 		= new ArrayList<String>();
+		List<String> shallowSpecs 	= new ArrayList<String>();
+		int local 					= 0;
+
+		for (Map.Entry<String, ObjectId> remoteRef : selected.entrySet()) {
+			String refName 	= remoteRef.getKey();
+			ObjectId id 	= remoteRef.getValue();
+
+			if (refName.startsWith(Constants.R_TAGS)) {
+				Ref tag 		= repository.getRefDatabase().getRef(refName);
+				ObjectId commit = remoteRefs.containsKey(refName + GitTransport.PEELED_SUFFIX) ? remoteRefs.get(refName + GitTransport.PEELED_SUFFIX) : id;
+
+				// Uma tag local diferente da remota nao eh sobrescrita
+				if (tag != null) {
+					if (!tag.getObjectId().equals(id)) {
+						getLog().warn("Tag " + refName + " is different on remote, it is not fetched");
+					}
+				} else if (repository.hasObject(id)) {
+					createRef(refName, id);
+					local++;
+				} else if (shallow && !repository.hasObject(commit)) {
+					shallowSpecs.add(refName + ":" + refName);
+				} else {
+					refSpecs.add(refName + ":" + refName);
+				}
+			} else {
+				String branchName 	= refName.substring(Constants.R_HEADS.length());
+				Ref trackingRef 	= findRemoteTrackingBranch(branchName);
+
+				if (trackingRef == null || !trackingRef.getObjectId().equals(id)) {
+					if (repository.hasObject(id)) {
+						moveRemoteTrackingBranch(branchName, id);
+						local++;
+					} else if (shallow) {
+						shallowSpecs.add("+" + buildFetchRefSpec(branchName));
+					} else {
+						refSpecs.add("+" + buildFetchRefSpec(branchName));
+					}
+				}
+
+				branches.add(branchName);
+			}
+		}
+
+		getLog().info("Fetching " + (refSpecs.size() + shallowSpecs.size()) + " of " + selected.size() + " gitflow refs" + (local > 0 ? ", " + local + " refs updated from local objects" : ""));
+
+		if (!refSpecs.isEmpty()) {
+			getTransport().fetch(refSpecs.toArray(new String[refSpecs.size()]));
+		}
+
+		if (!shallowSpecs.isEmpty()) {
+			getPartialClone().fetch(1, shallowSpecs.toArray(new String[shallowSpecs.size()]));
+		}
+
+		return branches;
+	}
+
+
+	private void createRef(String refName, ObjectId id) throws Exception {
+		RefUpdate refUpdate = getGit().getRepository().updateRef(refName);
+		refUpdate.setExpectedOldObjectId(ObjectId.zeroId());
+		refUpdate.setNewObjectId(id);
+
+		RefUpdate.Result result = refUpdate.update();
+
+		if (!RefUpdate.Result.NEW.equals(result)) {
+			throw new MojoExecutionException("Could not create " + refName + ": " + result.name());
+		}
+	}
+
+
+	private void moveRemoteTrackingBranch(String branchName, ObjectId id) throws Exception {
+		String refName 		= Constants.R_REMOTES + gitFlowPattern.getOriginName() + "/" + branchName;
+		RefUpdate refUpdate = getGit().getRepository().updateRef(refName);
+		refUpdate.setNewObjectId(id);
+		refUpdate.setForceUpdate(true);
+
+		RefUpdate.Result result = refUpdate.update();
+
+		if (!RefUpdate.Result.NEW.equals(result) && !RefUpdate.Result.FORCED.equals(result) && !RefUpdate.Result.FAST_FORWARD.equals(result) && !RefUpdate.Result.NO_CHANGE.equals(result)) {
+			throw new MojoExecutionException("Could not update " + refName + ": " + result.name());
+		}
+	}
+
+
+	/**
+	 * Returns the remote refs fetched by fetch(releaseVersion). The tags not matching the tag version pattern are ignored
+	 *
+	 * @param branches - False to select only the tags
+	 */
+	private Map<String, ObjectId> selectFetchRefs(Map<String, ObjectId> remoteRefs, String releaseVersion, boolean branches) {
+		Map<String, ObjectId> selected 	= new LinkedHashMap<String, ObjectId>();
+		Map<String, Version> lastTags 	= new HashMap<String, Version>();
+		Map<String, String> lastNames 	= new HashMap<String, String>();
+		String tagPrefix 				= gitFlowPattern.getPrefixGitTag() + gitFlowPattern.getGitSeparator();
+
+		for (Map.Entry<String, ObjectId> remoteRef : remoteRefs.entrySet()) {
+			String refName = remoteRef.getKey();
+
+			if (branches && refName.startsWith(Constants.R_HEADS) && isGitFlowBranch(refName.substring(Constants.R_HEADS.length()), releaseVersion)) {
+				selected.put(refName, remoteRef.getValue());
+			}
+
+			if (!refName.startsWith(tagPrefix) || !gitFlowPattern.getTagVersionPattern().matcher(refName.substring(tagPrefix.length())).matches()) {
+				continue;
+			}
+
+			Version version = Version.parse(refName.substring(tagPrefix.length()));
+			String release 	= version.truncate(2).toString();
+			Version last 	= lastTags.get(release);
+
+			if (release.equals(releaseVersion)) {
+				selected.put(refName, remoteRef.getValue());
+			}
+
+			// A ultima tag de cada release basta para findLastTag
+			if (last == null || version.compareTo(last) > 0) {
+				lastTags.put(release, version);
+				lastNames.put(release, refName);
+			}
+		}
+
+		for (String refName : lastNames.values()) {
+			selected.put(refName, remoteRefs.get(refName));
+		}
+
+		return selected;
+	}
+
+
+	private boolean isGitFlowBranch(String branchName, String releaseVersion) {
+		String separator = gitFlowPattern.getGitSeparator();
+
+		if (branchName.equals(gitFlowPattern.getMasterName()) || branchName.equals(gitFlowPattern.getDevelopName())) {
+			return true;
+		}
+
+		if (branchName.startsWith(gitFlowPattern.getPrefixGitRelease() + separator) || branchName.startsWith(gitFlowPattern.getPrefixGitHotfix() + separator)) {
+			return true;
+		}
+
+		if (releaseVersion != null) {
+			for (DefaultBranchType type : DefaultBranchType.values()) {
+				if (branchName.startsWith(buildDevBranchName(type.name(), releaseVersion, ""))) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+
+	/**
+	 * Returns true for the branches off gitflow, with the feature and bugfix branches off any release
+	 */
+	private boolean isGitFlowBranch(String branchName) {
+		if (isGitFlowBranch(branchName, null)) {
+			return true;
+		}
+
+		for (DefaultBranchType type : DefaultBranchType.values()) {
+			if (branchName.startsWith(type.name() + gitFlowPattern.getGitSeparator())) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+
+	/**
+	 * Delete the remote tracking branches off gitflow whose branch was deleted on remote. Ex: origin/release/1.3 after publish-release
+	 *
+	 * @param branches - The gitflow branches found on remote
+	 */
+	private void pruneRemoteTrackingBranches(List<String> branches, String releaseVersion) throws Exception {
+		Repository repository 	= getGit().getRepository();
+		String trackingPrefix 	= Constants.R_REMOTES + gitFlowPattern.getOriginName() + "/";
+
+		for (Ref ref : repository.getRefDatabase().getRefs(trackingPrefix).values()) {
+			String branchName = ref.getName().substring(trackingPrefix.length());
+
+			if (!isGitFlowBranch(branchName, releaseVersion) || branches.contains(branchName)) {
+				continue;
+			}
+
+			getLog().info("Pruning " + ref.getName() + ", the branch was deleted on remote");
+
+			RefUpdate refUpdate = repository.updateRef(ref.getName());
+			refUpdate.setForceUpdate(true);
+			refUpdate.delete();
+		}
 	}
 
 
-	public String pull() throws Exception {
-		return gitExecutor.execute("pull");
+	/**
+	 * Move the local branch to its remote tracking branch when it is behind, the working tree is updated when the branch is checked out
+	 *
+	 * @return False when the local branch does not exist, is up to date or has local commits
+	 */
+	private boolean fastForward(String branchName) throws Exception {
+		Repository repository 	= getGit().getRepository();
+		Ref branchRef 			= repository.getRefDatabase().getRef(Constants.R_HEADS + branchName);
+		Ref trackingRef 		= findRemoteTrackingBranch(branchName);
+
+		if (branchRef == null || trackingRef == null || branchRef.getObjectId().equals(trackingRef.getObjectId())) {
+			return false;
+		}
+
+		RevWalk walk = RepositoryPool.borrowWalk(repository);
+
+		try {
+			if (!walk.isMergedInto(walk.parseCommit(branchRef.getObjectId()), walk.parseCommit(trackingRef.getObjectId()))) {
+				getLog().info("Branch " + branchName + " has local commits, it is not fast-forwarded");
+				return false;
+			}
+		} finally {
+			RepositoryPool.giveBack(repository, walk);
+		}
+
+		getLog().info("Fast-forwarding " + branchName + " to " + trackingRef.getObjectId().abbreviate(7).name());
+
+		if (getBranch().equals(branchName)) {
+			fetchMissingBlobs(branchRef.getObjectId(), trackingRef.getObjectId());
+			MergeResult merge = getGit().merge().include(trackingRef).setFastForward(FastForwardMode.FF_ONLY).call();
+
+			if (!merge.getMergeStatus().isSuccessful()) {
+				throw new MojoExecutionException("Could not fast-forward " + branchName + ": " + merge.getMergeStatus());
+			}
+		} else {
+			updateRef(branchRef, branchRef.getObjectId(), trackingRef.getObjectId(), "fetch: fast-forward", false);
+		}
+
+		return true;
 	}
 
 
 	public String pushBranch(String branchName) throws Exception {
-		return gitExecutor.execute("push", "--set-upstream", "origin", branchName);
+		return push(getGitFlowPattern().getPrefixGitHeads() + branchName, buildPushRefSpec(branchName), true);
 	}
 
 
 	public String pushTag(Ref tag) throws Exception {
 		getLog().info("Pushing Tag " + tag.getName());
 
-		return gitExecutor.execute("push", "origin", getVersionFromTag(tag));
+		return push(tag.getName(), tag.getName() + ":" + tag.getName(), false);
 	}
 
 
 	public String push() throws Exception {
 		getLog().info("Pushing commit");
 
-		return gitExecutor.execute("push");
+		return push(getGitFlowPattern().getPrefixGitHeads() + getBranch(), buildPushRefSpec(getBranch()), false);
+	}
+
+
+	public String push(String branchName) throws Exception {
+		getLog().info("Pushing branch " + branchName);
+
+		return push(getGitFlowPattern().getPrefixGitHeads() + branchName, buildPushRefSpec(branchName), false);
+	}
+
+
+	private String buildPushRefSpec(String branchName) {
+		return getGitFlowPattern().getPrefixGitHeads() + branchName + ":" + getGitFlowPattern().getPrefixGitHeads() + branchName;
+	}
+
+
+	private String buildFetchRefSpec(String branchName) {
+		return Constants.R_HEADS + branchName + ":" + Constants.R_REMOTES + getGitFlowPattern().getOriginName() + "/" + branchName;
 	}
 
 
 	private Ref findLocalBranch(String branch) throws Exception {
 		getLog().info("Looking for local branch " + branch);
 
-		for (Ref b : getGit().branchList().call()) {
-			if (branch.equals(b.getName().toLowerCase().replace("refs/heads/", ""))) {
-				return b;
-			}
-		}
-
-		return null;
+		return getRefSnapshot().findLocal(branch);
 	}
 
 
+	/**
+	 * Find the remote tracking branch. With the remote snapshot the branch must exist on remote: a branch deleted on
+	 * remote is not found even when its remote tracking branch is still there, and a branch changed on remote is fetched alone
+	 *
+	 * @param branch - Simple name off branch. Ex: release/1.4
+	 * @return Ref - The remote tracking branch or null
+	 * @throws Exception
+	 */
 	public Ref findBranch(String branch) throws Exception {
-		getLog().info("Looking for branch " + branch);
+		Tracer.Span span = Tracer.start("gitflow", "findBranch").arg("branch", branch);
+
+		try {
+			getLog().info("Looking for branch " + branch);
 
-		for (Ref b : getGit().branchList().setListMode(ListMode.REMOTE).call()) {
-			if (branch.equals(getSimpleBranchName(b))) {
-				return b;
+			if (remoteSnapshot != null && isGitFlowBranch(branch)) {
+				syncRemoteTrackingBranch(branch);
 			}
+
+			return getRefSnapshot().findRemote(branch);
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
 		}
+	}
 
-		return null;
+
+	/**
+	 * Put the remote tracking branch at the id off remote snapshot, fetching only this branch when its commit is not in the repository
+	 */
+	private void syncRemoteTrackingBranch(String branchName) throws Exception {
+		String refName 	= Constants.R_HEADS + branchName;
+		ObjectId id 	= remoteSnapshot.getId(refName);
+		Ref trackingRef = getRefSnapshot().findRemote(branchName);
+
+		if (id == null) {
+			if (trackingRef != null) {
+				getLog().info("Branch " + branchName + " was deleted on remote");
+				getRefSnapshot().removeRemote(branchName);
+			}
+		} else if (trackingRef == null || !trackingRef.getObjectId().equals(id)) {
+			getLog().info("Branch " + branchName + " changed on remote since the last fetch");
+			fetchRefs(remoteSnapshot.getRefs(), Collections.singletonMap(refName, id));
+			getRefSnapshot().putRemote(branchName, findRemoteTrackingBranch(branchName));
+		}
 	}
 
 
 	public MojoExecutionException buildConflictExeption(MergeGitFlow mergeGitFlow, MergeResult merge) {
+		return buildConflictExeption(mergeGitFlow, merge.getConflicts().keySet());
+	}
+
+
+	public MojoExecutionException buildConflictExeption(MergeGitFlow mergeGitFlow, Collection<String> conflicts) {
 		getLog().error("There is conflicts in the following files:");
 
-		for (String key : merge.getConflicts().keySet()) {
+		for (String key : conflicts) {
 			getLog().error(key);
 		}
 
@@ -280,8 +1995,25 @@ public abstract class GitFlow {
 
 
 	public RevCommit revertCommit(RevCommit commit) throws Exception {
-		getLog().info("Reverting commit");
-		return getGit().revert().include(commit).setStrategy(MergeStrategy.OURS).call();
+		Tracer.Span span = Tracer.start("gitflow", "revertCommit");
+
+		try {
+			getLog().info("Reverting commit");
+			journalBranch(getBranch());
+
+			// O revert precisa do pai do commit, que falta quando o commit esta na fronteira do clone raso
+			if (getPartialClone().isShallow(commit)) {
+				getPartialClone().deepen(1, commit);
+			}
+
+			RevCommit revert = getGit().revert().include(commit).setStrategy(MergeStrategy.OURS).call();
+			updateLocalBranch(getBranch());
+			return revert;
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
 	}
 
 	public String getSimpleBranchName(Ref ref) {
@@ -301,13 +2033,13 @@ public abstract class GitFlow {
 
 
 	public String getReleaseFromVersion(String fullVersion) {
-		Matcher matcher = getGitFlowPattern().getTagVersionPattern().matcher(fullVersion);
+		Version version = Version.parse(fullVersion);
 
-		if (matcher.matches()) {
-			return String.format("%s.%s", matcher.group(1), matcher.group(2));
+		if (version == null || version.size() < 2) {
+			return null;
 		}
 
-		return null;
+		return version.truncate(2).toString();
 	}
 
 
@@ -1,7 +1,15 @@
 package com.codegik.gitflow.core;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
@@ -11,13 +19,19 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.settings.Settings;
 import org.codehaus.plexus.util.StringUtils;
+import org.eclipse.jgit.lib.ObjectId;
 
 import com.codegik.gitflow.command.CommandExecutor;
+import com.codegik.gitflow.command.CommandOutput;
 import com.codegik.gitflow.command.MvnCommandExecutor;
 import com.codegik.gitflow.core.impl.DefaultGitFlow;
+import com.codegik.gitflow.daemon.GoalRegistry;
 
 
 public abstract class GitFlowMojo extends AbstractMojo {
+	// O resume, o trace e o log dos builds nao mudam o que o goal faz
+	private static final List<String> OUTPUT_PARAMETERS = Arrays.asList("resume", "trace", "traceFile", "buildLog");
+	private static GoalRegistry goalRegistry;
 
     @Parameter( defaultValue = "${project}", readonly = true )
     private MavenProject project;
@@ -31,53 +45,541 @@ public abstract class GitFlowMojo extends AbstractMojo {
     @Parameter( property = "skipTests" )
     private Boolean skipTests;
 
+    @Parameter( property = "gitTransport", defaultValue = "jgit" )
+    private String gitTransport;
+
+    @Parameter( property = "buildCache", defaultValue = "true" )
+    private Boolean buildCache;
+
+    @Parameter( property = "trace", defaultValue = "false" )
+    private Boolean trace;
+
+    @Parameter( property = "traceFile" )
+    private File traceFile;
+
+    @Parameter( property = "buildLog" )
+    private File buildLog;
+
+    @Parameter( property = "pushRetries", defaultValue = "3" )
+    private Integer pushRetries;
+
+    @Parameter( property = "resume", defaultValue = "false" )
+    private Boolean resume;
+
+    @Parameter( property = "selectiveBuild", defaultValue = "false" )
+    private Boolean selectiveBuild;
+
+    @Parameter( property = "fetch", defaultValue = "false" )
+    private Boolean fetch;
+
+    @Parameter( property = "convertPartialClone", defaultValue = "false" )
+    private Boolean convertPartialClone;
+
     private CommandExecutor mvnExecutor;
+    private Checkpoint checkpoint;
+    private List<String> resumedSteps 	= new ArrayList<String>();
+    private String currentStep;
+    private boolean restored;
 
     public abstract DefaultGitFlow getGitFlow();
     
     public abstract void run() throws Exception;
 
-    public abstract void rollback(Exception e) throws MojoExecutionException;
     
     
     public void execute() throws MojoExecutionException, MojoFailureException {
-    	mvnExecutor = new MvnCommandExecutor(getLog());
+    	if (mvnExecutor == null) {
+    		mvnExecutor = new MvnCommandExecutor(getLog());
+    		mvnExecutor.setWorkingDirectory(getBaseDir());
+    		mvnExecutor.setSpillFile(getBuildLog());
+    	}
+
+    	if (Boolean.TRUE.equals(getTrace())) {
+    		Tracer.enable();
+    	}
+
+    	Tracer.Span span = Tracer.start("mojo", getClass().getSimpleName());
+
+    	getGitFlow().setTransportType(getTransportType());
 
     	try {
+    		// O .git/config dos clones parciais so eh alterado com -DconvertPartialClone=true
+    		getGitFlow().prepareRepositoryFormat(Boolean.TRUE.equals(getConvertPartialClone()));
+
+    		// O rollback faz checkout forcado e reset --hard do branch inicial, as mudancas sem commit seriam perdidas
+    		getGitFlow().validateCleanWorkingTree();
+    		getGitFlow().startJournal();
+    		loadRemoteSnapshot();
+
+    		// Os fast-forwards do fetch nao entram no journal, o rollback nao volta os branches para tras do remoto
+    		if (Boolean.TRUE.equals(getFetch())) {
+    			getGitFlow().fetch(getReleaseVersion());
+    		} else if (getGitFlow().getPartialClone().isShallow()) {
+    			// Os clones rasos do CI normalmente nao tem as tags usadas para resolver as versoes
+    			getGitFlow().fetchTags(getReleaseVersion());
+    		}
+
+    		getGitFlow().startPushBatch();
+    		startCheckpoint();
     		run();
+    		completeStep();
+    		restoreCheckpoint();
+    		flushPushBatch();
+    		checkpoint.delete();
     		getLog().info("DONE");
     	} catch (Exception e) {
+    		getGitFlow().discardPushBatch();
+    		span.fail(e);
     		rollback(e);
+    	} finally {
+    		getGitFlow().close();
+    		span.end();
+    		writeTrace();
     	}
     }
 
 
-	protected String updatePomVersion(String newVersion) throws Exception {
+	/**
+	 * Put back all refs changed by the goal with the journal off GitFlow, then fail the goal
+	 * A failure while restoring is logged, the error off goal is the one reported
+	 *
+	 * @param e - The error off goal
+	 * @throws MojoExecutionException
+	 */
+	public void rollback(Exception e) throws MojoExecutionException {
+		getLog().error(e.getMessage());
+
+		// Sem journal o goal falhou antes de mudar qualquer coisa. Ex: working tree com mudancas
+		if (getGitFlow().getJournal() != null) {
+			getLog().info("Rolling back all changes");
+
+			try {
+				getGitFlow().rollback();
+			} catch (Exception e1) {
+				getLog().error("Could not roll back all changes: " + e1.getMessage());
+			}
+		}
+
+		if (checkpoint != null && !checkpoint.getSteps().isEmpty()) {
+			getLog().info("The steps " + checkpoint.getSteps() + " are saved in " + checkpoint.getFile().getPath() + ", execute the goal again with -Dresume=true to continue from the next step");
+		}
+
+		throw new MojoExecutionException("ERROR", e);
+	}
+
+
+	/**
+	 * List the refs off remote once, the validations and the pushes use them instead off the remote tracking branches
+	 * Without the remote (Ex: offline) the goal goes on with the remote tracking branches off the last fetch
+	 */
+	private void loadRemoteSnapshot() {
+		try {
+			getLog().info("Remote has " + getGitFlow().loadRemoteSnapshot().size() + " gitflow refs");
+		} catch (Exception e) {
+			getLog().warn("Could not list the remote refs, using the remote tracking branches: " + e.getMessage());
+		}
+	}
+
+
+	/**
+	 * Returns the release operated by the goal, its feature and bugfix branches and all its tags are fetched with -Dfetch
+	 *
+	 * @return The release or null when the goal does not operate a release. Ex: 1.4
+	 * @throws Exception
+	 */
+	protected String getReleaseVersion() throws Exception {
+		return null;
+	}
+
+
+	/**
+	 * Start the step off goal, the previous step is completed and saved in the checkpoint
+	 * All changes off refs must be done inside steps. Ex: if (step("compile-master")) { ... }
+	 *
+	 * @param name - The name off step, unique in the goal. Ex: merge-master
+	 * @return False when the step was completed by the execution being resumed, so it must be skipped
+	 * @throws Exception
+	 */
+	protected boolean step(String name) throws Exception {
+		completeStep();
+
+		if (resumedSteps.contains(name)) {
+			getLog().info("Skipping step " + name + ", it was completed by the previous execution");
+			return false;
+		}
+
+		restoreCheckpoint();
+
+		getLog().info("Step " + name);
+		currentStep = name;
+
+		return true;
+	}
+
+
+	/**
+	 * Keep a value computed by a step for the next steps, it is saved in the checkpoint with the step
+	 *
+	 * @param key - The key. Ex: tag
+	 * @param value - The value. Ex: 1.4.1
+	 */
+	protected void putStepValue(String key, String value) {
+		checkpoint.putValue(key, value);
+	}
+
+
+	/**
+	 * Returns a value kept by a previous step, also when the step was done by the resumed execution
+	 */
+	protected String getStepValue(String key) {
+		return checkpoint.getValue(key);
+	}
+
+
+	/**
+	 * Load the checkpoint when resuming, otherwise the old checkpoint off goal is discarded
+	 */
+	private void startCheckpoint() throws Exception {
+		checkpoint = new Checkpoint(new File(getGitFlow().getGit().getRepository().getDirectory(), "gitflow"), getGoalName());
+
+		if (!Boolean.TRUE.equals(getResume())) {
+			checkpoint.delete();
+		} else if (!checkpoint.load()) {
+			getLog().info("There is no checkpoint of " + getGoalName() + ", starting from the first step");
+		} else {
+			checkpoint.validate(buildSignature(), getGitFlow().getBranch(), getGitFlow().getGit().getRepository());
+			resumedSteps = checkpoint.getSteps();
+			getLog().info("Resuming " + getGoalName() + " after the steps " + resumedSteps);
+		}
+
+		checkpoint.setSignature(buildSignature());
+		checkpoint.setStartBranch(getGitFlow().getJournal().getBranch());
+	}
+
+
+	/**
+	 * Before the first step not completed, put the refs, the branch and the ref updates as they were after the last completed step
+	 */
+	private void restoreCheckpoint() throws Exception {
+		if (restored || resumedSteps.isEmpty()) {
+			return;
+		}
+
+		restored = true;
+		getGitFlow().restoreRefs(checkpoint.getRefs(), checkpoint.getBranch());
+		checkpoint.restorePushes(getGitFlow().getPushBatch());
+	}
+
+
+	/**
+	 * Save the current step in the checkpoint with the refs changed until now
+	 */
+	private void completeStep() throws Exception {
+		if (currentStep == null) {
+			return;
+		}
+
+		RefJournal journal = getGitFlow().getJournal();
+
+		for (Map.Entry<String, ObjectId> ref : journal.getLocalRefs().entrySet()) {
+			checkpoint.putStartRef(ref.getKey(), ref.getValue());
+		}
+
+		for (Map.Entry<String, ObjectId> ref : getGitFlow().findRefs(journal.getLocalRefs().keySet()).entrySet()) {
+			checkpoint.putRef(ref.getKey(), ref.getValue());
+		}
+
+		checkpoint.addStep(currentStep);
+		checkpoint.setBranch(getGitFlow().getBranch());
+		checkpoint.setPushes(getGitFlow().getPushBatch().getUpdates(), getGitFlow().getPushBatch().isSetUpstream());
+		checkpoint.save();
+
+		currentStep = null;
+	}
+
+
+	/**
+	 * Returns the name off goal from the class. Ex: FinishHotfixMojo is finish-hotfix
+	 */
+	private String getGoalName() {
+		return getClass().getSimpleName().replaceAll("Mojo$", "").replaceAll("([a-z])([A-Z])", "$1-$2").toLowerCase();
+	}
+
+
+	/**
+	 * The parameters off goal read from the plugin descriptor, the inherited ones included, with their values when the goal starts
+	 * The parameters that only change the output off goal do not make the checkpoint invalid
+	 */
+	private String buildSignature() throws Exception {
+		StringBuilder signature 	= new StringBuilder();
+		GoalRegistry.Goal goal 		= getGoalRegistry().find(getGoalName());
+
+		if (goal == null) {
+			throw new MojoExecutionException("The goal " + getGoalName() + " was not found on plugin descriptor");
+		}
+
+		for (GoalRegistry.Parameter parameter : goal.getParameters()) {
+			if (parameter.isComponent() || OUTPUT_PARAMETERS.contains(parameter.getField())) {
+				continue;
+			}
+
+			signature.append(parameter.getField()).append("=").append(getParameterValue(parameter.getField())).append(";");
+		}
+
+		return signature.toString();
+	}
+
+
+	private Object getParameterValue(String fieldName) throws Exception {
+		for (Class<?> type = getClass(); type != null; type = type.getSuperclass()) {
+			try {
+				Field field = type.getDeclaredField(fieldName);
+				field.setAccessible(true);
+				return field.get(this);
+			} catch (NoSuchFieldException e) {
+				continue;
+			}
+		}
+
+		throw new MojoExecutionException("Parameter " + fieldName + " not found on " + getClass().getName());
+	}
+
+
+	private static synchronized GoalRegistry getGoalRegistry() throws Exception {
+		if (goalRegistry == null) {
+			goalRegistry = new GoalRegistry();
+		}
+
+		return goalRegistry;
+	}
+
+
+	/**
+	 * Push the ref updates off goal, when another goal pushed the same branch first the goal can replay
+	 * its change on the new tip by retryRejectedPush, then the push is retried after a random backoff
+	 * The goals that do not replay their change fail at the first rejection
+	 */
+	private void flushPushBatch() throws Exception {
+		for (int attempt = 1; ; attempt++) {
+			try {
+				getGitFlow().flushPushBatch();
+				return;
+			} catch (RefUpdateRejectedException e) {
+				// Sem o replay do goal nao ha retry, falha sem esperar
+				if (attempt > getPushRetries() || !retryRejectedPush(e)) {
+					throw e;
+				}
+
+				// Espera aleatoria para os goals concorrentes nao colidirem de novo
+				long backoff = (long) ((200L << Math.min(attempt - 1, 5)) * (0.5 + Math.random()));
+				getLog().warn(e.getMessage() + ", retrying in " + backoff + "ms (" + attempt + "/" + getPushRetries() + ")");
+				Thread.sleep(backoff);
+			}
+		}
+	}
+
+
+	/**
+	 * Called when the push was rejected because a remote branch was changed by someone else
+	 * The goal must update its local branches on the new remote tip. The default does not retry
+	 *
+	 * @param e - The rejection with the changed refs
+	 * @return True to push again
+	 * @throws Exception
+	 */
+	protected boolean retryRejectedPush(RefUpdateRejectedException e) throws Exception {
+		return false;
+	}
+
+
+	/**
+	 * Log the summary of spans and write the trace file, a failure here does not fail the goal
+	 * Only the mojo that enabled the tracing writes it, the goal multi traces all repositories in one file
+	 */
+	private void writeTrace() {
+		if (!Boolean.TRUE.equals(getTrace()) || !Tracer.isEnabled()) {
+			return;
+		}
+
+		Tracer.disable();
+
+		for (String line : Tracer.buildSummary()) {
+			getLog().info(line);
+		}
+
+		try {
+			Tracer.writeChromeTrace(getTraceFile());
+			getLog().info("Trace written to " + getTraceFile().getAbsolutePath());
+		} catch (IOException e) {
+			getLog().warn("Could not write the trace " + getTraceFile().getAbsolutePath() + ": " + e.getMessage());
+		}
+	}
+
+
+	/**
+	 * Returns the directory of project or the current directory when the project is not defined
+	 */
+	protected File getBaseDir() {
+		return getProject() == null || getProject().getBasedir() == null ? new File(".") : getProject().getBasedir();
+	}
+
+
+	private TransportType getTransportType() throws MojoExecutionException {
+		for (TransportType type : TransportType.values()) {
+			if (type.name().equals(getGitTransport())) {
+				return type;
+			}
+		}
+
+		throw new MojoExecutionException("The gitTransport must be jgit or git");
+	}
+
+
+	protected List<File> updatePomVersion(String newVersion) throws Exception {
 		getLog().info("Bumping version of files to " + newVersion);
-		return mvnExecutor.execute("versions:set", "-DgenerateBackupPoms=false", "-DnewVersion=" + newVersion, "-DskipTests");
+		getGitFlow().journalWorkingTree();
+		return new PomVersionUpdater(getProject(), getLog()).update(newVersion);
 	}
 
 
-	public String compileProject() throws Exception {
-		getLog().info("Compiling project...");
-		List<String> args = new ArrayList<String>();
-		args.add("clean");
-		args.add("install");
+	public CommandOutput compileProject() throws Exception {
+		return compileProject(new ArrayList<String>());
+	}
 
-		if (Boolean.TRUE.equals(getSkipTests())) {
-			args.add("-DskipTests");
+
+	/**
+	 * Compile the project after a merge. With selectiveBuild only the modules changed between the merge base
+	 * and the merged index are built, with the modules depending on them
+	 * The whole reactor is built when a pom module changed or the merge base is unknown
+	 *
+	 * @param mergeGitFlow - The merge just done
+	 * @return The output off build, null when it was skipped
+	 * @throws Exception
+	 */
+	public CommandOutput compileProject(MergeGitFlow mergeGitFlow) throws Exception {
+		if (!Boolean.TRUE.equals(getSelectiveBuild()) || mergeGitFlow.getMergeBase() == null) {
+			return compileProject();
+		}
+
+		List<String> paths 		= getGitFlow().findChangedPaths(mergeGitFlow.getMergeBase());
+		List<String> modules 	= new ModuleSelector(getProject(), getLog()).select(getGitFlow().getGit().getRepository().getWorkTree(), paths);
+
+		if (modules == null) {
+			return compileProject();
 		}
-        
-        if (Boolean.TRUE.equals(getSettings().isOffline())) {
-			args.add("-o");
+
+		if (modules.isEmpty()) {
+			getLog().info("Skipping compile, the merge did not change any module");
+			return null;
 		}
-		
-		if (getSettings().getActiveProfiles() != null && getSettings().getActiveProfiles().size() > 0) {
-			args.add("-P");
-			args.add(StringUtils.join(getSettings().getActiveProfiles().iterator(), ","));
+
+		getLog().info("Building the changed modules " + modules + " and their dependents");
+
+		List<String> args = new ArrayList<String>();
+		args.add("-pl");
+		args.add(StringUtils.join(modules.iterator(), ","));
+		args.add("-amd");
+
+		return compileProject(args);
+	}
+
+
+	/**
+	 * Compile the project after a merge on the async threads, so the goal can do work that does not depend on the build.
+	 * The work done meanwhile must not touch the working tree. Ex: an in-core merge into other branch
+	 * Join the future before push, and await it before failing so the rollback does not run with the build
+	 *
+	 * @param mergeGitFlow - The merge just done
+	 * @return The future off build output
+	 */
+	public Future<CommandOutput> compileProjectAsync(final MergeGitFlow mergeGitFlow) {
+		return CommandExecutor.submit(new Callable<CommandOutput>() {
+			public CommandOutput call() throws Exception {
+				return compileProject(mergeGitFlow);
+			}
+		});
+	}
+
+
+	/**
+	 * Wait the async work ignoring its result, used before failing the goal
+	 */
+	protected void await(Future<?> future) {
+		try {
+			future.get();
+		} catch (Exception e) {
+			getLog().debug("The async work failed too: " + e.getMessage());
 		}
+	}
+
 
-		return mvnExecutor.execute(args.toArray(new String[args.size()]));
+	/**
+	 * Wait the async work and return its result, the failure off work is thrown as it is
+	 */
+	protected <T> T join(Future<T> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+
+	private CommandOutput compileProject(List<String> reactorArgs) throws Exception {
+		Tracer.Span span = Tracer.start("mojo", "compileProject");
+
+		try {
+			getLog().info("Compiling project...");
+			List<String> args = new ArrayList<String>();
+			args.add("clean");
+			args.add("install");
+			args.addAll(reactorArgs);
+
+			if (Boolean.TRUE.equals(getSkipTests())) {
+				args.add("-DskipTests");
+			}
+
+			if (Boolean.TRUE.equals(getSettings().isOffline())) {
+				args.add("-o");
+			}
+
+			if (getSettings().getActiveProfiles() != null && getSettings().getActiveProfiles().size() > 0) {
+				args.add("-P");
+				args.add(StringUtils.join(getSettings().getActiveProfiles().iterator(), ","));
+			}
+
+			if (Boolean.FALSE.equals(getBuildCache())) {
+				return mvnExecutor.execute(args.toArray(new String[args.size()]));
+			}
+
+			BuildCache cache 		= new BuildCache(getGitFlow().getGit().getRepository());
+			String key 				= cache.buildKey(args);
+			BuildCache.Entry entry 	= cache.find(key);
+
+			if (entry != null && entry.isSuccess()) {
+				getLog().info("Skipping compile, this tree was already built successfully in " + entry.getDuration() + "ms");
+				span.arg("cache", "hit");
+				return null;
+			}
+
+			long start = System.currentTimeMillis();
+
+			try {
+				CommandOutput output = mvnExecutor.execute(args.toArray(new String[args.size()]));
+				cache.record(key, true, System.currentTimeMillis() - start, output.getDigest());
+				return output;
+			} catch (Exception e) {
+				cache.record(key, false, System.currentTimeMillis() - start, BuildCache.digest(e.getMessage()));
+				throw e;
+			}
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
 	}
 
 
@@ -98,6 +600,89 @@ public abstract class GitFlowMojo extends AbstractMojo {
 		this.skipTests = skipTests;
 	}
 
+	public String getGitTransport() {
+		return gitTransport == null ? TransportType.jgit.name() : gitTransport;
+	}
+
+	public void setGitTransport(String gitTransport) {
+		this.gitTransport = gitTransport;
+	}
+
+	public Boolean getSelectiveBuild() {
+		return selectiveBuild;
+	}
+
+	public void setSelectiveBuild(Boolean selectiveBuild) {
+		this.selectiveBuild = selectiveBuild;
+	}
+
+	public Boolean getBuildCache() {
+		return buildCache;
+	}
+
+	public void setBuildCache(Boolean buildCache) {
+		this.buildCache = buildCache;
+	}
+
+	public Boolean getTrace() {
+		return trace;
+	}
+
+	public void setTrace(Boolean trace) {
+		this.trace = trace;
+	}
+
+	/**
+	 * Returns the trace file or target/gitflow-trace.json off project when not defined
+	 */
+	public File getTraceFile() {
+		return traceFile == null ? new File(getBaseDir(), "target/gitflow-trace.json") : traceFile;
+	}
+
+	public void setTraceFile(File traceFile) {
+		this.traceFile = traceFile;
+	}
+
+	public File getBuildLog() {
+		return buildLog;
+	}
+
+	public void setBuildLog(File buildLog) {
+		this.buildLog = buildLog;
+	}
+
+	public Integer getPushRetries() {
+		return pushRetries == null ? 0 : pushRetries;
+	}
+
+	public void setPushRetries(Integer pushRetries) {
+		this.pushRetries = pushRetries;
+	}
+
+	public Boolean getFetch() {
+		return fetch;
+	}
+
+	public void setFetch(Boolean fetch) {
+		this.fetch = fetch;
+	}
+
+	public Boolean getConvertPartialClone() {
+		return convertPartialClone;
+	}
+
+	public void setConvertPartialClone(Boolean convertPartialClone) {
+		this.convertPartialClone = convertPartialClone;
+	}
+
+	public Boolean getResume() {
+		return resume;
+	}
+
+	public void setResume(Boolean resume) {
+		this.resume = resume;
+	}
+
 	public Settings getSettings() {
 		return settings;
 	}
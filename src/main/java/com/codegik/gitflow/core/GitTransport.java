@@ -0,0 +1,65 @@
+package com.codegik.gitflow.core;
+
+import java.util.Map;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+
+/**
+ * Transport used by GitFlow to talk with the remote repository
+ * The pushes are compare-and-swap: a remote ref with expected old id is only updated when it still has that id,
+ * otherwise RefUpdateRejectedException is thrown
+ *
+ * @author Inacio G Klassmann
+ */
+public interface GitTransport {
+	public static final String PEELED_SUFFIX = "^{}";
+
+	/**
+	 * Push the refspecs to remote. Ex: refs/heads/develop:refs/heads/develop, :refs/heads/feature/1.4/task3456
+	 *
+	 * @param setUpstream - Configure the pushed branches to track the remote branches
+	 * @param expectedOldIds - Id off each remote ref before the push, zeroId when the ref must not exist. The refs without id are not checked
+	 * @param refSpecs - The refspecs to push
+	 * @return The output of push
+	 * @throws RefUpdateRejectedException when a remote ref is not at the expected old id
+	 * @throws Exception
+	 */
+	public String push(boolean setUpstream, Map<String, ObjectId> expectedOldIds, String... refSpecs) throws Exception;
+
+	/**
+	 * Push all refspecs in one request, either all remote refs are updated or none
+	 *
+	 * @param setUpstream - Configure the pushed branches to track the remote branches
+	 * @param expectedOldIds - Id off each remote ref before the push, zeroId when the ref must not exist. The refs without id are not checked
+	 * @param refSpecs - The refspecs to push
+	 * @return The output of push
+	 * @throws RefUpdateRejectedException when a remote ref is not at the expected old id
+	 * @throws PartialPushException when the push is not really atomic (JGit) and the refs already updated could not be put back
+	 * @throws Exception
+	 */
+	public String pushAtomic(boolean setUpstream, Map<String, ObjectId> expectedOldIds, String... refSpecs) throws Exception;
+
+	/**
+	 * Fetch only the refspecs from remote, the tags off fetched commits are not followed. Ex: refs/heads/release/1.4:refs/remotes/origin/release/1.4
+	 *
+	 * @param refSpecs - The refspecs to fetch
+	 * @return The output of fetch
+	 * @throws Exception
+	 */
+	public String fetch(String... refSpecs) throws Exception;
+
+	/**
+	 * List the refs off remote with their ids, no object is fetched
+	 * The annotated tags are also listed peeled, with the id off their commit. Ex: refs/tags/1.4.0^{}
+	 *
+	 * @return The full name off each remote ref with its id. Ex: refs/heads/develop
+	 * @throws Exception
+	 */
+	public Map<String, ObjectId> lsRemote() throws Exception;
+
+	/**
+	 * Release the connection with remote
+	 */
+	public void close();
+}
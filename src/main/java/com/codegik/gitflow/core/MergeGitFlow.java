@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.jgit.api.CheckoutCommand.Stage;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 
 
@@ -14,6 +15,8 @@ public class MergeGitFlow {
 	private List<String> ignoringFiles = new ArrayList<String>();
 	private Stage ignoringFilesStage = Stage.OURS;
 	private String errorMessage;
+	private boolean inCore;
+	private ObjectId mergeBase;
 
 
 	public String getBranchName() {
@@ -46,6 +49,24 @@ public class MergeGitFlow {
 	public void setErrorMessage(String errorMessage) {
 		this.errorMessage = errorMessage;
 	}
+	public boolean isInCore() {
+		return inCore;
+	}
+	/**
+	 * Merge without checkout the branch, only objects and ref are written
+	 */
+	public void setInCore(boolean inCore) {
+		this.inCore = inCore;
+	}
+	/**
+	 * The common ancestor off branch and target ref, set by the merge. Null before the merge
+	 */
+	public ObjectId getMergeBase() {
+		return mergeBase;
+	}
+	public void setMergeBase(ObjectId mergeBase) {
+		this.mergeBase = mergeBase;
+	}
 
 	@Override
 	public String toString() {
@@ -0,0 +1,98 @@
+package com.codegik.gitflow.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.mojo.versions.api.PomHelper;
+
+
+/**
+ * Select the modules of reactor owning the changed files, to build only them and their dependents (-pl ... -amd)
+ * The modules are read from disk like PomVersionUpdater, because the reactor of MavenSession is not reloaded after a checkout.
+ * A file is owned by the deepest module containing it. When the owner is a pom module (a shared parent, an aggregator
+ * or a file outside all modules) the whole reactor must be built
+ *
+ * @author Inacio G Klassmann
+ */
+public class ModuleSelector {
+	private static final String POM_PACKAGING = "pom";
+
+	private MavenProject project;
+	private Log log;
+
+
+	public ModuleSelector(MavenProject project, Log log) {
+		this.project 	= project;
+		this.log 		= log;
+	}
+
+
+	/**
+	 * @param workTree - The work tree off repository
+	 * @param changedPaths - The changed files relative to work tree. Ex: core/src/main/java/App.java
+	 * @return The modules to build as groupId:artifactId, or null when the whole reactor must be built
+	 * @throws Exception
+	 */
+	public List<String> select(File workTree, Collection<String> changedPaths) throws Exception {
+		Map<String, Model> modules 	= findModules(workTree.getCanonicalFile());
+		Set<String> selected 		= new LinkedHashSet<String>();
+
+		for (String path : changedPaths) {
+			Model owner = findOwner(modules, path);
+
+			if (owner == null || POM_PACKAGING.equals(owner.getPackaging())) {
+				log.info("The change of " + path + " affects all modules");
+				return null;
+			}
+
+			selected.add(PomHelper.getGroupId(owner) + ":" + PomHelper.getArtifactId(owner));
+		}
+
+		return new ArrayList<String>(selected);
+	}
+
+
+	/**
+	 * Returns the modules by their directory relative to work tree, ending with /. Ex: core/
+	 * The root off work tree is the empty path
+	 */
+	private Map<String, Model> findModules(File workTree) throws Exception {
+		Map<String, Model> modules 	= new HashMap<String, Model>();
+		String root 				= workTree.getPath();
+
+		for (Map.Entry<String, Model> module : PomHelper.getReactorModels(project, log).entrySet()) {
+			File file 	= new File(project.getBasedir(), module.getKey()).getCanonicalFile();
+			String dir 	= (file.isDirectory() ? file : file.getParentFile()).getPath();
+
+			if (dir.equals(root)) {
+				modules.put("", module.getValue());
+			} else if (dir.startsWith(root + File.separator)) {
+				modules.put(dir.substring(root.length() + 1).replace(File.separatorChar, '/') + "/", module.getValue());
+			}
+		}
+
+		return modules;
+	}
+
+
+	private Model findOwner(Map<String, Model> modules, String path) {
+		String owner = null;
+
+		for (String dir : modules.keySet()) {
+			if (path.startsWith(dir) && (owner == null || dir.length() > owner.length())) {
+				owner = dir;
+			}
+		}
+
+		return owner == null ? null : modules.get(owner);
+	}
+}
@@ -0,0 +1,222 @@
+package com.codegik.gitflow.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.storage.file.FileBasedConfig;
+import org.eclipse.jgit.util.FS;
+import org.eclipse.jgit.util.IO;
+import org.eclipse.jgit.util.RawParseUtils;
+
+import com.codegik.gitflow.command.CommandExecutor;
+
+
+/**
+ * Shallow and partial (blob-less) clones, like the ones off CI agents
+ * JGit reads the shallow commits as commits without parents and does not know promisor remotes, so the history
+ * and the blobs missing are fetched by the forked git only when a goal needs them
+ *
+ * @author Inacio G Klassmann
+ */
+public class PartialClone {
+	private static final String SHALLOW 			= "shallow";
+	private static final String EXTENSIONS 			= "extensions";
+	private static final String PARTIAL_CLONE 		= "partialclone";
+	private static final String PROMISOR 			= "promisor";
+	private static final int MAX_OBJECTS_PER_FETCH 	= 1000;
+
+	private final Repository repository;
+	private final CommandExecutor gitExecutor;
+	private final String remote;
+
+
+	public PartialClone(Repository repository, CommandExecutor gitExecutor, String remote) {
+		this.repository 	= repository;
+		this.gitExecutor 	= gitExecutor;
+		this.remote 		= remote;
+	}
+
+
+	/**
+	 * Check the format off repository before it is open. JGit 3.7 only opens the repository format 0, and git writes
+	 * the format 1 on partial clones. The .git/config is only changed when asked (-DconvertPartialClone=true),
+	 * otherwise the goal fails telling how to go on
+	 *
+	 * @param directory - The work tree or the git directory. Ex: /home/user/project
+	 * @param convert - True to change the format, see convertFormat
+	 * @param log - The change off .git/config is logged as a warning
+	 * @throws Exception
+	 */
+	public static void prepareFormat(File directory, boolean convert, Log log) throws Exception {
+		File gitDir = RepositoryCache.FileKey.lenient(directory, FS.DETECTED).getFile();
+
+		// Sem config nao eh um repositorio, o erro fica para o open
+		if (!new File(gitDir, Constants.CONFIG).isFile()) {
+			return;
+		}
+
+		FileBasedConfig config = loadConfig(gitDir);
+
+		if (config.getInt(ConfigConstants.CONFIG_CORE_SECTION, null, ConfigConstants.CONFIG_KEY_REPO_FORMAT_VERSION, 0) != 1) {
+			return;
+		}
+
+		String promisor = config.getString(EXTENSIONS, null, PARTIAL_CLONE);
+		String change 	= "core.repositoryformatversion 1 to 0" + (promisor == null ? "" : " and extensions.partialclone=" + promisor + " to remote." + promisor + ".promisor=true");
+
+		if (!convert) {
+			throw new MojoExecutionException("The repository " + gitDir.getPath() + " has the format 1 written by git on partial clones, which JGit does not open. "
+					+ "Execute the goal with -DconvertPartialClone=true to change its .git/config (" + change + "), git keeps working on it as a partial clone");
+		}
+
+		convertFormat(gitDir, config);
+		log.warn("Changed " + new File(gitDir, Constants.CONFIG).getPath() + ": " + change);
+	}
+
+
+	/**
+	 * When the partial clone is the only extension the format is changed to 0 and the promisor is kept in
+	 * remote.<name>.promisor, which git reads in both formats. Must be called before the repository is open
+	 *
+	 * @throws IOException when the repository uses other extensions
+	 */
+	private static void convertFormat(File gitDir, FileBasedConfig config) throws IOException {
+		for (String extension : config.getNames(EXTENSIONS)) {
+			if (!PARTIAL_CLONE.equalsIgnoreCase(extension)) {
+				throw new IOException("The extension " + extension + " of repository " + gitDir.getPath() + " is not supported");
+			}
+		}
+
+		String promisor = config.getString(EXTENSIONS, null, PARTIAL_CLONE);
+
+		if (promisor != null) {
+			config.setBoolean(ConfigConstants.CONFIG_REMOTE_SECTION, promisor, PROMISOR, true);
+			config.unsetSection(EXTENSIONS, null);
+		}
+
+		config.setInt(ConfigConstants.CONFIG_CORE_SECTION, null, ConfigConstants.CONFIG_KEY_REPO_FORMAT_VERSION, 0);
+		config.save();
+	}
+
+
+	private static FileBasedConfig loadConfig(File gitDir) throws IOException {
+		FileBasedConfig config = new FileBasedConfig(new File(gitDir, Constants.CONFIG), FS.DETECTED);
+
+		try {
+			config.load();
+		} catch (ConfigInvalidException e) {
+			throw new IOException(e);
+		}
+
+		return config;
+	}
+
+
+	/**
+	 * Returns true when the history was cloned with --depth
+	 */
+	public boolean isShallow() {
+		return getShallowFile().isFile();
+	}
+
+
+	/**
+	 * Returns true when the commit is a shallow commit, its parents are not in the repository
+	 */
+	public boolean isShallow(ObjectId commit) throws IOException {
+		return isShallow() && RawParseUtils.decode(IO.readFully(getShallowFile())).contains(commit.name());
+	}
+
+
+	/**
+	 * Returns true when the clone was done with --filter, the remote keeps the objects missing locally
+	 */
+	public boolean isPartial() {
+		return repository.getConfig().getBoolean(ConfigConstants.CONFIG_REMOTE_SECTION, remote, PROMISOR, false)
+				|| repository.getConfig().getString(EXTENSIONS, null, PARTIAL_CLONE) != null;
+	}
+
+
+	/**
+	 * Fetch more history below the shallow commits reachable from the commits
+	 *
+	 * @param commits - Number off commits added below the shallow commits
+	 * @param ids - The commits whose history is deepened
+	 * @return False when the history did not change, there is nothing more to fetch
+	 * @throws Exception
+	 */
+	public boolean deepen(int commits, ObjectId... ids) throws Exception {
+		byte[] before 		= IO.readFully(getShallowFile());
+		List<String> args 	= new ArrayList<String>(Arrays.asList("fetch", "--no-tags", "--deepen=" + commits, remote));
+
+		for (ObjectId id : ids) {
+			args.add(id.name());
+		}
+
+		Statistics.incrementNetworkOperations();
+		gitExecutor.execute(args.toArray(new String[args.size()]));
+
+		return !isShallow() || !Arrays.equals(before, IO.readFully(getShallowFile()));
+	}
+
+
+	/**
+	 * Fetch the refspecs with only the last commits off their history. Ex: the tags used to resolve the versions
+	 *
+	 * @param depth - Number off commits off history
+	 * @param refSpecs - The refspecs to fetch. Ex: refs/tags/1.4.1:refs/tags/1.4.1
+	 * @throws Exception
+	 */
+	public void fetch(int depth, String... refSpecs) throws Exception {
+		List<String> args = new ArrayList<String>(Arrays.asList("fetch", "--no-tags", "--depth=" + depth, remote));
+		args.addAll(Arrays.asList(refSpecs));
+
+		Statistics.incrementNetworkOperations();
+		gitExecutor.execute(args.toArray(new String[args.size()]));
+	}
+
+
+	/**
+	 * Fetch by id the objects missing locally from the promisor remote, at most 1000 objects by request
+	 *
+	 * @param ids - The objects. Ex: the blobs read by a merge
+	 * @return Number off objects fetched
+	 * @throws Exception
+	 */
+	public int fetchMissing(Collection<? extends ObjectId> ids) throws Exception {
+		List<String> missing = new ArrayList<String>();
+
+		for (ObjectId id : ids) {
+			if (!repository.hasObject(id)) {
+				missing.add(id.name());
+			}
+		}
+
+		for (int start = 0; start < missing.size(); start += MAX_OBJECTS_PER_FETCH) {
+			List<String> args = new ArrayList<String>(Arrays.asList("fetch", "--no-tags", remote));
+			args.addAll(missing.subList(start, Math.min(start + MAX_OBJECTS_PER_FETCH, missing.size())));
+
+			Statistics.incrementNetworkOperations();
+			gitExecutor.execute(args.toArray(new String[args.size()]));
+		}
+
+		return missing.size();
+	}
+
+
+	private File getShallowFile() {
+		return new File(repository.getDirectory(), SHALLOW);
+	}
+}
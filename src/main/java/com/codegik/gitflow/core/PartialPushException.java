@@ -0,0 +1,55 @@
+package com.codegik.gitflow.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.eclipse.jgit.lib.ObjectId;
+
+
+/**
+ * Thrown when an atomic push could not be undone: the push failed after some remote refs were updated and they
+ * could not be put back. It keeps the id off each of these refs before and after the push, so the rollback can try again
+ *
+ * @author Inacio G Klassmann
+ */
+public class PartialPushException extends MojoExecutionException {
+	private static final long serialVersionUID = 1L;
+
+	private final Map<String, ObjectId> before 	= new LinkedHashMap<String, ObjectId>();
+	private final Map<String, ObjectId> after 	= new LinkedHashMap<String, ObjectId>();
+
+
+	public PartialPushException(String message) {
+		super(message);
+	}
+
+
+	/**
+	 * Add a remote ref left updated
+	 *
+	 * @param refName - The remote ref. Ex: refs/heads/develop
+	 * @param beforeId - Id before the push, zeroId when the ref did not exist
+	 * @param afterId - Id after the push, zeroId when the ref was deleted
+	 */
+	public void addRef(String refName, ObjectId beforeId, ObjectId afterId) {
+		before.put(refName, beforeId);
+		after.put(refName, afterId);
+	}
+
+
+	/**
+	 * Returns the remote refs left updated with their ids before the push
+	 */
+	public Map<String, ObjectId> getBefore() {
+		return before;
+	}
+
+
+	/**
+	 * Returns the remote refs left updated with their ids after the push
+	 */
+	public Map<String, ObjectId> getAfter() {
+		return after;
+	}
+}
@@ -0,0 +1,84 @@
+package com.codegik.gitflow.core;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Match paths ending with any off the patterns, comparing whole segments. Ex: pom.xml matches pom.xml and module/pom.xml
+ * Only whole segments match, unlike String.contains: mypom.xml and pom.xml.template do not match pom.xml
+ * The patterns are compiled into a trie of reversed segments, so matching a path costs one lookup per segment of path
+ * regardless of number of patterns.
+ *
+ * @author Inacio G Klassmann
+ */
+public class PathSuffixMatcher {
+	private final Node root = new Node();
+
+
+	public PathSuffixMatcher(Collection<String> patterns) {
+		for (String pattern : patterns) {
+			add(pattern);
+		}
+	}
+
+
+	private void add(String pattern) {
+		String[] segments 	= pattern.split("/");
+		Node node 			= root;
+
+		for (int i = segments.length - 1; i >= 0; i--) {
+			if (segments[i].length() == 0) {
+				continue;
+			}
+
+			Node child = node.children.get(segments[i]);
+
+			if (child == null) {
+				child = new Node();
+				node.children.put(segments[i], child);
+			}
+
+			node = child;
+		}
+
+		node.terminal = node != root;
+	}
+
+
+	/**
+	 * Returns true if the path is equal to a pattern or ends with / followed by a pattern
+	 *
+	 * @param path - Path relative to repository. Ex: module/pom.xml
+	 * @return boolean
+	 */
+	public boolean matches(String path) {
+		Node node 	= root;
+		int end 	= path.length();
+
+		while (end > 0) {
+			int start = path.lastIndexOf('/', end - 1);
+
+			node = node.children.get(path.substring(start + 1, end));
+
+			if (node == null) {
+				return false;
+			}
+
+			if (node.terminal) {
+				return true;
+			}
+
+			end = start;
+		}
+
+		return false;
+	}
+
+
+	private static class Node {
+		private final Map<String, Node> children = new HashMap<String, Node>();
+		private boolean terminal;
+	}
+}
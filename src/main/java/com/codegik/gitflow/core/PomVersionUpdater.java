@@ -0,0 +1,180 @@
+package com.codegik.gitflow.core;
+
+import java.io.File;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLInputFactory;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.mojo.versions.api.PomHelper;
+import org.codehaus.mojo.versions.rewriting.ModifiedPomXMLEventReader;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.WriterFactory;
+import org.codehaus.stax2.XMLInputFactory2;
+
+
+/**
+ * Update the version of all modules of reactor without forking versions:set
+ * The modules are read from disk, because the reactor of MavenSession is not reloaded after a checkout.
+ * Only the project version, parent version and dependencies between modules are rewritten, keeping the formatting
+ *
+ * @author Inacio G Klassmann
+ */
+public class PomVersionUpdater {
+	private MavenProject project;
+	private Log log;
+
+
+	public PomVersionUpdater(MavenProject project, Log log) {
+		this.project 	= project;
+		this.log 		= log;
+	}
+
+
+	/**
+	 * Set the version of project and all modules that share the project version
+	 *
+	 * @param newVersion - The new version. Ex: 1.4.0
+	 * @return The pom files changed
+	 * @throws Exception
+	 */
+	public List<File> update(final String newVersion) throws Exception {
+		final Map<String, Model> reactor 	= PomHelper.getReactorModels(project, log);
+		final String oldVersion 			= PomHelper.getVersion(reactor.get(""));
+		final Map<String, Model> changed 	= findChangedModules(reactor, oldVersion);
+		List<Future<File>> results 			= new ArrayList<Future<File>>();
+		ExecutorService executor 			= Executors.newFixedThreadPool(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), reactor.size())));
+
+		log.info("Updating " + reactor.size() + " pom(s) from " + oldVersion + " to " + newVersion);
+
+		try {
+			for (final Map.Entry<String, Model> module : reactor.entrySet()) {
+				results.add(executor.submit(new Callable<File>() {
+					public File call() throws Exception {
+						return update(getPomFile(module.getKey()), module.getValue(), changed, oldVersion, newVersion);
+					}
+				}));
+			}
+
+			List<File> files = new ArrayList<File>();
+
+			for (Future<File> result : results) {
+				File file = getResult(result);
+
+				if (file != null) {
+					files.add(file);
+				}
+			}
+
+			return files;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+
+	/**
+	 * Find the modules that change the version: the project and its children with inherited or equal version
+	 */
+	private Map<String, Model> findChangedModules(Map<String, Model> reactor, String oldVersion) {
+		Map<String, Model> changed 	= new HashMap<String, Model>();
+		LinkedList<Model> queue 	= new LinkedList<Model>();
+		Model root 					= reactor.get("");
+
+		changed.put(getKey(PomHelper.getGroupId(root), PomHelper.getArtifactId(root)), root);
+		queue.add(root);
+
+		while (!queue.isEmpty()) {
+			Model parent 		= queue.removeFirst();
+			String parentKey 	= getKey(PomHelper.getGroupId(parent), PomHelper.getArtifactId(parent));
+
+			for (Model model : reactor.values()) {
+				String key = getKey(PomHelper.getGroupId(model), PomHelper.getArtifactId(model));
+
+				if (model.getParent() == null || changed.containsKey(key)) {
+					continue;
+				}
+
+				boolean isChild = parentKey.equals(getKey(model.getParent().getGroupId(), model.getParent().getArtifactId()));
+
+				if (isChild && oldVersion.equals(PomHelper.getVersion(model))) {
+					changed.put(key, model);
+					queue.add(model);
+				}
+			}
+		}
+
+		return changed;
+	}
+
+
+	private File update(File pomFile, Model model, Map<String, Model> changed, String oldVersion, String newVersion) throws Exception {
+		StringBuilder input 	= PomHelper.readXmlFile(pomFile);
+		XMLInputFactory factory = XMLInputFactory2.newInstance();
+		factory.setProperty(XMLInputFactory2.P_PRESERVE_LOCATION, Boolean.TRUE);
+
+		ModifiedPomXMLEventReader pom = new ModifiedPomXMLEventReader(input, factory);
+
+		if (changed.containsKey(getKey(PomHelper.getGroupId(model), PomHelper.getArtifactId(model))) && PomHelper.isExplicitVersion(model)) {
+			PomHelper.setProjectVersion(pom, newVersion);
+		}
+
+		if (model.getParent() != null && oldVersion.equals(model.getParent().getVersion())
+				&& changed.containsKey(getKey(model.getParent().getGroupId(), model.getParent().getArtifactId()))) {
+			PomHelper.setProjectParentVersion(pom, newVersion);
+		}
+
+		for (Model dependency : changed.values()) {
+			PomHelper.setDependencyVersion(pom, PomHelper.getGroupId(dependency), PomHelper.getArtifactId(dependency), oldVersion, newVersion);
+		}
+
+		if (!pom.isModified()) {
+			return null;
+		}
+
+		Writer writer = WriterFactory.newXmlWriter(pomFile);
+
+		try {
+			IOUtil.copy(input.toString(), writer);
+		} finally {
+			IOUtil.close(writer);
+		}
+
+		return pomFile;
+	}
+
+
+	private File getPomFile(String path) throws Exception {
+		File file = new File(project.getBasedir(), path).getCanonicalFile();
+		return file.isDirectory() ? new File(file, "pom.xml") : file;
+	}
+
+
+	private String getKey(String groupId, String artifactId) {
+		return groupId + ":" + artifactId;
+	}
+
+
+	private File getResult(Future<File> result) throws Exception {
+		try {
+			return result.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+}
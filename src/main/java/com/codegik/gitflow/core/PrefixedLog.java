@@ -0,0 +1,105 @@
+package com.codegik.gitflow.core;
+
+import org.apache.maven.plugin.logging.Log;
+
+
+/**
+ * Log that prefixes each message, used to tell apart the repositories that run at same time. Ex: [service-a] Merging...
+ *
+ * @author Inacio G Klassmann
+ */
+public class PrefixedLog implements Log {
+	private final Log log;
+	private final String prefix;
+
+
+	public PrefixedLog(Log log, String name) {
+		this.log 	= log;
+		this.prefix = "[" + name + "] ";
+	}
+
+
+	private CharSequence prefix(CharSequence content) {
+		return content == null ? prefix : prefix + content;
+	}
+
+
+	public boolean isDebugEnabled() {
+		return log.isDebugEnabled();
+	}
+
+
+	public void debug(CharSequence content) {
+		log.debug(prefix(content));
+	}
+
+
+	public void debug(CharSequence content, Throwable error) {
+		log.debug(prefix(content), error);
+	}
+
+
+	public void debug(Throwable error) {
+		log.debug(prefix(null), error);
+	}
+
+
+	public boolean isInfoEnabled() {
+		return log.isInfoEnabled();
+	}
+
+
+	public void info(CharSequence content) {
+		log.info(prefix(content));
+	}
+
+
+	public void info(CharSequence content, Throwable error) {
+		log.info(prefix(content), error);
+	}
+
+
+	public void info(Throwable error) {
+		log.info(prefix(null), error);
+	}
+
+
+	public boolean isWarnEnabled() {
+		return log.isWarnEnabled();
+	}
+
+
+	public void warn(CharSequence content) {
+		log.warn(prefix(content));
+	}
+
+
+	public void warn(CharSequence content, Throwable error) {
+		log.warn(prefix(content), error);
+	}
+
+
+	public void warn(Throwable error) {
+		log.warn(prefix(null), error);
+	}
+
+
+	public boolean isErrorEnabled() {
+		return log.isErrorEnabled();
+	}
+
+
+	public void error(CharSequence content) {
+		log.error(prefix(content));
+	}
+
+
+	public void error(CharSequence content, Throwable error) {
+		log.error(prefix(content), error);
+	}
+
+
+	public void error(Throwable error) {
+		log.error(prefix(null), error);
+	}
+}
@@ -0,0 +1,60 @@
+package com.codegik.gitflow.core;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Ref updates collected during a goal to be pushed together at the end
+ * Only the last update of each remote ref is kept. Ex: develop pushed twice is pushed once
+ *
+ * @author Inacio G Klassmann
+ */
+public class PushBatch {
+	private final Map<String, String> refSpecs = new LinkedHashMap<String, String>();
+	private boolean setUpstream;
+
+
+	/**
+	 * Add a refspec to batch
+	 *
+	 * @param remoteRef - The remote ref updated. Ex: refs/heads/develop
+	 * @param refSpec - The refspec to push. Ex: refs/heads/develop:refs/heads/develop
+	 * @param upstream - Configure the pushed branch to track the remote branch
+	 */
+	public void add(String remoteRef, String refSpec, boolean upstream) {
+		refSpecs.remove(remoteRef);
+		refSpecs.put(remoteRef, refSpec);
+		setUpstream = setUpstream || upstream;
+	}
+
+
+	/**
+	 * Returns a copy off the updates, the remote ref with its refspec
+	 */
+	public Map<String, String> getUpdates() {
+		return new LinkedHashMap<String, String>(refSpecs);
+	}
+
+
+	public Collection<String> getRefSpecs() {
+		return refSpecs.values();
+	}
+
+
+	public boolean isSetUpstream() {
+		return setUpstream;
+	}
+
+
+	public boolean isEmpty() {
+		return refSpecs.isEmpty();
+	}
+
+
+	public void clear() {
+		refSpecs.clear();
+		setUpstream = false;
+	}
+}
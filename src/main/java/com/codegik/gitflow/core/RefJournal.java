@@ -0,0 +1,122 @@
+package com.codegik.gitflow.core;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+
+/**
+ * Journal off the refs changed by a goal, used to put all of them back when the goal fails
+ * Only the first id before the change is kept. Ex: develop committed twice is restored to the id before the first commit
+ * The ids are zeroId when the ref did not exist, or when it was deleted
+ *
+ * @author Inacio G Klassmann
+ */
+public class RefJournal {
+	private final String branch;
+	private final Map<String, ObjectId> localRefs 	= new LinkedHashMap<String, ObjectId>();
+	private final Map<String, Entry> remoteRefs 	= new LinkedHashMap<String, Entry>();
+	private boolean workingTree;
+
+
+	/**
+	 * @param branch - The branch checked out when the goal started. Ex: develop
+	 */
+	public RefJournal(String branch) {
+		this.branch = branch;
+	}
+
+
+	public String getBranch() {
+		return branch;
+	}
+
+
+	public boolean containsLocal(String refName) {
+		return localRefs.containsKey(refName);
+	}
+
+
+	/**
+	 * Record the id off local ref before its first change
+	 *
+	 * @param refName - The full name. Ex: refs/heads/develop, refs/tags/1.4.0
+	 * @param before - The id before the change
+	 */
+	public void recordLocal(String refName, ObjectId before) {
+		if (!localRefs.containsKey(refName)) {
+			localRefs.put(refName, before);
+		}
+	}
+
+
+	/**
+	 * Record a remote ref updated by push
+	 *
+	 * @param refName - The full name on remote. Ex: refs/heads/develop
+	 * @param before - The id on remote before the push
+	 * @param after - The id pushed
+	 */
+	public void recordRemote(String refName, ObjectId before, ObjectId after) {
+		Entry entry = remoteRefs.get(refName);
+
+		if (entry == null) {
+			remoteRefs.put(refName, new Entry(refName, before, after));
+		} else {
+			entry.after = after;
+		}
+	}
+
+
+	/**
+	 * Record that files off working tree were changed without commit. Ex: the version off poms
+	 */
+	public void recordWorkingTree() {
+		workingTree = true;
+	}
+
+
+	/**
+	 * Returns the local refs with their ids before the goal
+	 */
+	public Map<String, ObjectId> getLocalRefs() {
+		return localRefs;
+	}
+
+
+	public Collection<Entry> getRemoteRefs() {
+		return remoteRefs.values();
+	}
+
+
+	public boolean isEmpty() {
+		return localRefs.isEmpty() && remoteRefs.isEmpty() && !workingTree;
+	}
+
+
+	public static class Entry {
+		private final String name;
+		private final ObjectId before;
+		private ObjectId after;
+
+		private Entry(String name, ObjectId before, ObjectId after) {
+			this.name 	= name;
+			this.before = before;
+			this.after 	= after;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public ObjectId getBefore() {
+			return before;
+		}
+
+		public ObjectId getAfter() {
+			return after;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package com.codegik.gitflow.core;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.lib.Ref;
+
+
+/**
+ * Snapshot of local and remote branches taken once per execution
+ * Branches are indexed by simple name (Ex: feature/1.4/task3456) and by a trie of name segments,
+ * so looking up a branch or all branches of a type and release (Ex: feature/1.4) does not scan every ref.
+ * The lookups are synchronized, they can be done by many threads of an aggregator run.
+ *
+ * @author Inacio G Klassmann
+ */
+public class RefSnapshot {
+	private final String separator;
+	private final Map<String, Ref> localBranches 	= new HashMap<String, Ref>();
+	private final Map<String, Ref> remoteBranches 	= new HashMap<String, Ref>();
+	private final Node root 						= new Node();
+
+
+	public RefSnapshot(String separator) {
+		this.separator = separator;
+	}
+
+
+	public synchronized Ref findLocal(String simpleName) {
+		return localBranches.get(simpleName);
+	}
+
+
+	public synchronized Ref findRemote(String simpleName) {
+		return remoteBranches.get(simpleName);
+	}
+
+
+	/**
+	 * Find the simple name of all local and remote branches starting with the segments
+	 *
+	 * @param segments - Segments of branch name. Ex: feature, 1.4
+	 * @return Simple names of branches. Ex: feature/1.4/task3456
+	 */
+	public synchronized Set<String> findByPrefix(String... segments) {
+		Set<String> result 	= new LinkedHashSet<String>();
+		Node node 			= root;
+
+		for (String segment : segments) {
+			node = node.children.get(segment);
+
+			if (node == null) {
+				return result;
+			}
+		}
+
+		node.collect(result);
+
+		return result;
+	}
+
+
+	public synchronized void putLocal(String simpleName, Ref ref) {
+		localBranches.put(simpleName.toLowerCase(), ref);
+		index(simpleName);
+	}
+
+
+	public synchronized void putRemote(String simpleName, Ref ref) {
+		remoteBranches.put(simpleName, ref);
+		index(simpleName);
+	}
+
+
+	public synchronized void removeLocal(String simpleName) {
+		localBranches.remove(simpleName.toLowerCase());
+		unindex(simpleName);
+	}
+
+
+	public synchronized void removeRemote(String simpleName) {
+		remoteBranches.remove(simpleName);
+		unindex(simpleName);
+	}
+
+
+	private void index(String simpleName) {
+		Node node = root;
+
+		for (String segment : simpleName.split(Pattern.quote(separator))) {
+			Node child = node.children.get(segment);
+
+			if (child == null) {
+				child = new Node();
+				node.children.put(segment, child);
+			}
+
+			node = child;
+		}
+
+		node.name = simpleName;
+	}
+
+
+	private void unindex(String simpleName) {
+		if (localBranches.containsKey(simpleName.toLowerCase()) || remoteBranches.containsKey(simpleName)) {
+			return;
+		}
+
+		Node node = root;
+
+		for (String segment : simpleName.split(Pattern.quote(separator))) {
+			node = node.children.get(segment);
+
+			if (node == null) {
+				return;
+			}
+		}
+
+		node.name = null;
+	}
+
+
+	private static class Node {
+		private final Map<String, Node> children = new HashMap<String, Node>();
+		private String name;
+
+		private void collect(Set<String> result) {
+			if (name != null) {
+				result.add(name);
+			}
+
+			for (Node child : children.values()) {
+				child.collect(result);
+			}
+		}
+	}
+}
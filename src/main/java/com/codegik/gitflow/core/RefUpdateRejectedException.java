@@ -0,0 +1,33 @@
+package com.codegik.gitflow.core;
+
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+
+/**
+ * Thrown when a push lost the race with another push: the remote ref is not at the expected old id anymore
+ * The goal can fetch the new tip, replay its change and push again
+ *
+ * @author Inacio G Klassmann
+ */
+public class RefUpdateRejectedException extends MojoExecutionException {
+	private static final long serialVersionUID = 1L;
+
+	private final List<String> refs;
+
+
+	/**
+	 * @param refs - The remote refs changed by someone else. Ex: refs/heads/release/1.4
+	 * @param message - The message
+	 */
+	public RefUpdateRejectedException(List<String> refs, String message) {
+		super(message);
+		this.refs = refs;
+	}
+
+
+	public List<String> getRefs() {
+		return refs;
+	}
+}
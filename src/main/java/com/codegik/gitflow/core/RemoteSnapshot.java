@@ -0,0 +1,84 @@
+package com.codegik.gitflow.core;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+
+/**
+ * Refs of remote listed once at the start of goal (ls-remote), only the branches of gitflow and the tags
+ * No object is fetched. It tells whether a branch exists on remote and its id without trusting the remote
+ * tracking branches, which are as old as the last fetch. The pushes of goal keep it up to date.
+ * The lookups are synchronized, they can be done by many threads of an aggregator run.
+ *
+ * @author Inacio G Klassmann
+ */
+public class RemoteSnapshot {
+	private final Map<String, ObjectId> refs;
+
+
+	/**
+	 * @param refs - The full name of each remote ref with its id. Ex: refs/heads/develop
+	 */
+	public RemoteSnapshot(Map<String, ObjectId> refs) {
+		this.refs = new LinkedHashMap<String, ObjectId>(refs);
+	}
+
+
+	/**
+	 * Returns the id of remote ref, null when it does not exist on remote
+	 *
+	 * @param refName - The full name of ref. Ex: refs/heads/release/1.4
+	 */
+	public synchronized ObjectId getId(String refName) {
+		return refs.get(refName);
+	}
+
+
+	/**
+	 * Returns a copy of all refs, the annotated tags are also listed peeled. Ex: refs/tags/1.4.0^{}
+	 */
+	public synchronized Map<String, ObjectId> getRefs() {
+		return new LinkedHashMap<String, ObjectId>(refs);
+	}
+
+
+	/**
+	 * Find the simple name of all remote branches starting with the prefix
+	 *
+	 * @param prefix - Start of branch name. Ex: feature/1.4/
+	 * @return Simple names of branches. Ex: feature/1.4/task3456
+	 */
+	public synchronized Set<String> findByPrefix(String prefix) {
+		Set<String> result = new LinkedHashSet<String>();
+
+		for (String refName : refs.keySet()) {
+			if (refName.startsWith(Constants.R_HEADS + prefix)) {
+				result.add(refName.substring(Constants.R_HEADS.length()));
+			}
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Record the id of remote ref after a push, zeroId when the ref was deleted
+	 */
+	public synchronized void update(String refName, ObjectId id) {
+		if (id == null || ObjectId.zeroId().equals(id)) {
+			refs.remove(refName);
+		} else {
+			refs.put(refName, id);
+		}
+	}
+
+
+	public synchronized int size() {
+		return refs.size();
+	}
+}
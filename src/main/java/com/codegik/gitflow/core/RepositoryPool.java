@@ -0,0 +1,156 @@
+package com.codegik.gitflow.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.jgit.util.FS;
+
+
+/**
+ * Repositories shared by all GitFlow off the JVM, keyed by the canonical git directory
+ * The goals off a reactor, off gitflow:multi and off the daemon open each repository (and its pack files) only once.
+ * Each open must have its close, the repository is closed when the last user closes it.
+ * RevWalk is not thread safe, so each thread borrows its own walk and gives it back, the idle walks keep their
+ * ObjectReader for the next borrower and are released with the repository
+ *
+ * @author Inacio G Klassmann
+ */
+public class RepositoryPool {
+	private static final int MAX_IDLE_WALKS = 8;
+
+	private static final Map<File, Entry> entries 				= new HashMap<File, Entry>();
+	private static final Map<Repository, Entry> byRepository 	= new IdentityHashMap<Repository, Entry>();
+
+
+	private RepositoryPool() {
+	}
+
+
+	/**
+	 * Open the repository off directory or share the one already open
+	 * The format off partial clones must be checked first, see PartialClone.prepareFormat
+	 *
+	 * @param directory - The work tree or the git directory. Ex: /home/user/project
+	 * @return Git
+	 * @throws IOException
+	 */
+	public static synchronized Git open(File directory) throws IOException {
+		File gitDir = RepositoryCache.FileKey.lenient(directory, FS.DETECTED).getFile().getCanonicalFile();
+		Entry entry = entries.get(gitDir);
+
+		if (entry == null) {
+			entry = new Entry(gitDir, Git.open(gitDir));
+			entries.put(gitDir, entry);
+			byRepository.put(entry.git.getRepository(), entry);
+		}
+
+		entry.references++;
+		return entry.git;
+	}
+
+
+	/**
+	 * Give back the repository, the last close releases the idle walks and closes the repository
+	 *
+	 * @param git - Git returned by open
+	 */
+	public static synchronized void close(Git git) {
+		Entry entry = byRepository.get(git.getRepository());
+
+		if (entry == null || --entry.references > 0) {
+			return;
+		}
+
+		byRepository.remove(git.getRepository());
+		entries.remove(entry.gitDir);
+
+		for (RevWalk walk : entry.idleWalks) {
+			walk.release();
+		}
+
+		entry.idleWalks.clear();
+		git.close();
+	}
+
+
+	/**
+	 * Borrow a walk off repository for the current thread, it must be given back by giveBack in a finally
+	 * The repositories not open by the pool get a new walk
+	 */
+	public static RevWalk borrowWalk(Repository repository) throws IOException {
+		RevWalk walk = null;
+
+		synchronized (RepositoryPool.class) {
+			Entry entry = byRepository.get(repository);
+
+			if (entry != null && !entry.idleWalks.isEmpty()) {
+				walk = entry.idleWalks.removeFirst();
+			}
+		}
+
+		if (walk == null) {
+			walk = new RevWalk(repository);
+		}
+
+		// JGit 3.7 perde o limite do clone raso quando o primeiro commit lido e um commit raso, os pais dele seriam lidos
+		walk.assumeShallow(walk.getObjectReader().getShallowCommits());
+
+		return walk;
+	}
+
+
+	/**
+	 * Give back a walk borrowed from the repository. Its objects are discarded, only the ObjectReader is kept for the next borrower
+	 */
+	public static void giveBack(Repository repository, RevWalk walk) {
+		// Volta a configuracao padrao, o proximo usuario nao pode herdar os filtros
+		walk.dispose();
+		walk.setRevFilter(RevFilter.ALL);
+		walk.setTreeFilter(TreeFilter.ALL);
+		walk.sort(RevSort.NONE);
+		walk.setRetainBody(true);
+
+		synchronized (RepositoryPool.class) {
+			Entry entry = byRepository.get(repository);
+
+			if (entry != null && entry.idleWalks.size() < MAX_IDLE_WALKS) {
+				entry.idleWalks.addFirst(walk);
+				return;
+			}
+		}
+
+		walk.release();
+	}
+
+
+	/**
+	 * Number off repositories open by the pool
+	 */
+	public static synchronized int size() {
+		return byRepository.size();
+	}
+
+
+	private static class Entry {
+		private final File gitDir;
+		private final Git git;
+		private final LinkedList<RevWalk> idleWalks = new LinkedList<RevWalk>();
+		private int references;
+
+		private Entry(File gitDir, Git git) {
+			this.gitDir = gitDir;
+			this.git 	= git;
+		}
+	}
+}
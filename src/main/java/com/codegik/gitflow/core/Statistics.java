@@ -0,0 +1,45 @@
+package com.codegik.gitflow.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Counters off expensive operations of the plugin: forked processes (git, mvn) and network operations against the remote
+ * Used to measure the goals, the counters are global to the JVM
+ *
+ * @author Inacio G Klassmann
+ */
+public final class Statistics {
+	private static final AtomicInteger forkedProcesses 		= new AtomicInteger();
+	private static final AtomicInteger networkOperations 	= new AtomicInteger();
+
+
+	private Statistics() {
+	}
+
+
+	public static void incrementForkedProcesses() {
+		forkedProcesses.incrementAndGet();
+	}
+
+
+	public static void incrementNetworkOperations() {
+		networkOperations.incrementAndGet();
+	}
+
+
+	public static int getForkedProcesses() {
+		return forkedProcesses.get();
+	}
+
+
+	public static int getNetworkOperations() {
+		return networkOperations.get();
+	}
+
+
+	public static void reset() {
+		forkedProcesses.set(0);
+		networkOperations.set(0);
+	}
+}
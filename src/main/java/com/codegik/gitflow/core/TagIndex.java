@@ -0,0 +1,363 @@
+package com.codegik.gitflow.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+
+/**
+ * Index of version tags grouped by release line (Ex: 1.4 -> tags/1.4.3), ordered by version
+ * The index is stored in .git/gitflow/tag-index and is updated incrementally:
+ * only loose tags are rescanned while packed-refs is unchanged, and each tag name is parsed once.
+ * The methods are synchronized, the index is shared by the threads looking up tags.
+ *
+ * @author Inacio G Klassmann
+ */
+public class TagIndex {
+	private static final String HEADER 		= "gitflow-tag-index 2";
+	private static final String PACKED_REFS = "packed-refs";
+
+	private final Repository repository;
+	private final GitFlowPattern gitFlowPattern;
+	private final File indexFile;
+	private final Map<String, TagEntry> entries 				= new HashMap<String, TagEntry>();
+	private final TreeMap<String, TreeSet<TagEntry>> releases 	= new TreeMap<String, TreeSet<TagEntry>>();
+	private final TreeSet<TagEntry> all 						= new TreeSet<TagEntry>(new TagEntryComparator());
+	private long packedRefsModified 							= -1;
+	private long packedRefsLength 								= -1;
+	private boolean loaded;
+	private boolean dirty;
+
+
+	public TagIndex(GitFlowPattern gitFlowPattern, Repository repository) {
+		this.repository 	= repository;
+		this.gitFlowPattern = gitFlowPattern;
+		this.indexFile 		= new File(new File(repository.getDirectory(), "gitflow"), "tag-index");
+	}
+
+
+	/**
+	 * Find the name of last tag off release version
+	 *
+	 * @param releaseVersion - Version off release or null for all tags. Ex: 1.4
+	 * @return The full name of tag. Ex: refs/tags/1.4.3
+	 * @throws IOException
+	 */
+	public synchronized String findLastTag(String releaseVersion) throws IOException {
+		refresh();
+
+		TreeSet<TagEntry> tags = releaseVersion == null ? all : releases.get(releaseVersion);
+
+		return tags == null || tags.isEmpty() ? null : tags.last().name;
+	}
+
+
+	/**
+	 * Add a tag recently created into index
+	 *
+	 * @param tag - Reference to a local tag
+	 * @throws IOException
+	 */
+	public synchronized void add(Ref tag) throws IOException {
+		refresh();
+
+		File loose = new File(repository.getDirectory(), tag.getName());
+		index(tag.getName(), tag.getObjectId(), loose.isFile() ? loose.lastModified() : 0);
+		save();
+	}
+
+
+	/**
+	 * Number off indexed tags
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+
+	/**
+	 * Synchronize the index with repository tags
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void refresh() throws IOException {
+		if (!loaded) {
+			load();
+			loaded = true;
+		}
+
+		File packedRefs = new File(repository.getDirectory(), PACKED_REFS);
+
+		if (packedRefs.lastModified() != packedRefsModified || packedRefs.length() != packedRefsLength) {
+			rebuild();
+			packedRefsModified 	= packedRefs.lastModified();
+			packedRefsLength 	= packedRefs.length();
+			dirty 				= true;
+		} else {
+			refreshLooseTags();
+		}
+
+		save();
+	}
+
+
+	private void rebuild() throws IOException {
+		Map<String, Ref> refs 	= repository.getRefDatabase().getRefs(Constants.R_TAGS);
+		List<String> removed 	= new ArrayList<String>();
+
+		for (TagEntry entry : entries.values()) {
+			if (!refs.containsKey(entry.name.substring(Constants.R_TAGS.length()))) {
+				removed.add(entry.name);
+			}
+		}
+
+		for (String name : removed) {
+			remove(name);
+		}
+
+		for (Ref ref : refs.values()) {
+			File loose = new File(repository.getDirectory(), ref.getName());
+			index(ref.getName(), ref.getObjectId(), loose.isFile() ? loose.lastModified() : 0);
+		}
+	}
+
+
+	private void refreshLooseTags() throws IOException {
+		Map<String, Long> looseTags = new HashMap<String, Long>();
+		List<String> changed 		= new ArrayList<String>();
+
+		listLooseTags(new File(repository.getDirectory(), Constants.R_TAGS), Constants.R_TAGS, looseTags);
+
+		for (Map.Entry<String, Long> loose : looseTags.entrySet()) {
+			TagEntry entry = entries.get(loose.getKey());
+
+			if (entry == null || entry.looseModified != loose.getValue().longValue()) {
+				changed.add(loose.getKey());
+			}
+		}
+
+		for (TagEntry entry : entries.values()) {
+			if (entry.looseModified != 0 && !looseTags.containsKey(entry.name)) {
+				changed.add(entry.name);
+			}
+		}
+
+		for (String name : changed) {
+			Ref ref = repository.getRefDatabase().getRef(name);
+
+			if (ref == null) {
+				remove(name);
+			} else {
+				Long modified = looseTags.get(name);
+				index(name, ref.getObjectId(), modified == null ? 0 : modified.longValue());
+			}
+		}
+	}
+
+
+	private void listLooseTags(File dir, String prefix, Map<String, Long> looseTags) {
+		File[] files = dir.listFiles();
+
+		if (files == null) {
+			return;
+		}
+
+		for (File file : files) {
+			if (file.isDirectory()) {
+				listLooseTags(file, prefix + file.getName() + "/", looseTags);
+			} else if (entries.containsKey(prefix + file.getName()) || getVersion(prefix + file.getName()) != null) {
+				looseTags.put(prefix + file.getName(), file.lastModified());
+			}
+		}
+	}
+
+
+	private void index(String name, ObjectId objectId, long looseModified) throws IOException {
+		Version version = getVersion(name);
+
+		if (version == null) {
+			return;
+		}
+
+		TagEntry entry = entries.get(name);
+
+		if (entry != null && entry.objectId.equals(objectId)) {
+			if (entry.looseModified != looseModified) {
+				entry.looseModified = looseModified;
+				dirty 				= true;
+			}
+			return;
+		}
+
+		remove(name);
+		put(new TagEntry(name, version, objectId.copy(), looseModified));
+		dirty = true;
+	}
+
+
+	private void put(TagEntry entry) {
+		String release 			= getRelease(entry.version);
+		TreeSet<TagEntry> tags 	= releases.get(release);
+
+		if (tags == null) {
+			tags = new TreeSet<TagEntry>(new TagEntryComparator());
+			releases.put(release, tags);
+		}
+
+		tags.add(entry);
+		all.add(entry);
+		entries.put(entry.name, entry);
+	}
+
+
+	private void remove(String name) {
+		TagEntry entry = entries.remove(name);
+
+		if (entry == null) {
+			return;
+		}
+
+		String release 			= getRelease(entry.version);
+		TreeSet<TagEntry> tags 	= releases.get(release);
+		tags.remove(entry);
+		all.remove(entry);
+
+		if (tags.isEmpty()) {
+			releases.remove(release);
+		}
+
+		dirty = true;
+	}
+
+
+	/**
+	 * Returns the version of tag or null if the tag does not match with tag version pattern
+	 */
+	private Version getVersion(String name) {
+		String version = name.replace(gitFlowPattern.getPrefixGitTag() + gitFlowPattern.getGitSeparator(), "");
+
+		if (!gitFlowPattern.getTagVersionPattern().matcher(version).matches()) {
+			return null;
+		}
+
+		return Version.parse(version);
+	}
+
+
+	private String getRelease(Version version) {
+		return version.truncate(2).toString();
+	}
+
+
+	private void load() throws IOException {
+		if (!indexFile.isFile()) {
+			return;
+		}
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), "UTF-8"));
+
+		try {
+			if (!HEADER.equals(reader.readLine())) {
+				return;
+			}
+
+			String[] packedRefs = reader.readLine().split("\t");
+			String line 		= null;
+
+			while ((line = reader.readLine()) != null) {
+				String[] columns = line.split("\t");
+
+				Version version = columns.length == 3 ? getVersion(columns[0]) : null;
+
+				if (version != null) {
+					put(new TagEntry(columns[0], version, ObjectId.fromString(columns[1]), Long.parseLong(columns[2])));
+				}
+			}
+
+			packedRefsModified 	= Long.parseLong(packedRefs[1]);
+			packedRefsLength 	= Long.parseLong(packedRefs[2]);
+		} catch (RuntimeException e) {
+			// Indice corrompido, sera reconstruido
+			entries.clear();
+			releases.clear();
+			all.clear();
+			packedRefsModified 	= -1;
+			packedRefsLength 	= -1;
+		} finally {
+			reader.close();
+		}
+	}
+
+
+	private void save() throws IOException {
+		if (!dirty) {
+			return;
+		}
+
+		indexFile.getParentFile().mkdirs();
+
+		File temp 				= new File(indexFile.getPath() + ".lock");
+		BufferedWriter writer 	= new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"));
+
+		try {
+			writer.write(HEADER);
+			writer.newLine();
+			writer.write(PACKED_REFS + "\t" + packedRefsModified + "\t" + packedRefsLength);
+			writer.newLine();
+
+			for (TagEntry entry : all) {
+				writer.write(entry.name + "\t" + entry.objectId.name() + "\t" + entry.looseModified);
+				writer.newLine();
+			}
+		} finally {
+			writer.close();
+		}
+
+		if (!temp.renameTo(indexFile)) {
+			indexFile.delete();
+			temp.renameTo(indexFile);
+		}
+
+		dirty = false;
+	}
+
+
+	private static class TagEntry {
+		private final String name;
+		private final Version version;
+		private final ObjectId objectId;
+		private long looseModified;
+
+		private TagEntry(String name, Version version, ObjectId objectId, long looseModified) {
+			this.name 			= name;
+			this.version 		= version;
+			this.objectId 		= objectId;
+			this.looseModified 	= looseModified;
+		}
+	}
+
+
+	private static class TagEntryComparator implements Comparator<TagEntry> {
+		public int compare(TagEntry o1, TagEntry o2) {
+			int result = o1.version.compareTo(o2.version);
+			return result != 0 ? result : o1.name.compareTo(o2.name);
+		}
+	}
+}
@@ -0,0 +1,271 @@
+package com.codegik.gitflow.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Nested spans off the goal, the mojo, the operations off GitFlow and the forked commands
+ * The spans are written in Chrome trace-event format (chrome://tracing, Perfetto) and summarized at the end off goal.
+ * When the tracing is off the spans are a shared no-op instance, nothing is allocated or recorded.
+ * The tracer is global to the JVM like Statistics.
+ *
+ * @author Inacio G Klassmann
+ */
+public final class Tracer {
+	private static final List<Span> spans 	= new ArrayList<Span>();
+	private static volatile boolean enabled;
+	private static long origin;
+
+
+	private Tracer() {
+	}
+
+
+	/**
+	 * Discard the recorded spans and start recording
+	 */
+	public static void enable() {
+		synchronized (spans) {
+			spans.clear();
+			origin 	= System.nanoTime();
+			enabled = true;
+		}
+	}
+
+
+	/**
+	 * Stop recording, the recorded spans are kept until next enable
+	 */
+	public static void disable() {
+		enabled = false;
+	}
+
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+
+	/**
+	 * Start a span, it must be ended by Span.end
+	 *
+	 * @param category - Category off span. Ex: mojo, gitflow, command
+	 * @param name - Name off span. Ex: checkoutBranch
+	 * @return The span or Span.NOOP when the tracing is off
+	 */
+	public static Span start(String category, String name) {
+		return enabled ? new Span(category, name) : Span.NOOP;
+	}
+
+
+	private static void record(Span span) {
+		synchronized (spans) {
+			if (enabled) {
+				spans.add(span);
+			}
+		}
+	}
+
+
+	private static List<Span> getSpans() {
+		synchronized (spans) {
+			return new ArrayList<Span>(spans);
+		}
+	}
+
+
+	/**
+	 * Write the recorded spans in Chrome trace-event format, each span is a complete event (ph X)
+	 *
+	 * @param file - The trace file. Ex: target/gitflow-trace.json
+	 * @throws IOException
+	 */
+	public static void writeChromeTrace(File file) throws IOException {
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+
+		try {
+			writer.write("{\"displayTimeUnit\": \"ms\", \"traceEvents\": [\n");
+			int events = 0;
+
+			for (Span span : getSpans()) {
+				writer.write(events++ > 0 ? ",\n" : "");
+				writer.write("{\"name\": " + quote(span.name));
+				writer.write(", \"cat\": " + quote(span.category));
+				writer.write(", \"ph\": \"X\", \"pid\": 1, \"tid\": " + span.thread);
+				writer.write(", \"ts\": " + (span.start - origin) / 1000L);
+				writer.write(", \"dur\": " + span.duration / 1000L);
+				writer.write(", \"args\": {\"outcome\": " + quote(span.outcome));
+
+				if (span.args != null) {
+					for (Map.Entry<String, Object> arg : span.args.entrySet()) {
+						Object value = arg.getValue();
+						writer.write(", " + quote(arg.getKey()) + ": " + (value instanceof Long ? value.toString() : quote(String.valueOf(value))));
+					}
+				}
+
+				writer.write("}}");
+			}
+
+			writer.write("\n]}\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+
+	/**
+	 * Summary off recorded spans grouped by category and name, the most expensive first
+	 *
+	 * @return The lines off table
+	 */
+	public static List<String> buildSummary() {
+		Map<String, long[]> totals = new LinkedHashMap<String, long[]>();
+
+		for (Span span : getSpans()) {
+			String key 		= span.category + " " + span.name;
+			long[] total 	= totals.get(key);
+
+			if (total == null) {
+				// count, total, max, errors
+				total = new long[4];
+				totals.put(key, total);
+			}
+
+			total[0]++;
+			total[1] += span.duration;
+			total[2] = Math.max(total[2], span.duration);
+			total[3] += Span.OK.equals(span.outcome) ? 0 : 1;
+		}
+
+		List<Map.Entry<String, long[]>> entries = new ArrayList<Map.Entry<String, long[]>>(totals.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+			public int compare(Map.Entry<String, long[]> o1, Map.Entry<String, long[]> o2) {
+				return Long.valueOf(o2.getValue()[1]).compareTo(o1.getValue()[1]);
+			}
+		});
+
+		List<String> lines = new ArrayList<String>();
+		lines.add(String.format("%-40s %8s %12s %12s %8s", "span", "count", "total ms", "max ms", "errors"));
+
+		for (Map.Entry<String, long[]> entry : entries) {
+			long[] total = entry.getValue();
+			lines.add(String.format("%-40s %8d %12d %12d %8d", entry.getKey(), total[0], total[1] / 1000000L, total[2] / 1000000L, total[3]));
+		}
+
+		return lines;
+	}
+
+
+	private static String quote(String value) {
+		StringBuilder result = new StringBuilder(value.length() + 2).append('"');
+
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				result.append('\\').append(c);
+			} else if (c < 0x20) {
+				result.append(String.format("\\u%04x", (int) c));
+			} else {
+				result.append(c);
+			}
+		}
+
+		return result.append('"').toString();
+	}
+
+
+	/**
+	 * A timed operation, ended once by end
+	 * Usage:
+	 * Span span = Tracer.start("gitflow", "checkoutBranch").arg("branch", branchName);
+	 * try { ... } catch (Exception e) { throw span.fail(e); } finally { span.end(); }
+	 */
+	public static class Span {
+		public static final Span NOOP 	= new Span(null, null);
+		private static final String OK 	= "ok";
+
+		private final String category;
+		private final String name;
+		private final long thread;
+		private final long start;
+		private long duration;
+		private String outcome = OK;
+		private Map<String, Object> args;
+
+
+		private Span(String category, String name) {
+			this.category 	= category;
+			this.name 		= name;
+			this.thread 	= name == null ? 0 : Thread.currentThread().getId();
+			this.start 		= name == null ? 0 : System.nanoTime();
+		}
+
+
+		private boolean isRecording() {
+			return this != NOOP;
+		}
+
+
+		public Span arg(String key, String value) {
+			if (isRecording()) {
+				getArgs().put(key, value);
+			}
+
+			return this;
+		}
+
+
+		public Span arg(String key, long value) {
+			if (isRecording()) {
+				getArgs().put(key, Long.valueOf(value));
+			}
+
+			return this;
+		}
+
+
+		private Map<String, Object> getArgs() {
+			if (args == null) {
+				args = new LinkedHashMap<String, Object>();
+			}
+
+			return args;
+		}
+
+
+		/**
+		 * Mark the span as failed
+		 *
+		 * @param e - The failure
+		 * @return The same failure, to be thrown again
+		 */
+		public <E extends Throwable> E fail(E e) {
+			if (isRecording()) {
+				outcome = "error: " + e.getClass().getSimpleName();
+			}
+
+			return e;
+		}
+
+
+		public void end() {
+			if (isRecording()) {
+				duration = System.nanoTime() - start;
+				record(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,11 @@
+package com.codegik.gitflow.core;
+
+
+/**
+ * jgit: In process transport, reuse the connection during the whole execution
+ * git: Fork the git command line for each remote operation
+ */
+public enum TransportType {
+	jgit,
+	git;
+}
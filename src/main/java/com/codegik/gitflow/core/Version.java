@@ -0,0 +1,213 @@
+package com.codegik.gitflow.core;
+
+import java.util.Arrays;
+
+
+/**
+ * Numeric version with any number of components. Ex: 1.4, 1.4.3, 1.4.3.2
+ * Versions up to 4 components of at most 32767 are packed into a long, so comparing and sorting them does not allocate.
+ * Missing components are compared as zero, so 1.4 is equal to 1.4.0 when comparing.
+ *
+ * @author Inacio G Klassmann
+ */
+public final class Version implements Comparable<Version> {
+	private static final int COMPONENT_BITS 		= 15;
+	private static final int MAX_COMPONENT 			= (1 << COMPONENT_BITS) - 1;
+	private static final int MAX_PACKED_COMPONENTS 	= 4;
+	private static final long NOT_PACKED 			= -1L;
+
+	private final int[] components;
+	private final long packed;
+
+
+	private Version(int[] components) {
+		this.components = components;
+		this.packed 	= pack(components);
+	}
+
+
+	/**
+	 * Parse a version without regular expressions
+	 *
+	 * @param version - The version. Ex: 1.4.3
+	 * @return Version or null if version is not numeric
+	 */
+	public static Version parse(String version) {
+		if (version == null || version.length() == 0) {
+			return null;
+		}
+
+		int size = 1;
+
+		for (int i = 0; i < version.length(); i++) {
+			if (version.charAt(i) == '.') {
+				size++;
+			}
+		}
+
+		int[] components 	= new int[size];
+		int index 			= 0;
+		long value 			= -1;
+
+		for (int i = 0; i < version.length(); i++) {
+			char c = version.charAt(i);
+
+			if (c == '.') {
+				if (value < 0) {
+					return null;
+				}
+				components[index++] = (int) value;
+				value = -1;
+			} else if (c >= '0' && c <= '9') {
+				value = (value < 0 ? 0 : value * 10) + (c - '0');
+				if (value > Integer.MAX_VALUE) {
+					return null;
+				}
+			} else {
+				return null;
+			}
+		}
+
+		if (value < 0) {
+			return null;
+		}
+
+		components[index] = (int) value;
+
+		return new Version(components);
+	}
+
+
+	/**
+	 * Pack the components into a long with fixed width components
+	 *
+	 * @return The packed value or -1 if the version does not fit
+	 */
+	private static long pack(int[] components) {
+		if (components.length > MAX_PACKED_COMPONENTS) {
+			return NOT_PACKED;
+		}
+
+		long result = 0;
+
+		for (int i = 0; i < MAX_PACKED_COMPONENTS; i++) {
+			int component = i < components.length ? components[i] : 0;
+
+			if (component > MAX_COMPONENT) {
+				return NOT_PACKED;
+			}
+
+			result = (result << COMPONENT_BITS) | component;
+		}
+
+		return result;
+	}
+
+
+	public int size() {
+		return components.length;
+	}
+
+
+	public int get(int index) {
+		return components[index];
+	}
+
+
+	/**
+	 * Returns the packed value or -1 if the version has more than 4 components or a component bigger than 32767
+	 */
+	public long getPacked() {
+		return packed;
+	}
+
+
+	/**
+	 * Returns the first components of version. Ex: 1.4.3 -> 1.4
+	 *
+	 * @param size - Number of components
+	 * @return Version
+	 */
+	public Version truncate(int size) {
+		if (size >= components.length) {
+			return this;
+		}
+
+		return new Version(Arrays.copyOf(components, size));
+	}
+
+
+	/**
+	 * Increase the last component. Ex: 1.4.3 -> 1.4.4
+	 *
+	 * @return Version
+	 */
+	public Version increment() {
+		return increment(components.length - 1);
+	}
+
+
+	/**
+	 * Increase the component and reset the following components. Ex: increment(1) 1.4.3 -> 1.5.0
+	 *
+	 * @param index - Index of component
+	 * @return Version
+	 */
+	public Version increment(int index) {
+		int[] result = Arrays.copyOf(components, components.length);
+		result[index]++;
+
+		for (int i = index + 1; i < result.length; i++) {
+			result[i] = 0;
+		}
+
+		return new Version(result);
+	}
+
+
+	public int compareTo(Version other) {
+		if (packed != NOT_PACKED && other.packed != NOT_PACKED) {
+			return packed < other.packed ? -1 : (packed == other.packed ? 0 : 1);
+		}
+
+		int size = Math.max(components.length, other.components.length);
+
+		for (int i = 0; i < size; i++) {
+			int c1 = i < components.length ? components[i] : 0;
+			int c2 = i < other.components.length ? other.components[i] : 0;
+
+			if (c1 != c2) {
+				return c1 < c2 ? -1 : 1;
+			}
+		}
+
+		return 0;
+	}
+
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof Version && Arrays.equals(components, ((Version) obj).components);
+	}
+
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(components);
+	}
+
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+
+		for (int i = 0; i < components.length; i++) {
+			if (i > 0) {
+				result.append('.');
+			}
+			result.append(components[i]);
+		}
+
+		return result.toString();
+	}
+}
@@ -1,21 +1,17 @@
 package com.codegik.gitflow.core.impl;
 
 import java.io.File;
-import java.io.IOException;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Date;
-import java.util.List;
-import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.eclipse.jgit.api.CheckoutCommand.Stage;
 import org.eclipse.jgit.lib.Ref;
-import org.eclipse.jgit.revwalk.RevWalk;
 
 import com.codegik.gitflow.core.GitFlow;
 import com.codegik.gitflow.core.GitFlowPattern;
+import com.codegik.gitflow.core.Tracer;
+import com.codegik.gitflow.core.Version;
 
 
 public class DefaultGitFlow extends GitFlow {
@@ -53,7 +49,7 @@ public class DefaultGitFlow extends GitFlow {
 
 
 	/**
-	 * Find last remote tag off repository
+	 * Find the highest remote tag off repository
 	 *
 	 * @return Ref - Reference off a remote tag
 	 * @throws Exception
@@ -64,54 +60,25 @@ public class DefaultGitFlow extends GitFlow {
 
 
 	/**
-	 * Find last remote tag off release version. Ex: tags/1.4*
+	 * Find the highest remote tag off release version. Ex: tags/1.4*
 	 *
 	 * @param String releaseVersion - Version off release. Ex: 1.4
 	 * @return Ref - Reference off a remote tag
 	 * @throws Exception
 	 */
 	public Ref findLastTag(String releaseVersion) throws Exception {
-		final RevWalk walk 	= new RevWalk(getGit().getRepository());
-		List<Ref> tags 		= getGit().tagList().call();
-		int index 			= 0;
-
-		// Filtra a lista de tags pela release informada
-		if (releaseVersion != null) {
-			while (index < tags.size()) {
-				if (!tags.get(index).getName().startsWith(getGitFlowPattern().getPrefixGitTag() + getGitFlowPattern().getGitSeparator() + releaseVersion + ".")) {
-					tags.remove(index);
-					continue;
-				}
-				index++;
-			}
-		}
+		Tracer.Span span = Tracer.start("gitflow", "findLastTag").arg("release", String.valueOf(releaseVersion));
 
-		// Filtra a lista de tags pelo padrao de nomenclatura
-		index = 0;
-		while (index < tags.size()) {
-			if (!getGitFlowPattern().getTagVersionPattern().matcher(getVersionFromTag(tags.get(index))).matches()) {
-				tags.remove(index);
-				continue;
-			}
-			index++;
-		}
+		try {
+			String tagName = getTagIndex().findLastTag(releaseVersion);
+			span.arg("tags", getTagIndex().size());
 
-		// Ordena a lista de tags baseado na data de criacao
-		Collections.sort(tags, new Comparator<Ref>() {
-			public int compare(Ref o1, Ref o2) {
-				Date d1 = null;
-				Date d2 = null;
-				try {
-					d1 = walk.parseTag(o1.getObjectId()).getTaggerIdent().getWhen();
-					d2 = walk.parseTag(o2.getObjectId()).getTaggerIdent().getWhen();
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
-				return d1.compareTo(d2);
-			}
-		});
-
-		return tags.size() > 0 ? tags.get(tags.size()-1) : null;
+			return tagName == null ? null : getGit().getRepository().getRefDatabase().getRef(tagName);
+		} catch (Exception e) {
+			throw span.fail(e);
+		} finally {
+			span.end();
+		}
 	}
 
 
@@ -123,15 +90,7 @@ public class DefaultGitFlow extends GitFlow {
 	 * @throws Exception
 	 */
 	public String increaseVersion(String version) throws Exception {
-		Matcher matcher = getGitFlowPattern().getTagVersionPattern().matcher(version);
-
-		if (matcher.matches()) {
-			Integer increment = new Integer(matcher.group(3));
-			increment++;
-			return String.format("%s.%s.%s", matcher.group(1), matcher.group(2), increment.toString());
-		}
-
-		throw new MojoExecutionException("The version " + version + " does not match with pattern " + getGitFlowPattern().getTagVersionPattern().toString());
+		return parseVersion("version", version, getGitFlowPattern().getTagVersionPattern()).increment().toString();
 	}
 
 
@@ -155,29 +114,14 @@ public class DefaultGitFlow extends GitFlow {
 	 * @throws Exception
 	 */
 	public String increaseVersionBasedOnTag(String version) throws Exception {
-		Matcher matcher = getGitFlowPattern().getTagVersionPattern().matcher(version);
-
-		if (matcher.matches()) {
-			String releaseVersion 	= String.format("%s.%s", matcher.group(1), matcher.group(2));
-			Ref lastTag 			= findLastTag(releaseVersion);
-			String newVersion 		= null;
-			Integer increment 		= null;
-
-			if (lastTag == null) {
-				newVersion = matcher.group(3);
-			} else {
-				newVersion 	= getVersionFromTag(lastTag);
-				matcher 	= getGitFlowPattern().getTagVersionPattern().matcher(newVersion);
-				newVersion 	= matcher.matches() ? matcher.group(3) : null;
-			}
-
-			increment = new Integer(newVersion);
-			increment++;
-
-			return String.format("%s.%s.%s", matcher.group(1), matcher.group(2), increment.toString());
+		Version currentVersion 	= parseVersion("version", version, getGitFlowPattern().getTagVersionPattern());
+		Ref lastTag 			= findLastTag(currentVersion.truncate(2).toString());
+
+		if (lastTag == null) {
+			return currentVersion.increment().toString();
 		}
 
-		throw new MojoExecutionException("The version " + version + " does not match with pattern " + getGitFlowPattern().getTagVersionPattern().toString());
+		return parseVersion("version", getVersionFromTag(lastTag), getGitFlowPattern().getTagVersionPattern()).increment().toString();
 	}
 
 
@@ -205,40 +149,10 @@ public class DefaultGitFlow extends GitFlow {
 	public Boolean isReleaseSmallerThanCurrentVersion(String releaseBranchVersion, String currentVersion) throws Exception {
 		getLog().info("Is release smaller than currentVersion " + releaseBranchVersion + " -> " + currentVersion + "?");
 
-		Matcher matcherReleaseBranchVersion = getGitFlowPattern().getReleaseVersionPattern().matcher(releaseBranchVersion);
-		Matcher matcherCurrentVersion 		= getGitFlowPattern().getTagVersionPattern().matcher(currentVersion);
+		Version current = parseVersion("currentVersion", currentVersion, getGitFlowPattern().getTagVersionPattern());
+		Version release = parseVersion("releaseBranchVersion", releaseBranchVersion, getGitFlowPattern().getReleaseVersionPattern());
 
-		if (!matcherCurrentVersion.matches()) {
-			throw new MojoExecutionException("The currentVersion " + currentVersion + " does not match with pattern " + getGitFlowPattern().getTagVersionPattern().toString());
-		}
-
-		if (!matcherReleaseBranchVersion.matches()) {
-			throw new MojoExecutionException("The releaseBranchVersion " + releaseBranchVersion + " does not match with pattern " + getGitFlowPattern().getTagVersionPattern().toString());
-		}
-		
-		return compareVersions(matcherReleaseBranchVersion, matcherCurrentVersion) == -1;
-	}
-	
-	
-	private Integer compareVersions(Matcher version1, Matcher version2) throws MojoExecutionException {
-		int maxGroup = version1.groupCount() < version2.groupCount() ? version1.groupCount() : version2.groupCount();
-		
-		for (int i = 1; i <= maxGroup; i++) {
-			int intVersion1	= new Integer(version1.group(i));
-			int intVersion2	= new Integer(version2.group(i));
-			
-			if (intVersion1 == intVersion2) {
-				continue;
-			}
-			
-			if (intVersion1 < intVersion2) {
-				return -1; // the version1 is smaller than version2
-			}
-			
-			return 1; // the version1 is greater than version2
-		}
-		
-		return 0; // the version1 is iqual to version2
+		return release.compareTo(current.truncate(release.size())) < 0;
 	}
 
 
@@ -256,25 +170,20 @@ public class DefaultGitFlow extends GitFlow {
 	public Integer whatIsTheBigger(String firstVersion, String secondVersion) throws Exception {
 		getLog().info("What is bigger " + firstVersion + " -> " + secondVersion + "?");
 
-		Matcher matcherFirstVersion 	= getGitFlowPattern().getTagVersionPattern().matcher(firstVersion);
-		Matcher matcherSecondVersion 	= getGitFlowPattern().getTagVersionPattern().matcher(secondVersion);
-
-		if (!matcherFirstVersion.matches()) {
-			throw new MojoExecutionException("The firstVersion " + firstVersion + " does not match with pattern " + getGitFlowPattern().getTagVersionPattern().toString());
-		}
+		return parseVersion("firstVersion", firstVersion, getGitFlowPattern().getTagVersionPattern()).compareTo(parseVersion("secondVersion", secondVersion, getGitFlowPattern().getTagVersionPattern()));
+	}
 
-		if (!matcherSecondVersion.matches()) {
-			throw new MojoExecutionException("The secondVersion " + secondVersion + " does not match with pattern " + getGitFlowPattern().getTagVersionPattern().toString());
-		}
 
-		Integer intFirstVersion 	= new Integer(matcherFirstVersion.group(2));
-		Integer intSecondVersion 	= new Integer(matcherSecondVersion.group(2));
+	/**
+	 * Parse the version after checking it with the pattern off GitFlowPattern, Version alone accepts any numeric version
+	 */
+	private Version parseVersion(String name, String version, Pattern pattern) throws MojoExecutionException {
+		Version result = version == null || !pattern.matcher(version).matches() ? null : Version.parse(version);
 
-		if (intFirstVersion.compareTo(intSecondVersion) == 0) {
-			intFirstVersion 	= new Integer(matcherFirstVersion.group(3));
-			intSecondVersion 	= new Integer(matcherSecondVersion.group(3));
+		if (result == null) {
+			throw new MojoExecutionException("The " + name + " " + version + " does not match with pattern " + pattern.toString());
 		}
 
-		return intFirstVersion.compareTo(intSecondVersion);
+		return result;
 	}
 }
@@ -9,10 +9,18 @@ public abstract class DefaultGitFlowMojo extends GitFlowMojo {
 	@Override
 	public DefaultGitFlow getGitFlow() {
 		if (defaultGitFlow == null) {
-			defaultGitFlow = new DefaultGitFlow(new DefaultGitFlowPattern(), getLog());
+			defaultGitFlow = new DefaultGitFlow(new DefaultGitFlowPattern(), getLog(), getBaseDir());
 		}
 
 		return defaultGitFlow;
 	}
 
+
+	/**
+	 * Use a GitFlow created outside, like the daemon does to reuse the open repository
+	 */
+	public void setGitFlow(DefaultGitFlow defaultGitFlow) {
+		this.defaultGitFlow = defaultGitFlow;
+	}
+
 }
@@ -0,0 +1,194 @@
+package com.codegik.gitflow.core.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import com.codegik.gitflow.command.CommandException;
+import com.codegik.gitflow.command.CommandExecutor;
+import com.codegik.gitflow.core.GitTransport;
+import com.codegik.gitflow.core.RefUpdateRejectedException;
+import com.codegik.gitflow.core.Statistics;
+
+
+/**
+ * Transport that forks the git command line for each remote operation
+ * The expected old ids are sent with --force-with-lease, so git 1.8.5 or newer is required
+ *
+ * @author Inacio G Klassmann
+ */
+public class ForkedGitTransport implements GitTransport {
+	private static final List<String> REMOTE_CHANGED = Arrays.asList("(stale info)", "(fetch first)", "(non-fast-forward)");
+	private static Boolean atomicSupported;
+
+	private CommandExecutor gitExecutor;
+	private String remote;
+
+
+	public ForkedGitTransport(CommandExecutor gitExecutor, String remote) {
+		this.gitExecutor 	= gitExecutor;
+		this.remote 		= remote;
+	}
+
+
+	/**
+	 * Returns true when the git command line supports push --atomic, added by git 2.4
+	 * The version is asked once per JVM, the daemon and the goal multi do not fork git --version for each goal
+	 *
+	 * @param gitExecutor - The executor off git command line
+	 */
+	public static synchronized boolean supportsAtomic(CommandExecutor gitExecutor) {
+		if (atomicSupported == null) {
+			atomicSupported = Boolean.valueOf(isAtomicVersion(gitExecutor));
+		}
+
+		return atomicSupported.booleanValue();
+	}
+
+
+	private static boolean isAtomicVersion(CommandExecutor gitExecutor) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		try {
+			gitExecutor.execute(output, "--version");
+		} catch (Exception e) {
+			return false;
+		}
+
+		// Ex: git version 2.39.2
+		Matcher matcher = Pattern.compile("git version ([0-9]+)\\.([0-9]+)").matcher(output.toString());
+
+		if (!matcher.find()) {
+			return false;
+		}
+
+		int major = Integer.parseInt(matcher.group(1));
+		int minor = Integer.parseInt(matcher.group(2));
+
+		return major > 2 || (major == 2 && minor >= 4);
+	}
+
+
+	@Override
+	public String push(boolean setUpstream, Map<String, ObjectId> expectedOldIds, String... refSpecs) throws Exception {
+		return push(false, setUpstream, expectedOldIds, refSpecs);
+	}
+
+
+	@Override
+	public String pushAtomic(boolean setUpstream, Map<String, ObjectId> expectedOldIds, String... refSpecs) throws Exception {
+		return push(true, setUpstream, expectedOldIds, refSpecs);
+	}
+
+
+	private String push(boolean atomic, boolean setUpstream, Map<String, ObjectId> expectedOldIds, String... refSpecs) throws Exception {
+		List<String> args = new ArrayList<String>();
+		args.add("push");
+		args.add("--porcelain");
+
+		if (atomic) {
+			args.add("--atomic");
+		}
+
+		if (setUpstream) {
+			args.add("--set-upstream");
+		}
+
+		if (expectedOldIds != null) {
+			for (Map.Entry<String, ObjectId> expected : expectedOldIds.entrySet()) {
+				// Sem valor esperado o git exige que a ref nao exista no remoto
+				args.add("--force-with-lease=" + expected.getKey() + ":" + (ObjectId.zeroId().equals(expected.getValue()) ? "" : expected.getValue().name()));
+			}
+		}
+
+		args.add(remote);
+		args.addAll(Arrays.asList(refSpecs));
+
+		Statistics.incrementNetworkOperations();
+
+		try {
+			return gitExecutor.execute(args.toArray(new String[args.size()])).getTail();
+		} catch (CommandException e) {
+			List<String> changed = findChangedRefs(e.getStdOut());
+
+			if (!changed.isEmpty()) {
+				throw new RefUpdateRejectedException(changed, "Push of " + changed + " was rejected, the remote was changed by someone else");
+			}
+
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Read the remote refs rejected because they were changed, from the output of push --porcelain
+	 * Ex: !	refs/heads/release/1.4:refs/heads/release/1.4	[rejected] (stale info)
+	 */
+	private List<String> findChangedRefs(String output) {
+		List<String> changed = new ArrayList<String>();
+
+		for (String line : output == null ? new String[0] : output.split("\n")) {
+			String[] columns = line.split("\t");
+
+			if (columns.length < 3 || !"!".equals(columns[0])) {
+				continue;
+			}
+
+			for (String reason : REMOTE_CHANGED) {
+				if (columns[2].contains(reason)) {
+					changed.add(columns[1].substring(columns[1].indexOf(':') + 1));
+				}
+			}
+		}
+
+		return changed;
+	}
+
+
+	@Override
+	public String fetch(String... refSpecs) throws Exception {
+		List<String> args = new ArrayList<String>();
+		args.add("fetch");
+		args.add("--no-tags");
+		args.add(remote);
+		args.addAll(Arrays.asList(refSpecs));
+
+		Statistics.incrementNetworkOperations();
+		return gitExecutor.execute(args.toArray(new String[args.size()])).getTail();
+	}
+
+
+	/**
+	 * Read the output of ls-remote. Ex: 5f3c...	refs/heads/develop
+	 */
+	@Override
+	public Map<String, ObjectId> lsRemote() throws Exception {
+		Map<String, ObjectId> refs 		= new LinkedHashMap<String, ObjectId>();
+		ByteArrayOutputStream output 	= new ByteArrayOutputStream();
+
+		Statistics.incrementNetworkOperations();
+		gitExecutor.execute(output, "ls-remote", remote);
+
+		for (String line : output.toString("UTF-8").split("\n")) {
+			String[] columns = line.trim().split("\t");
+
+			if (columns.length == 2) {
+				refs.put(columns[1], ObjectId.fromString(columns[0]));
+			}
+		}
+
+		return refs;
+	}
+
+
+	@Override
+	public void close() {
+	}
+}
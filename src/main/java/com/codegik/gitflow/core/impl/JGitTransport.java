@@ -0,0 +1,268 @@
+package com.codegik.gitflow.core.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.StringUtils;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.transport.FetchConnection;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+import org.eclipse.jgit.transport.RemoteRefUpdate.Status;
+import org.eclipse.jgit.transport.TagOpt;
+import org.eclipse.jgit.transport.Transport;
+
+import com.codegik.gitflow.core.GitTransport;
+import com.codegik.gitflow.core.PartialPushException;
+import com.codegik.gitflow.core.RefUpdateRejectedException;
+import com.codegik.gitflow.core.Statistics;
+
+
+/**
+ * In process transport using JGit
+ * The same Transport is used for all remote operations of the execution, so the connection and authentication
+ * with the remote are done once, and the objects are read from the already open repository
+ *
+ * @author Inacio G Klassmann
+ */
+public class JGitTransport implements GitTransport {
+	private Repository repository;
+	private String remote;
+	private Log log;
+	private Transport transport;
+
+
+	public JGitTransport(Repository repository, String remote, Log log) {
+		this.repository = repository;
+		this.remote 	= remote;
+		this.log 		= log;
+	}
+
+
+	protected Transport getTransport() throws Exception {
+		if (transport == null) {
+			transport = Transport.open(repository, remote);
+		}
+
+		return transport;
+	}
+
+
+	@Override
+	public String push(boolean setUpstream, Map<String, ObjectId> expectedOldIds, String... refSpecs) throws Exception {
+		return push(false, setUpstream, expectedOldIds, refSpecs);
+	}
+
+
+	/**
+	 * JGit does not support the atomic push capability, so all refspecs are pushed in one request
+	 * and the remote refs already updated are restored if any update is rejected
+	 *
+	 * @throws PartialPushException when the remote refs already updated could not be restored
+	 */
+	@Override
+	public String pushAtomic(boolean setUpstream, Map<String, ObjectId> expectedOldIds, String... refSpecs) throws Exception {
+		return push(true, setUpstream, expectedOldIds, refSpecs);
+	}
+
+
+	private String push(boolean atomic, boolean setUpstream, Map<String, ObjectId> expectedOldIds, String... refSpecs) throws Exception {
+		log.info("jgit push " + remote + " " + StringUtils.join(refSpecs, " "));
+
+		List<RefSpec> specs = new ArrayList<RefSpec>();
+
+		for (String refSpec : refSpecs) {
+			specs.add(new RefSpec(refSpec));
+		}
+
+		Collection<RemoteRefUpdate> updates 	= withExpectedOldIds(getTransport().findRemoteRefUpdatesFor(specs), expectedOldIds);
+		Statistics.incrementNetworkOperations();
+		PushResult result 						= getTransport().push(NullProgressMonitor.INSTANCE, updates);
+		List<RemoteRefUpdate> applied 			= new ArrayList<RemoteRefUpdate>();
+		List<String> changed 					= new ArrayList<String>();
+		RemoteRefUpdate rejected 				= null;
+		StringBuilder output 					= new StringBuilder();
+
+		for (RemoteRefUpdate update : result.getRemoteUpdates()) {
+			output.append(update.getStatus()).append(" ").append(update.getRemoteName()).append("\n");
+
+			if (update.getStatus() == Status.OK) {
+				applied.add(update);
+			} else if (update.getStatus() != Status.UP_TO_DATE && rejected == null) {
+				rejected = update;
+			}
+
+			if (update.getStatus() == Status.REJECTED_REMOTE_CHANGED || update.getStatus() == Status.REJECTED_NONFASTFORWARD) {
+				changed.add(update.getRemoteName());
+			}
+		}
+
+		log.info(output.toString().trim());
+
+		if (rejected != null) {
+			String message = "Push of " + rejected.getRemoteName() + " was rejected: " + rejected.getStatus() + (rejected.getMessage() == null ? "" : " " + rejected.getMessage());
+
+			if (atomic && !applied.isEmpty()) {
+				restore(result, applied, message);
+			}
+
+			if (!changed.isEmpty()) {
+				throw new RefUpdateRejectedException(changed, message);
+			}
+
+			throw new MojoExecutionException(message);
+		}
+
+		if (setUpstream) {
+			setUpstream(specs);
+		}
+
+		return output.toString();
+	}
+
+
+	private Collection<RemoteRefUpdate> withExpectedOldIds(Collection<RemoteRefUpdate> updates, Map<String, ObjectId> expectedOldIds) throws Exception {
+		List<RemoteRefUpdate> result = new ArrayList<RemoteRefUpdate>();
+
+		for (RemoteRefUpdate update : updates) {
+			ObjectId expected = expectedOldIds == null ? null : expectedOldIds.get(update.getRemoteName());
+			result.add(expected == null ? update : new RemoteRefUpdate(update, expected));
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Put back the remote refs updated by a rejected atomic push
+	 * The refs that could not be put back make the push fail with PartialPushException, naming them
+	 */
+	private void restore(PushResult result, List<RemoteRefUpdate> applied, String message) throws Exception {
+		log.warn("Restoring " + applied.size() + " remote refs already updated");
+
+		List<RemoteRefUpdate> restore 	= new ArrayList<RemoteRefUpdate>();
+		Map<String, ObjectId> oldIds 	= new LinkedHashMap<String, ObjectId>();
+		Map<String, ObjectId> newIds 	= new LinkedHashMap<String, ObjectId>();
+		List<String> failed 			= new ArrayList<String>();
+		String reason 					= null;
+
+		for (RemoteRefUpdate update : applied) {
+			Ref advertised 		= result.getAdvertisedRef(update.getRemoteName());
+			ObjectId oldId 		= advertised == null ? ObjectId.zeroId() : advertised.getObjectId();
+			ObjectId newId 		= update.getNewObjectId() == null ? ObjectId.zeroId() : update.getNewObjectId();
+			String trackingRef 	= update.hasTrackingRefUpdate() ? update.getTrackingRefUpdate().getLocalName() : null;
+
+			oldIds.put(update.getRemoteName(), oldId);
+			newIds.put(update.getRemoteName(), newId);
+			restore.add(new RemoteRefUpdate(repository, null, oldId, update.getRemoteName(), true, trackingRef, newId));
+		}
+
+		try {
+			Statistics.incrementNetworkOperations();
+
+			for (RemoteRefUpdate update : getTransport().push(NullProgressMonitor.INSTANCE, restore).getRemoteUpdates()) {
+				if (update.getStatus() != Status.OK) {
+					log.error("Could not restore " + update.getRemoteName() + ": " + update.getStatus());
+					failed.add(update.getRemoteName());
+				}
+			}
+		} catch (Exception e) {
+			log.error("Could not restore the remote refs: " + e.getMessage());
+			failed.addAll(oldIds.keySet());
+			reason = e.getMessage();
+		}
+
+		if (failed.isEmpty()) {
+			return;
+		}
+
+		PartialPushException exception = new PartialPushException(message + ". The remote refs " + failed + " were left updated and could not be restored" + (reason == null ? "" : ": " + reason));
+
+		for (String refName : failed) {
+			exception.addRef(refName, oldIds.get(refName), newIds.get(refName));
+		}
+
+		throw exception;
+	}
+
+
+	private void setUpstream(List<RefSpec> specs) throws Exception {
+		StoredConfig config = repository.getConfig();
+
+		for (RefSpec spec : specs) {
+			if (spec.getSource() != null && spec.getSource().startsWith(Constants.R_HEADS)) {
+				String branchName = Repository.shortenRefName(spec.getSource());
+				config.setString(ConfigConstants.CONFIG_BRANCH_SECTION, branchName, ConfigConstants.CONFIG_KEY_REMOTE, remote);
+				config.setString(ConfigConstants.CONFIG_BRANCH_SECTION, branchName, ConfigConstants.CONFIG_KEY_MERGE, spec.getDestination());
+			}
+		}
+
+		config.save();
+	}
+
+
+	@Override
+	public String fetch(String... refSpecs) throws Exception {
+		log.info("jgit fetch " + remote + " " + StringUtils.join(refSpecs, " "));
+
+		List<RefSpec> specs = new ArrayList<RefSpec>();
+
+		for (String refSpec : refSpecs) {
+			specs.add(new RefSpec(refSpec));
+		}
+
+		// Somente as tags pedidas, sem seguir as tags dos commits buscados
+		getTransport().setTagOpt(TagOpt.NO_TAGS);
+
+		Statistics.incrementNetworkOperations();
+		return getTransport().fetch(NullProgressMonitor.INSTANCE, specs).getMessages();
+	}
+
+
+	/**
+	 * The refs are read from the advertisement off remote, the same connection is not used to fetch
+	 */
+	@Override
+	public Map<String, ObjectId> lsRemote() throws Exception {
+		log.info("jgit ls-remote " + remote);
+
+		Map<String, ObjectId> refs 	= new LinkedHashMap<String, ObjectId>();
+		Statistics.incrementNetworkOperations();
+		FetchConnection connection 	= getTransport().openFetch();
+
+		try {
+			for (Ref ref : connection.getRefs()) {
+				refs.put(ref.getName(), ref.getObjectId());
+
+				if (ref.getPeeledObjectId() != null) {
+					refs.put(ref.getName() + PEELED_SUFFIX, ref.getPeeledObjectId());
+				}
+			}
+		} finally {
+			connection.close();
+		}
+
+		return refs;
+	}
+
+
+	@Override
+	public void close() {
+		if (transport != null) {
+			transport.close();
+			transport = null;
+		}
+	}
+}
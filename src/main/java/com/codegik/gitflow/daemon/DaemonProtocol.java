@@ -0,0 +1,50 @@
+package com.codegik.gitflow.daemon;
+
+import java.io.File;
+
+
+/**
+ * Line protocol between GitFlowClient and GitFlowDaemon, the lines are UTF-8
+ *
+ * Request:
+ * GITFLOW 1
+ * token=<token off daemon file>
+ * goal=<goal>. Ex: start-release
+ * basedir=<directory off project>
+ * property.<name>=<value>. Ex: property.version=1.4
+ * <empty line>
+ *
+ * Response, one line per log message and the exit code at the end:
+ * LOG <level> <message>
+ * EXIT <code>
+ *
+ * Only this class and GitFlowClient are loaded by the client, they must use only the JDK.
+ *
+ * @author Inacio G Klassmann
+ */
+public final class DaemonProtocol {
+	public static final String HEADER 		= "GITFLOW 1";
+	public static final String TOKEN 		= "token";
+	public static final String GOAL 		= "goal";
+	public static final String BASEDIR 		= "basedir";
+	public static final String PROPERTY 	= "property.";
+	public static final String LOG 			= "LOG ";
+	public static final String EXIT 		= "EXIT ";
+	public static final String STOP 		= "stop";
+	public static final String PORT 		= "port";
+	public static final String ENCODING 	= "UTF-8";
+
+
+	private DaemonProtocol() {
+	}
+
+
+	/**
+	 * The file where the running daemon writes its port and token, readable only by the user
+	 *
+	 * @return ~/.gitflow/daemon.properties
+	 */
+	public static File getDaemonFile() {
+		return new File(new File(System.getProperty("user.home"), ".gitflow"), "daemon.properties");
+	}
+}
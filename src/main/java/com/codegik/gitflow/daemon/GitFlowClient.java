@@ -0,0 +1,146 @@
+package com.codegik.gitflow.daemon;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+
+/**
+ * Thin client off GitFlowDaemon, it sends the goal with the properties and prints the log off goal
+ * Usage: java -cp gitflow-maven-plugin.jar com.codegik.gitflow.daemon.GitFlowClient <goal> [-D<name>=<value>...]
+ * Ex: java -cp gitflow-maven-plugin.jar com.codegik.gitflow.daemon.GitFlowClient start-release -Dversion=1.4
+ * The goal is executed on the current directory or on -Dbasedir. The goal stop stops the daemon.
+ *
+ * @author Inacio G Klassmann
+ */
+public class GitFlowClient {
+	private final PrintStream out;
+
+
+	public GitFlowClient(PrintStream out) {
+		this.out = out;
+	}
+
+
+	public static void main(String[] args) {
+		System.exit(new GitFlowClient(System.out).run(args));
+	}
+
+
+	/**
+	 * Execute the goal on daemon
+	 *
+	 * @param args - The goal and the properties. Ex: start-release -Dversion=1.4
+	 * @return The exit code off goal
+	 */
+	public int run(String[] args) {
+		String goal 					= null;
+		Map<String, String> properties 	= new LinkedHashMap<String, String>();
+
+		for (String arg : args) {
+			if (arg.startsWith("-D")) {
+				int separator = arg.indexOf('=');
+				properties.put(separator > 0 ? arg.substring(2, separator) : arg.substring(2), separator > 0 ? arg.substring(separator + 1) : "true");
+			} else {
+				goal = arg;
+			}
+		}
+
+		if (goal == null) {
+			out.println("Usage: GitFlowClient <goal> [-D<name>=<value>...]");
+			return 1;
+		}
+
+		String basedir = properties.containsKey(DaemonProtocol.BASEDIR) ? properties.remove(DaemonProtocol.BASEDIR) : System.getProperty("user.dir");
+
+		try {
+			return send(goal, new File(basedir).getAbsolutePath(), properties);
+		} catch (ConnectException e) {
+			out.println("[ERROR] The gitflow daemon is not running, start it with: mvn gitflow:daemon");
+		} catch (IOException e) {
+			out.println("[ERROR] " + e.getMessage());
+		}
+
+		return 1;
+	}
+
+
+	private int send(String goal, String basedir, Map<String, String> properties) throws IOException {
+		Properties daemon = readDaemonFile();
+		Socket socket = new Socket(InetAddress.getByName("127.0.0.1"), Integer.parseInt(daemon.getProperty(DaemonProtocol.PORT)));
+
+		try {
+			Writer writer = new OutputStreamWriter(socket.getOutputStream(), DaemonProtocol.ENCODING);
+
+			writer.write(DaemonProtocol.HEADER + "\n");
+			writer.write(line(DaemonProtocol.TOKEN, daemon.getProperty(DaemonProtocol.TOKEN)));
+			writer.write(line(DaemonProtocol.GOAL, goal));
+			writer.write(line(DaemonProtocol.BASEDIR, basedir));
+
+			for (Map.Entry<String, String> property : properties.entrySet()) {
+				writer.write(line(DaemonProtocol.PROPERTY + property.getKey(), property.getValue()));
+			}
+
+			writer.write("\n");
+			writer.flush();
+
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), DaemonProtocol.ENCODING));
+
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				if (line.startsWith(DaemonProtocol.EXIT)) {
+					return Integer.parseInt(line.substring(DaemonProtocol.EXIT.length()).trim());
+				}
+
+				if (line.startsWith(DaemonProtocol.LOG)) {
+					int separator = line.indexOf(' ', DaemonProtocol.LOG.length());
+					out.println("[" + line.substring(DaemonProtocol.LOG.length(), separator) + "] " + line.substring(separator + 1));
+				}
+			}
+
+			throw new IOException("The gitflow daemon closed the connection before the end off goal");
+		} finally {
+			socket.close();
+		}
+	}
+
+
+	private String line(String key, String value) throws IOException {
+		if (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+			throw new IOException("The value off " + key + " can not have line breaks");
+		}
+
+		return key + "=" + value + "\n";
+	}
+
+
+	private Properties readDaemonFile() throws IOException {
+		File file = DaemonProtocol.getDaemonFile();
+
+		if (!file.isFile()) {
+			throw new ConnectException(file.getAbsolutePath() + " not found");
+		}
+
+		Properties properties 	= new Properties();
+		InputStream input 		= new FileInputStream(file);
+
+		try {
+			properties.load(input);
+		} finally {
+			input.close();
+		}
+
+		return properties;
+	}
+}
@@ -0,0 +1,385 @@
+package com.codegik.gitflow.daemon;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.settings.Settings;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import com.codegik.gitflow.core.GitFlowMojo;
+import com.codegik.gitflow.core.PartialClone;
+import com.codegik.gitflow.core.RepositoryPool;
+import com.codegik.gitflow.core.impl.DefaultGitFlow;
+import com.codegik.gitflow.core.impl.DefaultGitFlowMojo;
+import com.codegik.gitflow.core.impl.DefaultGitFlowPattern;
+
+
+/**
+ * Long-lived process that executes the goals sent by GitFlowClient
+ * The JVM, the plugin classes and the open repositories (with their pack files) are kept between goals,
+ * so each goal only pays its own work. The goals run one at a time, the daemon listens only on loopback
+ * and the clients must send the token written in DaemonProtocol.getDaemonFile.
+ *
+ * @author Inacio G Klassmann
+ */
+public class GitFlowDaemon {
+	private static final int ACCEPT_TIMEOUT = 10000;
+
+	private final Log log;
+	private final Settings settings;
+	private final long idleTimeout;
+	private final GoalRegistry registry;
+	private final String token;
+	private final Map<File, Git> repositories 	= new HashMap<File, Git>();
+	private final Object goalLock 				= new Object();
+	private ServerSocket serverSocket;
+	private ExecutorService connections;
+	private volatile boolean running;
+	private volatile long lastRequest;
+
+
+	/**
+	 * @param log - Log off daemon console
+	 * @param settings - Settings used by all goals. Ex: offline, active profiles
+	 * @param idleTimeout - The daemon stops after this time without requests, in milliseconds
+	 * @throws Exception
+	 */
+	public GitFlowDaemon(Log log, Settings settings, long idleTimeout) throws Exception {
+		this.log 			= log;
+		this.settings 		= settings;
+		this.idleTimeout 	= idleTimeout;
+		this.registry 		= new GoalRegistry();
+		this.token 			= buildToken();
+	}
+
+
+	private static String buildToken() {
+		byte[] bytes = new byte[20];
+		new SecureRandom().nextBytes(bytes);
+		return ObjectId.fromRaw(bytes).name();
+	}
+
+
+	/**
+	 * Listen on loopback and write the daemon file
+	 *
+	 * @param port - The port or 0 for any free port
+	 * @return The port
+	 * @throws IOException
+	 */
+	public int start(int port) throws IOException {
+		serverSocket = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+		serverSocket.setSoTimeout(ACCEPT_TIMEOUT);
+		connections = Executors.newCachedThreadPool(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "gitflow-daemon-connection");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		running 	= true;
+		lastRequest = System.currentTimeMillis();
+
+		writeDaemonFile(serverSocket.getLocalPort());
+
+		return serverSocket.getLocalPort();
+	}
+
+
+	private void writeDaemonFile(int port) throws IOException {
+		File file = DaemonProtocol.getDaemonFile();
+		file.getParentFile().mkdirs();
+		file.delete();
+		file.createNewFile();
+
+		// Somente o usuario pode ler o token
+		file.setReadable(false, false);
+		file.setWritable(false, false);
+		file.setReadable(true, true);
+		file.setWritable(true, true);
+
+		Properties properties = new Properties();
+		properties.setProperty(DaemonProtocol.PORT, String.valueOf(port));
+		properties.setProperty(DaemonProtocol.TOKEN, token);
+
+		OutputStream output = new FileOutputStream(file);
+
+		try {
+			properties.store(output, "gitflow daemon");
+		} finally {
+			output.close();
+		}
+	}
+
+
+	/**
+	 * Accept the clients until stop or the idle timeout
+	 */
+	public void serve() {
+		while (running) {
+			try {
+				final Socket socket = serverSocket.accept();
+				lastRequest = System.currentTimeMillis();
+
+				connections.execute(new Runnable() {
+					public void run() {
+						handle(socket);
+					}
+				});
+			} catch (SocketTimeoutException e) {
+				if (System.currentTimeMillis() - lastRequest > idleTimeout) {
+					log.info("No requests in the last " + idleTimeout / 60000 + " minutes, stopping");
+					stop();
+				}
+			} catch (IOException e) {
+				if (running) {
+					log.error("Could not accept connection: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Stop listening, close the repositories and delete the daemon file
+	 */
+	public void stop() {
+		running = false;
+
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			log.warn("Could not close the daemon socket: " + e.getMessage());
+		}
+
+		connections.shutdown();
+
+		synchronized (goalLock) {
+			for (Git git : repositories.values()) {
+				RepositoryPool.close(git);
+			}
+
+			repositories.clear();
+		}
+
+		deleteDaemonFile();
+	}
+
+
+	private void deleteDaemonFile() {
+		File file = DaemonProtocol.getDaemonFile();
+
+		try {
+			Properties properties = readProperties(file);
+
+			// Outro daemon pode ter sido iniciado depois deste
+			if (token.equals(properties.getProperty(DaemonProtocol.TOKEN))) {
+				file.delete();
+			}
+		} catch (IOException e) {
+			log.warn("Could not delete " + file.getAbsolutePath() + ": " + e.getMessage());
+		}
+	}
+
+
+	private static Properties readProperties(File file) throws IOException {
+		Properties properties 	= new Properties();
+		InputStream input 		= new FileInputStream(file);
+
+		try {
+			properties.load(input);
+		} finally {
+			input.close();
+		}
+
+		return properties;
+	}
+
+
+	private void handle(Socket socket) {
+		try {
+			BufferedReader reader 		= new BufferedReader(new InputStreamReader(socket.getInputStream(), DaemonProtocol.ENCODING));
+			PrintWriter writer 			= new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), DaemonProtocol.ENCODING));
+			Map<String, String> request = readRequest(reader);
+			SocketLog clientLog 		= new SocketLog(writer, Boolean.parseBoolean(request.get(DaemonProtocol.PROPERTY + "debug")));
+			int exitCode 				= 1;
+
+			if (!isAuthorized(request)) {
+				clientLog.error("Invalid token, read it from " + DaemonProtocol.getDaemonFile().getAbsolutePath());
+			} else if (DaemonProtocol.STOP.equals(request.get(DaemonProtocol.GOAL))) {
+				clientLog.info("Stopping gitflow daemon");
+				exitCode = 0;
+				stop();
+			} else {
+				exitCode = execute(request, clientLog);
+			}
+
+			writer.print(DaemonProtocol.EXIT + exitCode + "\n");
+			writer.flush();
+		} catch (SocketException e) {
+			log.warn("Client disconnected: " + e.getMessage());
+		} catch (Exception e) {
+			log.error("Could not handle request", e);
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {;}
+		}
+	}
+
+
+	private Map<String, String> readRequest(BufferedReader reader) throws IOException {
+		Map<String, String> request = new HashMap<String, String>();
+
+		if (!DaemonProtocol.HEADER.equals(reader.readLine())) {
+			return request;
+		}
+
+		for (String line = reader.readLine(); line != null && line.length() > 0; line = reader.readLine()) {
+			int separator = line.indexOf('=');
+
+			if (separator > 0) {
+				request.put(line.substring(0, separator), line.substring(separator + 1));
+			}
+		}
+
+		return request;
+	}
+
+
+	private boolean isAuthorized(Map<String, String> request) throws IOException {
+		String received = request.get(DaemonProtocol.TOKEN);
+
+		return received != null && MessageDigest.isEqual(token.getBytes(DaemonProtocol.ENCODING), received.getBytes(DaemonProtocol.ENCODING));
+	}
+
+
+	private int execute(Map<String, String> request, Log clientLog) {
+		String goalName = request.get(DaemonProtocol.GOAL);
+		long start 		= System.currentTimeMillis();
+		int exitCode 	= 1;
+
+		synchronized (goalLock) {
+			try {
+				GoalRegistry.Goal goal = goalName == null ? null : registry.find(goalName);
+
+				if (goal == null) {
+					throw new MojoExecutionException("Unknown goal " + goalName + ", the goals are " + registry.getGoals().keySet());
+				}
+
+				File basedir = new File(request.get(DaemonProtocol.BASEDIR)).getCanonicalFile();
+				log.info("gitflow:" + goal.getName() + " on " + basedir);
+
+				buildMojo(goal, basedir, request, clientLog).execute();
+				exitCode = 0;
+			} catch (Exception e) {
+				for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+					clientLog.error(cause.getMessage());
+				}
+			}
+		}
+
+		log.info("gitflow:" + goalName + " finished with " + exitCode + " in " + (System.currentTimeMillis() - start) + "ms");
+
+		return exitCode;
+	}
+
+
+	/**
+	 * Configure the mojo like maven does, the request properties are the -D properties off client
+	 */
+	private GitFlowMojo buildMojo(GoalRegistry.Goal goal, File basedir, Map<String, String> request, Log clientLog) throws Exception {
+		Map<String, String> properties = new HashMap<String, String>();
+
+		for (Map.Entry<String, String> entry : request.entrySet()) {
+			if (entry.getKey().startsWith(DaemonProtocol.PROPERTY)) {
+				properties.put(entry.getKey().substring(DaemonProtocol.PROPERTY.length()), entry.getValue());
+			}
+		}
+
+		GitFlowMojo mojo = goal.newMojo(basedir, properties, settings, clientLog);
+
+		if (mojo instanceof DefaultGitFlowMojo) {
+			DefaultGitFlow gitFlow = new DefaultGitFlow(new DefaultGitFlowPattern(), clientLog, basedir);
+
+			// O repositorio fica aberto entre os goals, o formato eh verificado antes do open com o parametro do goal
+			if (!repositories.containsKey(basedir)) {
+				PartialClone.prepareFormat(basedir, Boolean.TRUE.equals(mojo.getConvertPartialClone()), clientLog);
+			}
+
+			gitFlow.setGit(getGit(basedir));
+			((DefaultGitFlowMojo) mojo).setGitFlow(gitFlow);
+		}
+
+		return mojo;
+	}
+
+
+	/**
+	 * Returns the repository kept open for the directory, the pack files stay mapped between goals
+	 */
+	private Git getGit(File basedir) throws Exception {
+		Git git = repositories.get(basedir);
+
+		if (git != null && !git.getRepository().getDirectory().isDirectory()) {
+			RepositoryPool.close(git);
+			git = null;
+		}
+
+		if (git == null) {
+			git = RepositoryPool.open(basedir);
+			warm(git);
+			repositories.put(basedir, git);
+			log.info("Opened repository " + git.getRepository().getDirectory());
+		}
+
+		return git;
+	}
+
+
+	/**
+	 * Read the commit off HEAD, so the pack indexes are loaded before the first goal needs them
+	 */
+	private void warm(Git git) throws Exception {
+		ObjectId head = git.getRepository().resolve(Constants.HEAD);
+
+		if (head == null) {
+			return;
+		}
+
+		RevWalk walk = RepositoryPool.borrowWalk(git.getRepository());
+
+		try {
+			walk.parseCommit(head).getTree();
+		} finally {
+			RepositoryPool.giveBack(git.getRepository(), walk);
+		}
+	}
+}
@@ -0,0 +1,345 @@
+package com.codegik.gitflow.daemon;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.settings.Settings;
+import org.codehaus.mojo.versions.api.PomHelper;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.codegik.gitflow.core.GitFlowMojo;
+
+
+/**
+ * Goals off plugin read from the plugin descriptor (META-INF/maven/plugin.xml) generated by maven-plugin-plugin
+ * So the daemon and the goal multi accept the same goals and parameters that maven accepts, with the same defaults.
+ *
+ * @author Inacio G Klassmann
+ */
+public class GoalRegistry {
+	private static final String DESCRIPTOR 	= "META-INF/maven/plugin.xml";
+	private static final String PACKAGE 	= "com.codegik.gitflow.";
+	private static final Pattern PROPERTY 	= Pattern.compile("\\$\\{([^}]+)\\}");
+
+	private final Map<String, Goal> goals = new LinkedHashMap<String, Goal>();
+
+
+	public GoalRegistry() throws Exception {
+		Enumeration<URL> descriptors = GoalRegistry.class.getClassLoader().getResources(DESCRIPTOR);
+
+		while (descriptors.hasMoreElements() && goals.isEmpty()) {
+			load(descriptors.nextElement());
+		}
+
+		if (goals.isEmpty()) {
+			throw new MojoExecutionException("The descriptor " + DESCRIPTOR + " off gitflow plugin was not found");
+		}
+	}
+
+
+	private void load(URL descriptor) throws Exception {
+		InputStream input = descriptor.openStream();
+		Document document = null;
+
+		try {
+			document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(input);
+		} finally {
+			input.close();
+		}
+
+		NodeList mojos = document.getElementsByTagName("mojo");
+
+		for (int i = 0; i < mojos.getLength(); i++) {
+			Element mojo 			= (Element) mojos.item(i);
+			String implementation 	= getText(mojo, "implementation");
+
+			// Descritores de outros plugins no mesmo classloader sao ignorados
+			if (implementation == null || !implementation.startsWith(PACKAGE)) {
+				continue;
+			}
+
+			Goal goal = new Goal(getText(mojo, "goal"), implementation);
+			goal.loadParameters(mojo);
+			goals.put(goal.getName(), goal);
+		}
+	}
+
+
+	/**
+	 * Returns the goal or null if the plugin does not have it
+	 *
+	 * @param name - Name off goal, with or without prefix. Ex: start-release, gitflow:start-release
+	 * @return Goal
+	 */
+	public Goal find(String name) {
+		return goals.get(name.startsWith("gitflow:") ? name.substring("gitflow:".length()) : name);
+	}
+
+
+	public Map<String, Goal> getGoals() {
+		return Collections.unmodifiableMap(goals);
+	}
+
+
+	/**
+	 * Resolve the version off raw model like maven does: the version off parent when it is inherited and the
+	 * properties inside it. Ex: ${revision}. The -D properties win over the properties off pom
+	 */
+	static String resolveVersion(Model model, Map<String, String> properties) {
+		String version 	= PomHelper.getVersion(model);
+		Matcher matcher = version == null ? null : PROPERTY.matcher(version);
+
+		if (matcher == null || !matcher.find()) {
+			return version;
+		}
+
+		StringBuffer result = new StringBuffer();
+
+		do {
+			String name 	= matcher.group(1);
+			String value 	= properties.get(name);
+
+			if (value == null) {
+				value = model.getProperties().getProperty(name);
+			}
+
+			if (value == null && model.getParent() != null && ("project.parent.version".equals(name) || "parent.version".equals(name))) {
+				value = model.getParent().getVersion();
+			}
+
+			// A propriedade desconhecida fica como esta, o goal recusa a versao fora do pattern
+			matcher.appendReplacement(result, Matcher.quoteReplacement(value == null ? matcher.group() : value));
+		} while (matcher.find());
+
+		matcher.appendTail(result);
+
+		return result.toString();
+	}
+
+
+	private static String getText(Element parent, String childName) {
+		for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+			if (node instanceof Element && childName.equals(node.getNodeName())) {
+				return node.getTextContent().trim();
+			}
+		}
+
+		return null;
+	}
+
+
+	private static Element getChild(Element parent, String childName) {
+		for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+			if (node instanceof Element && childName.equals(node.getNodeName())) {
+				return (Element) node;
+			}
+		}
+
+		return null;
+	}
+
+
+	public static class Goal {
+		private final String name;
+		private final String implementation;
+		private final List<Parameter> parameters = new ArrayList<Parameter>();
+
+		public Goal(String name, String implementation) {
+			this.name 			= name;
+			this.implementation = implementation;
+		}
+
+		private void loadParameters(Element mojo) {
+			Element declarations 	= getChild(mojo, "parameters");
+			Element configuration 	= getChild(mojo, "configuration");
+
+			if (declarations == null || configuration == null) {
+				return;
+			}
+
+			for (Node node = declarations.getFirstChild(); node != null; node = node.getNextSibling()) {
+				if (!(node instanceof Element)) {
+					continue;
+				}
+
+				String field 	= getText((Element) node, "name");
+				Element config 	= getChild(configuration, field);
+
+				if (config == null) {
+					continue;
+				}
+
+				String expression 	= config.getTextContent().trim();
+				String defaultValue = config.hasAttribute("default-value") ? config.getAttribute("default-value") : null;
+
+				parameters.add(new Parameter(
+						field,
+						getText((Element) node, "type"),
+						expression.startsWith("${") && expression.endsWith("}") ? expression.substring(2, expression.length() - 1) : null,
+						defaultValue,
+						Boolean.parseBoolean(getText((Element) node, "required"))));
+			}
+		}
+
+		/**
+		 * Instantiate and configure the mojo like maven does, only the goals off gitflow branches are accepted
+		 * The parameters come from the properties or from their defaults.
+		 *
+		 * @param basedir - Directory off project, it must have a pom.xml
+		 * @param properties - The -D properties. Ex: version=1.4
+		 * @param settings - Settings off maven
+		 * @param log - Log off mojo
+		 * @return GitFlowMojo
+		 * @throws Exception
+		 */
+		public GitFlowMojo newMojo(File basedir, Map<String, String> properties, Settings settings, Log log) throws Exception {
+			Class<?> type 	= Class.forName(implementation, true, GoalRegistry.class.getClassLoader());
+			File pomFile 	= new File(basedir, "pom.xml");
+
+			if (!GitFlowMojo.class.isAssignableFrom(type)) {
+				throw new MojoExecutionException("The goal " + name + " can not be executed on a repository");
+			}
+
+			if (!pomFile.isFile()) {
+				throw new MojoExecutionException("There is no pom.xml in " + basedir);
+			}
+
+			GitFlowMojo mojo 		= (GitFlowMojo) type.getDeclaredConstructor().newInstance();
+			Model model 			= PomHelper.getRawModel(pomFile);
+			MavenProject project 	= new MavenProject(model);
+			project.setFile(pomFile);
+			project.setVersion(resolveVersion(model, properties));
+
+			mojo.setLog(log);
+			mojo.setProject(project);
+			mojo.setSettings(settings);
+
+			for (Parameter parameter : parameters) {
+				if (parameter.isComponent()) {
+					continue;
+				}
+
+				String value = parameter.getProperty() == null ? null : properties.get(parameter.getProperty());
+
+				if (value == null && parameter.getDefaultValue() != null && !parameter.getDefaultValue().contains("${")) {
+					value = parameter.getDefaultValue();
+				}
+
+				if (value == null) {
+					if (parameter.isRequired()) {
+						throw new MojoExecutionException("The parameter " + parameter.getProperty() + " is required by goal " + name);
+					}
+
+					continue;
+				}
+
+				setField(mojo, parameter.getField(), convert(value, parameter.getType(), basedir));
+			}
+
+			return mojo;
+		}
+
+
+		private Object convert(String value, String type, File basedir) {
+			if (Boolean.class.getName().equals(type) || "boolean".equals(type)) {
+				return Boolean.valueOf(value);
+			}
+
+			if (Integer.class.getName().equals(type) || "int".equals(type)) {
+				return Integer.valueOf(value);
+			}
+
+			if (File.class.getName().equals(type)) {
+				File file = new File(value);
+				return file.isAbsolute() ? file : new File(basedir, value);
+			}
+
+			return value;
+		}
+
+
+		private void setField(Object mojo, String field, Object value) throws Exception {
+			for (Class<?> type = mojo.getClass(); type != null; type = type.getSuperclass()) {
+				try {
+					Field declared = type.getDeclaredField(field);
+					declared.setAccessible(true);
+					declared.set(mojo, value);
+					return;
+				} catch (NoSuchFieldException e) {
+					continue;
+				}
+			}
+
+			throw new MojoExecutionException("Parameter " + field + " not found on " + mojo.getClass().getName());
+		}
+
+		public String getName() {
+			return name;
+		}
+		public String getImplementation() {
+			return implementation;
+		}
+		public List<Parameter> getParameters() {
+			return parameters;
+		}
+	}
+
+
+	public static class Parameter {
+		private final String field;
+		private final String type;
+		private final String property;
+		private final String defaultValue;
+		private final boolean required;
+
+		public Parameter(String field, String type, String property, String defaultValue, boolean required) {
+			this.field 			= field;
+			this.type 			= type;
+			this.property 		= property;
+			this.defaultValue 	= defaultValue;
+			this.required 		= required;
+		}
+
+		/**
+		 * Returns true for the parameters injected by maven from its own objects. Ex: ${project}, ${settings}
+		 */
+		public boolean isComponent() {
+			return property == null && defaultValue != null && defaultValue.startsWith("${");
+		}
+
+		public String getField() {
+			return field;
+		}
+		public String getType() {
+			return type;
+		}
+		public String getProperty() {
+			return property;
+		}
+		public String getDefaultValue() {
+			return defaultValue;
+		}
+		public boolean isRequired() {
+			return required;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.codegik.gitflow.daemon;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.apache.maven.plugin.logging.Log;
+
+
+/**
+ * Log that sends each message to the client off daemon, a message with many lines is sent as many LOG lines
+ *
+ * @author Inacio G Klassmann
+ */
+public class SocketLog implements Log {
+	private final PrintWriter writer;
+	private final boolean debug;
+
+
+	public SocketLog(PrintWriter writer, boolean debug) {
+		this.writer = writer;
+		this.debug 	= debug;
+	}
+
+
+	private synchronized void write(String level, CharSequence content, Throwable error) {
+		StringBuilder message = new StringBuilder();
+
+		if (content != null) {
+			message.append(content);
+		}
+
+		if (error != null) {
+			StringWriter trace = new StringWriter();
+			error.printStackTrace(new PrintWriter(trace));
+			message.append(message.length() > 0 ? "\n" : "").append(trace);
+		}
+
+		for (String line : message.toString().split("\r?\n")) {
+			writer.print(DaemonProtocol.LOG + level + " " + line + "\n");
+		}
+
+		writer.flush();
+	}
+
+
+	public boolean isDebugEnabled() {
+		return debug;
+	}
+
+
+	public void debug(CharSequence content) {
+		debug(content, null);
+	}
+
+
+	public void debug(CharSequence content, Throwable error) {
+		if (debug) {
+			write("DEBUG", content, error);
+		}
+	}
+
+
+	public void debug(Throwable error) {
+		debug(null, error);
+	}
+
+
+	public boolean isInfoEnabled() {
+		return true;
+	}
+
+
+	public void info(CharSequence content) {
+		write("INFO", content, null);
+	}
+
+
+	public void info(CharSequence content, Throwable error) {
+		write("INFO", content, error);
+	}
+
+
+	public void info(Throwable error) {
+		write("INFO", null, error);
+	}
+
+
+	public boolean isWarnEnabled() {
+		return true;
+	}
+
+
+	public void warn(CharSequence content) {
+		write("WARNING", content, null);
+	}
+
+
+	public void warn(CharSequence content, Throwable error) {
+		write("WARNING", content, error);
+	}
+
+
+	public void warn(Throwable error) {
+		write("WARNING", null, error);
+	}
+
+
+	public boolean isErrorEnabled() {
+		return true;
+	}
+
+
+	public void error(CharSequence content) {
+		write("ERROR", content, null);
+	}
+
+
+	public void error(CharSequence content, Throwable error) {
+		write("ERROR", content, error);
+	}
+
+
+	public void error(Throwable error) {
+		write("ERROR", null, error);
+	}
+}
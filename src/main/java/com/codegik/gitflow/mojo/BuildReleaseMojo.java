@@ -1,5 +1,7 @@
 package com.codegik.gitflow.mojo;
 
+import java.util.ArrayList;
+
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -47,17 +49,17 @@ public class BuildReleaseMojo extends DefaultGitFlowMojo {
 		mergeGitFlow.addIgnoringFiles(getGitFlow().getGitFlowPattern().getPomFileName());
 
 		getGitFlow().merge(mergeGitFlow);
-		compileProject();
+		compileProject(mergeGitFlow);
 
-		// Commit do merge
-		getGitFlow().commit("[GitFlow::build-release] Build release branch " + getVersion());
+		// Commit do merge, o merge ja atualizou o index
+		getGitFlow().commit("[GitFlow::build-release] Build release branch " + getVersion(), new ArrayList<String>());
 		getGitFlow().push();
 	}
 
 
 	@Override
-	public void rollback(Exception e) throws MojoExecutionException {
-		throw new MojoExecutionException("ERROR", e);
+	protected String getReleaseVersion() {
+		return getVersion();
 	}
 
 
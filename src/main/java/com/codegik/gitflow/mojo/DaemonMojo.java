@@ -0,0 +1,44 @@
+package com.codegik.gitflow.mojo;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.settings.Settings;
+
+import com.codegik.gitflow.daemon.DaemonProtocol;
+import com.codegik.gitflow.daemon.GitFlowDaemon;
+
+
+/**
+ * Start the gitflow daemon, it executes the goals sent by GitFlowClient without starting maven again
+ * The daemon runs until the goal stop is sent or no goal is sent during daemonIdleTimeout minutes
+ *
+ * @author Inacio G Klassmann
+ */
+@Mojo(name = "daemon", requiresProject = false, aggregator = true)
+public class DaemonMojo extends AbstractMojo {
+
+	@Parameter( defaultValue = "${settings}", readonly = true )
+	private Settings settings;
+
+	@Parameter( property = "daemonPort", defaultValue = "0" )
+	private Integer port;
+
+	@Parameter( property = "daemonIdleTimeout", defaultValue = "60" )
+	private Integer idleTimeout;
+
+
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		try {
+			GitFlowDaemon daemon 	= new GitFlowDaemon(getLog(), settings, idleTimeout * 60000L);
+			int localPort 			= daemon.start(port);
+
+			getLog().info("Gitflow daemon listening on 127.0.0.1:" + localPort + ", token written in " + DaemonProtocol.getDaemonFile().getAbsolutePath());
+			daemon.serve();
+		} catch (Exception e) {
+			throw new MojoExecutionException("ERROR", e);
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.codegik.gitflow.mojo;
 
+import java.util.Collections;
 import java.util.Map;
 
 import org.apache.maven.plugin.MojoExecutionException;
@@ -9,6 +10,7 @@ import org.eclipse.jgit.api.CheckoutCommand.Stage;
 import org.eclipse.jgit.lib.Ref;
 
 import com.codegik.gitflow.core.MergeGitFlow;
+import com.codegik.gitflow.core.RefUpdateRejectedException;
 import com.codegik.gitflow.core.impl.DefaultGitFlowMojo;
 
 
@@ -25,6 +27,8 @@ public class FinishDevelopmentMojo extends DefaultGitFlowMojo {
 
     @Parameter( property = "keepBranch", defaultValue = "true" )
     private Boolean keepBranch;
+
+    private MergeGitFlow mergeGitFlow;
     
 
 	@Override
@@ -40,26 +44,48 @@ public class FinishDevelopmentMojo extends DefaultGitFlowMojo {
 			throw new MojoExecutionException("The fullBranchName " + getBranchName() + " not found!");
 		}
 
-		MergeGitFlow mergeGitFlow = new MergeGitFlow();
+		mergeGitFlow = new MergeGitFlow();
 		mergeGitFlow.setBranchName(releaseBranch);
 		mergeGitFlow.setErrorMessage("finish-development -DfullBranchName=" + getBranchName());
 		mergeGitFlow.setTargetRef(ref);
 		mergeGitFlow.setIgnoringFilesStage(Stage.OURS);
 		mergeGitFlow.addIgnoringFiles(getGitFlow().getGitFlowPattern().getPomFileName());
 
-		getGitFlow().merge(mergeGitFlow);
-		compileProject();
-		getGitFlow().push();
+		if (step("merge-release")) {
+			getGitFlow().merge(mergeGitFlow);
+			compileProject(mergeGitFlow);
+			getGitFlow().push();
+		}
 
-		if (!keepBranch) {
+		if (!keepBranch && step("delete-branch")) {
 			getGitFlow().deleteRemoteBranch(getBranchName());
 		}
 	}
 
 
+	/**
+	 * Other finish-development pushed the release first, the merge is replayed on its tip and
+	 * the project is only compiled again when the merged tree changed
+	 */
+	@Override
+	protected boolean retryRejectedPush(RefUpdateRejectedException e) throws Exception {
+		String releaseRef = getGitFlow().getGitFlowPattern().getPrefixGitHeads() + mergeGitFlow.getBranchName();
+
+		if (!Collections.singletonList(releaseRef).equals(e.getRefs())) {
+			return false;
+		}
+
+		if (getGitFlow().replayMerge(mergeGitFlow)) {
+			compileProject(mergeGitFlow);
+		}
+
+		return true;
+	}
+
+
 	@Override
-	public void rollback(Exception e) throws MojoExecutionException {
-		throw new MojoExecutionException("ERROR", e);
+	protected String getReleaseVersion() throws Exception {
+		return getGitFlow().validateFullBranchName(getBranchName()).get("version");
 	}
 
 
@@ -1,13 +1,17 @@
 package com.codegik.gitflow.mojo;
 
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Future;
+
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.codehaus.mojo.versions.api.PomHelper;
 import org.eclipse.jgit.api.CheckoutCommand.Stage;
 import org.eclipse.jgit.lib.Ref;
-import org.eclipse.jgit.revwalk.RevCommit;
 
+import com.codegik.gitflow.command.CommandOutput;
 import com.codegik.gitflow.core.MergeGitFlow;
 import com.codegik.gitflow.core.impl.DefaultGitFlowMojo;
 
@@ -19,8 +23,6 @@ import com.codegik.gitflow.core.impl.DefaultGitFlowMojo;
  */
 @Mojo(name = "finish-hotfix", aggregator = true)
 public class FinishHotfixMojo extends DefaultGitFlowMojo {
-	private String pomVersion;
-	private RevCommit revertCommit;
 
 	@Parameter( property = "branchName", required = true )
     private String branchName;
@@ -42,74 +44,92 @@ public class FinishHotfixMojo extends DefaultGitFlowMojo {
 			throw new MojoExecutionException("The branch " + getBranchName() + " dosen't exists!");
 		}
 
-		Ref hotfixRef = getGitFlow().checkoutBranch(getBranchName());
-		pomVersion = PomHelper.getVersion(PomHelper.getRawModel(getProject().getFile()));
+		// O merge usa o branch local do hotfix, que pode estar atras do remoto
+		getGitFlow().syncLocalBranch(getBranchName());
+
+		String masterName = getGitFlow().getGitFlowPattern().getMasterName();
+
+		if (step("bump-version")) {
+			getGitFlow().checkoutBranch(getBranchName());
+			String pomVersion = PomHelper.getVersion(PomHelper.getRawModel(getProject().getFile()));
 
-		// Buscar a ultima tag do master e incrementa a versao pois pode existir uma release entregue anteriormente
-		Ref lastTag = getGitFlow().findLastTag();
-		if (lastTag != null) {
-			getLog().info("Finding the newest tag");
-			String lastTagVer = getGitFlow().getVersionFromTag(lastTag);
+			// Buscar a ultima tag do master e incrementa a versao pois pode existir uma release entregue anteriormente
+			Ref lastTag = getGitFlow().findLastTag();
+			if (lastTag != null) {
+				getLog().info("Finding the newest tag");
+				String lastTagVer = getGitFlow().getVersionFromTag(lastTag);
 
-			if (getGitFlow().whatIsTheBigger(pomVersion, lastTagVer) <= 0) {
-				getLog().info("Found newer " + lastTagVer);
+				if (getGitFlow().whatIsTheBigger(pomVersion, lastTagVer) <= 0) {
+					getLog().info("Found newer " + lastTagVer);
 
-				String newVersion = getGitFlow().increaseVersionBasedOnTag(lastTag);
-				updatePomVersion(newVersion);
-				compileProject();
+					String newVersion = getGitFlow().increaseVersionBasedOnTag(lastTag);
+					List<File> poms = updatePomVersion(newVersion);
+					compileProject();
 
-				revertCommit = getGitFlow().commit("[GitFlow::finish-hotfix] Bumped version number to " + newVersion);
-				getGitFlow().push();
+					getGitFlow().commit("[GitFlow::finish-hotfix] Bumped version number to " + newVersion, getGitFlow().getRepositoryPaths(poms));
+					getGitFlow().push();
+				}
 			}
 		}
 
-		// Checkout para o branch master para fazer o merge com o branch do hotfix
-		getGitFlow().checkoutBranch(getGitFlow().getGitFlowPattern().getMasterName());
-		getGitFlow().reset(getGitFlow().getGitFlowPattern().getOriginName() + getGitFlow().getGitFlowPattern().getGitSeparator() + getGitFlow().getGitFlowPattern().getMasterName());
-		getGitFlow().deleteLocalBranch(getBranchName());
+		if (step("merge-branches")) {
+			// Atualiza o master com o origin/master e faz o merge do hotfix sem checkout
+			Ref masterRef = getGitFlow().findBranch(masterName);
 
-		hotfixRef = getGitFlow().findBranch(getBranchName());
-		MergeGitFlow mergeGitFlow = new MergeGitFlow();
+			if (masterRef == null) {
+				throw new MojoExecutionException("The branch " + masterName + " dosen't exists!");
+			}
 
-		mergeGitFlow.setBranchName(getGitFlow().getGitFlowPattern().getMasterName());
-		mergeGitFlow.setErrorMessage("finish-hotfix -DbranchName=" + simpleName);
-		mergeGitFlow.setTargetRef(hotfixRef);
-		mergeGitFlow.setIgnoringFilesStage(Stage.THEIRS);
-		mergeGitFlow.addIgnoringFiles(getGitFlow().getGitFlowPattern().getPomFileName());
+			getGitFlow().resetBranch(masterName, masterRef.getName());
+			MergeGitFlow mergeGitFlow = buildMergeGitFlow(masterName, simpleName);
+			getGitFlow().merge(mergeGitFlow);
+
+			// Checkout para o master somente para compilar e criar a tag
+			getGitFlow().checkoutBranch(masterName);
+			Future<CommandOutput> build = compileProjectAsync(mergeGitFlow);
+
+			try {
+				// O merge do hotfix no develop eh feito sem checkout enquanto o master compila
+				getGitFlow().merge(buildMergeGitFlow(getGitFlow().getGitFlowPattern().getDevelopName(), simpleName));
+			} catch (Exception e) {
+				// Espera o build terminar para o rollback nao concorrer com ele
+				await(build);
+				throw e;
+			}
 
-		getGitFlow().merge(mergeGitFlow);
-		compileProject();
-		getGitFlow().push();
+			join(build);
+			getGitFlow().push();
+			getGitFlow().push(getGitFlow().getGitFlowPattern().getDevelopName());
+		}
 
-		pomVersion = PomHelper.getVersion(PomHelper.getRawModel(getProject().getFile()));
+		if (step("tag")) {
+			String pomVersion = PomHelper.getVersion(PomHelper.getRawModel(getProject().getFile()));
 
-		Ref tag = getGitFlow().tag(pomVersion, "[GitFlow::finish-hotfix] Create tag " + pomVersion);
-		getGitFlow().pushTag(tag);
-		getGitFlow().checkoutBranch(getGitFlow().getGitFlowPattern().getDevelopName());
-		getGitFlow().merge(mergeGitFlow);
-		getGitFlow().deleteRemoteBranch(getBranchName());
-		getGitFlow().push();
+			Ref tag = getGitFlow().tag(pomVersion, "[GitFlow::finish-hotfix] Create tag " + pomVersion);
+			getGitFlow().pushTag(tag);
+		}
+
+		if (step("delete-branch")) {
+			// O branch local do hotfix eh removido junto com o remoto
+			getGitFlow().deleteRemoteBranch(getBranchName());
+		}
 	}
 
 
-	@Override
-	public void rollback(Exception e) throws MojoExecutionException {
-		try {
-			getLog().error(e.getMessage());
-			getLog().info("Rolling back all changes");
-			getGitFlow().reset(getGitFlow().getGitFlowPattern().getMasterName());
-			getGitFlow().checkoutBranchForced(getGitFlow().getGitFlowPattern().getMasterName());
-
-			if (revertCommit != null) {
-				getGitFlow().revertCommit(revertCommit);
-				getGitFlow().push();
-			}
+	/**
+	 * Merge off local hotfix branch (synced with remote at the start) into the branch without checkout, the pom off hotfix wins
+	 */
+	private MergeGitFlow buildMergeGitFlow(String branchName, String simpleName) throws Exception {
+		MergeGitFlow mergeGitFlow = new MergeGitFlow();
 
-			if (pomVersion != null) {
-				getGitFlow().deleteTag(pomVersion);
-			}
-		} catch (Exception e1) {;}
-		throw new MojoExecutionException("ERROR", e);
+		mergeGitFlow.setBranchName(branchName);
+		mergeGitFlow.setErrorMessage("finish-hotfix -DbranchName=" + simpleName);
+		mergeGitFlow.setTargetRef(getGitFlow().getGit().getRepository().getRef(getBranchName()));
+		mergeGitFlow.setIgnoringFilesStage(Stage.THEIRS);
+		mergeGitFlow.addIgnoringFiles(getGitFlow().getGitFlowPattern().getPomFileName());
+		mergeGitFlow.setInCore(true);
+
+		return mergeGitFlow;
 	}
 
 
@@ -1,11 +1,14 @@
 package com.codegik.gitflow.mojo;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.codehaus.mojo.versions.api.PomHelper;
 import org.eclipse.jgit.lib.Ref;
-import org.eclipse.jgit.revwalk.RevCommit;
 
 import com.codegik.gitflow.core.MergeGitFlow;
 import com.codegik.gitflow.core.impl.DefaultGitFlowMojo;
@@ -20,8 +23,6 @@ import com.codegik.gitflow.core.impl.DefaultGitFlowMojo;
  */
 @Mojo(name = "finish-release", aggregator = true)
 public class FinishReleaseMojo extends DefaultGitFlowMojo {
-	private String pomVersion;
-	private RevCommit revertCommit;
 
     @Parameter( property = "version", required = true )
 	private String version;
@@ -36,7 +37,6 @@ public class FinishReleaseMojo extends DefaultGitFlowMojo {
 		}
 
 		// Verifica se a release esta ultrapassada
-		pomVersion 			= getProject().getVersion();
 		Ref lastTag 		= getGitFlow().findLastTag();
 		String lastTagVer 	= getGitFlow().getVersionFromTag(lastTag);
 
@@ -44,70 +44,72 @@ public class FinishReleaseMojo extends DefaultGitFlowMojo {
 			throw new MojoExecutionException("The release " + getVersion() + " is older than " + lastTagVer + ", please start new release!");
 		}
 
-		// Buscar a ultima tag da release e incrementa a versao pois pode existir uma tag nova de hotfix
-		lastTag = getGitFlow().findLastTag(getVersion());
-		if (lastTag != null) {
-			getLog().info("Finding the newest tag");
-			lastTagVer = getGitFlow().getVersionFromTag(lastTag);
+		if (step("bump-version")) {
+			// Buscar a ultima tag da release e incrementa a versao pois pode existir uma tag nova de hotfix
+			String pomVersion = getProject().getVersion();
+
+			lastTag = getGitFlow().findLastTag(getVersion());
+			if (lastTag != null) {
+				getLog().info("Finding the newest tag");
+				lastTagVer = getGitFlow().getVersionFromTag(lastTag);
 
-			if (getGitFlow().whatIsTheBigger(pomVersion, lastTagVer) <= 0) {
-				getLog().info("Found newer " + lastTagVer);
+				if (getGitFlow().whatIsTheBigger(pomVersion, lastTagVer) <= 0) {
+					getLog().info("Found newer " + lastTagVer);
 
-				String newVersion = getGitFlow().increaseVersionBasedOnTag(lastTag);
-				updatePomVersion(newVersion);
-				compileProject();
+					String newVersion = getGitFlow().increaseVersionBasedOnTag(lastTag);
+					List<File> poms = updatePomVersion(newVersion);
+					compileProject();
 
-				revertCommit = getGitFlow().commit("[GitFlow::finish-release] Bumped version number to " + newVersion);
-				getGitFlow().push();
-				pomVersion = PomHelper.getVersion(PomHelper.getRawModel(getProject().getFile()));
+					getGitFlow().commit("[GitFlow::finish-release] Bumped version number to " + newVersion, getGitFlow().getRepositoryPaths(poms));
+					getGitFlow().push();
+				}
 			}
 		}
 
-		// Realiza o merge da release para o develop
-		MergeGitFlow mergeGitFlow = new MergeGitFlow();
-		mergeGitFlow.setBranchName(getGitFlow().getGitFlowPattern().getDevelopName());
-		mergeGitFlow.setErrorMessage("finish-release -Dversion=" + getVersion());
-		mergeGitFlow.setTargetRef(releaseRef);
-		mergeGitFlow.setIgnoringFilesStage(getGitFlow().defineStageForMerge(pomVersion, getVersion()));
-		mergeGitFlow.addIgnoringFiles(getGitFlow().getGitFlowPattern().getPomFileName());
+		if (step("merge-develop")) {
+			// Realiza o merge da release para o develop
+			String pomVersion = PomHelper.getVersion(PomHelper.getRawModel(getProject().getFile()));
+
+			MergeGitFlow mergeGitFlow = new MergeGitFlow();
+			mergeGitFlow.setBranchName(getGitFlow().getGitFlowPattern().getDevelopName());
+			mergeGitFlow.setErrorMessage("finish-release -Dversion=" + getVersion());
+			mergeGitFlow.setTargetRef(releaseRef);
+			mergeGitFlow.setIgnoringFilesStage(getGitFlow().defineStageForMerge(pomVersion, getVersion()));
+			mergeGitFlow.addIgnoringFiles(getGitFlow().getGitFlowPattern().getPomFileName());
+
+			getGitFlow().merge(mergeGitFlow);
+			compileProject(mergeGitFlow);
 
-		getGitFlow().merge(mergeGitFlow);
-		compileProject();
+			// Recarrega a versao do pom pois provavelmente deve ter alterada depois do merge
+			pomVersion = PomHelper.getVersion(PomHelper.getRawModel(getProject().getFile()));
 
-		// Recarrega a versao do pom pois provavelmente deve ter alterada depois do merge
-		pomVersion = PomHelper.getVersion(PomHelper.getRawModel(getProject().getFile()));
+			// Cria a tag da release com base no develop
+			Ref tag = getGitFlow().tag(pomVersion, "[GitFlow::finish-release] Create tag " + pomVersion);
+			// O merge ja atualizou o index, somente o index eh commitado
+			getGitFlow().commit("[GitFlow::finish-release] Finish release branch " + getVersion(), new ArrayList<String>());
+			getGitFlow().push();
+			getGitFlow().pushTag(tag);
 
-		// Cria a tag da release com base no develop
-		Ref tag = getGitFlow().tag(pomVersion, "[GitFlow::finish-release] Create tag " + pomVersion);
-		getGitFlow().commit("[GitFlow::finish-release] Finish release branch " + getVersion());
-		getGitFlow().push();
-		getGitFlow().pushTag(tag);
+			putStepValue("tag", getGitFlow().getVersionFromTag(tag));
+		}
 
-		// Volta para o branch da release
-		getGitFlow().checkoutBranch(getGitFlow().getSimpleBranchName(releaseRef));
+		if (step("bump-release")) {
+			// Volta para o branch da release
+			getGitFlow().checkoutBranch(getGitFlow().getSimpleBranchName(releaseRef));
 
-		// Incrementa a versao baseado na tag
-		String newVersion = getGitFlow().increaseVersionBasedOnTag(tag);
-		updatePomVersion(newVersion);
+			// Incrementa a versao baseado na tag
+			String newVersion = getGitFlow().increaseVersionBasedOnTag(getStepValue("tag"));
+			List<File> poms = updatePomVersion(newVersion);
 
-		getGitFlow().commit("[GitFlow::finish-release] Bumped version number to " + newVersion);
-		getGitFlow().push();
+			getGitFlow().commit("[GitFlow::finish-release] Bumped version number to " + newVersion, getGitFlow().getRepositoryPaths(poms));
+			getGitFlow().push();
+		}
 	}
 
 
 	@Override
-	public void rollback(Exception e) throws MojoExecutionException {
-		try {
-			getLog().error(e.getMessage());
-			getLog().info("Rolling back all changes");
-
-			if (revertCommit != null) {
-				getGitFlow().revertCommit(revertCommit);
-				getGitFlow().push();
-			}
-
-		} catch (Exception e1) {;}
-		throw new MojoExecutionException("ERROR", e);
+	protected String getReleaseVersion() {
+		return getVersion();
 	}
 
 
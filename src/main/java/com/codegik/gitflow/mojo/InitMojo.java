@@ -1,5 +1,8 @@
 package com.codegik.gitflow.mojo;
 
+import java.io.File;
+import java.util.List;
+
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -53,20 +56,15 @@ public class InitMojo extends DefaultGitFlowMojo {
 
 		getGitFlow().createBranch(getGitFlow().getGitFlowPattern().getDevelopName());
 
-		updatePomVersion(newVersion);
+		List<File> poms = updatePomVersion(newVersion);
 		compileProject();
 
 		Ref tag = getGitFlow().tag(newVersion, "[GitFlow::init] Create tag " + newVersion);
-		getGitFlow().commit("[GitFlow::init] Bumped version number to " + newVersion);
+		getGitFlow().commit("[GitFlow::init] Bumped version number to " + newVersion, getGitFlow().getRepositoryPaths(poms));
 		getGitFlow().push();
 		getGitFlow().pushTag(tag);
 
 		getLog().info("Now your repository is ready to start a release");
 	}
 
-
-	@Override
-	public void rollback(Exception e) throws MojoExecutionException {
-		throw new MojoExecutionException("ERROR", e);
-	}
 }
@@ -0,0 +1,354 @@
+package com.codegik.gitflow.mojo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.settings.Settings;
+
+import com.codegik.gitflow.command.CommandExecutor;
+import com.codegik.gitflow.command.MvnCommandExecutor;
+import com.codegik.gitflow.core.GitFlowMojo;
+import com.codegik.gitflow.core.PrefixedLog;
+import com.codegik.gitflow.core.Tracer;
+import com.codegik.gitflow.daemon.GoalRegistry;
+
+
+/**
+ * Run a gitflow goal on many repositories at same time. Ex: finish-release on all services off a release train
+ * The repositories come from -Drepositories (comma separated) or from -Dmanifest (one path per line, # for comments).
+ * The other -D properties are passed to the goal off each repository. Ex: -Dversion=1.4
+ * The output off builds is not printed, it is written into .git/gitflow/build.log off each repository.
+ *
+ * @author Inacio G Klassmann
+ */
+@Mojo(name = "multi", requiresProject = false, aggregator = true)
+public class MultiRepositoryMojo extends AbstractMojo {
+	private static final List<String> OWN_PROPERTIES = Arrays.asList("goal", "repositories", "manifest", "threads", "failFast", "multiReport", "trace", "traceFile");
+
+	@Parameter( defaultValue = "${settings}", readonly = true )
+	private Settings settings;
+
+	@Parameter( defaultValue = "${session}", readonly = true )
+	private MavenSession session;
+
+	@Parameter( property = "goal", required = true )
+	private String goal;
+
+	@Parameter( property = "repositories" )
+	private String repositories;
+
+	@Parameter( property = "manifest" )
+	private File manifest;
+
+	@Parameter( property = "threads", defaultValue = "4" )
+	private Integer threads;
+
+	@Parameter( property = "failFast", defaultValue = "false" )
+	private Boolean failFast;
+
+	@Parameter( property = "multiReport" )
+	private File multiReport;
+
+	@Parameter( property = "trace", defaultValue = "false" )
+	private Boolean trace;
+
+	@Parameter( property = "traceFile" )
+	private File traceFile;
+
+
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		List<File> directories = loadRepositories();
+
+		if (directories.isEmpty()) {
+			throw new MojoExecutionException("Please inform the repositories with -Drepositories=<dir>,<dir> or -Dmanifest=<file>");
+		}
+
+		GoalRegistry.Goal gitFlowGoal = null;
+
+		try {
+			gitFlowGoal = new GoalRegistry().find(goal);
+		} catch (Exception e) {
+			throw new MojoExecutionException("ERROR", e);
+		}
+
+		if (gitFlowGoal == null || "multi".equals(gitFlowGoal.getName())) {
+			throw new MojoExecutionException("Unknown goal " + goal);
+		}
+
+		if (Boolean.TRUE.equals(trace)) {
+			Tracer.enable();
+		}
+
+		getLog().info("Running gitflow:" + gitFlowGoal.getName() + " on " + directories.size() + " repositories with " + threads + " threads" + (Boolean.TRUE.equals(failFast) ? ", fail fast" : ""));
+
+		List<Result> results = run(gitFlowGoal, directories);
+
+		report(results);
+
+		int failed = 0;
+
+		for (Result result : results) {
+			failed += Result.FAILED.equals(result.status) ? 1 : 0;
+		}
+
+		if (failed > 0) {
+			throw new MojoFailureException(failed + " of " + results.size() + " repositories failed, see the report above");
+		}
+	}
+
+
+	private List<File> loadRepositories() throws MojoExecutionException {
+		List<File> directories 	= new ArrayList<File>();
+		File root 				= session == null ? new File(System.getProperty("user.dir")) : new File(session.getExecutionRootDirectory());
+
+		if (repositories != null) {
+			for (String path : repositories.split(",")) {
+				if (path.trim().length() > 0) {
+					directories.add(resolve(root, path.trim()));
+				}
+			}
+		}
+
+		if (manifest != null) {
+			try {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), "UTF-8"));
+
+				try {
+					for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+						if (line.trim().length() > 0 && !line.trim().startsWith("#")) {
+							directories.add(resolve(manifest.getAbsoluteFile().getParentFile(), line.trim()));
+						}
+					}
+				} finally {
+					reader.close();
+				}
+			} catch (IOException e) {
+				throw new MojoExecutionException("Could not read the manifest " + manifest, e);
+			}
+		}
+
+		return directories;
+	}
+
+
+	private File resolve(File root, String path) {
+		File file = new File(path);
+		return file.isAbsolute() ? file : new File(root, path);
+	}
+
+
+	private List<Result> run(final GoalRegistry.Goal gitFlowGoal, List<File> directories) {
+		final Map<String, String> properties 	= getGoalProperties();
+		final AtomicBoolean aborted 			= new AtomicBoolean();
+		ExecutorService executor 				= Executors.newFixedThreadPool(Math.max(1, threads));
+		CompletionService<Result> completion 	= new ExecutorCompletionService<Result>(executor);
+		List<Result> results 					= new ArrayList<Result>();
+
+		try {
+			for (final File directory : directories) {
+				final Result result = new Result(directory);
+				results.add(result);
+
+				completion.submit(new Callable<Result>() {
+					public Result call() {
+						if (aborted.get()) {
+							result.finish(Result.SKIPPED, "Skipped after a failure");
+							return result;
+						}
+
+						runGoal(gitFlowGoal, properties, result);
+
+						if (Result.FAILED.equals(result.status) && Boolean.TRUE.equals(failFast)) {
+							aborted.set(true);
+						}
+
+						return result;
+					}
+				});
+			}
+
+			for (int i = 1; i <= directories.size(); i++) {
+				Result result = completion.take().get();
+				getLog().info("[" + i + "/" + directories.size() + "] " + result.name + " " + result.status + " in " + result.duration + "ms");
+			}
+		} catch (Exception e) {
+			getLog().error("Interrupted waiting the repositories: " + e.getMessage());
+		} finally {
+			executor.shutdown();
+		}
+
+		return results;
+	}
+
+
+	private Map<String, String> getGoalProperties() {
+		Map<String, String> properties = new HashMap<String, String>();
+
+		if (session != null) {
+			for (String name : session.getUserProperties().stringPropertyNames()) {
+				if (!OWN_PROPERTIES.contains(name)) {
+					properties.put(name, session.getUserProperties().getProperty(name));
+				}
+			}
+		}
+
+		return properties;
+	}
+
+
+	private void runGoal(GoalRegistry.Goal gitFlowGoal, Map<String, String> properties, Result result) {
+		Log log 			= new PrefixedLog(getLog(), result.name);
+		Tracer.Span span 	= Tracer.start("multi", result.name);
+		long start 			= System.currentTimeMillis();
+
+		try {
+			GitFlowMojo mojo 		= gitFlowGoal.newMojo(result.directory, properties, settings, log);
+			CommandExecutor mvn 	= new MvnCommandExecutor(log);
+
+			mvn.setWorkingDirectory(result.directory);
+			mvn.setQuiet(true);
+			mvn.setSpillFile(mojo.getBuildLog() == null ? new File(result.directory, ".git/gitflow/build.log") : mojo.getBuildLog());
+			mojo.setMvnExecutor(mvn);
+
+			mojo.execute();
+			result.finish(Result.OK, null, System.currentTimeMillis() - start);
+		} catch (Exception e) {
+			span.fail(e);
+			result.finish(Result.FAILED, getMessage(e), System.currentTimeMillis() - start);
+		} finally {
+			span.end();
+		}
+	}
+
+
+	private String getMessage(Throwable error) {
+		String message = error.getMessage();
+
+		// O rollback dos goals encapsula a causa em "ERROR"
+		for (Throwable cause = error.getCause(); cause != null && cause.getMessage() != null; cause = cause.getCause()) {
+			message = cause.getMessage();
+		}
+
+		return message == null ? error.getClass().getSimpleName() : message.trim().replace('\n', ' ');
+	}
+
+
+	private void report(List<Result> results) {
+		getLog().info(String.format("%-30s %-8s %10s  %s", "repository", "status", "ms", "message"));
+
+		for (Result result : results) {
+			getLog().info(String.format("%-30s %-8s %10d  %s", result.name, result.status, result.duration, result.message == null ? "" : result.message));
+		}
+
+		if (multiReport != null) {
+			try {
+				writeReport(results);
+				getLog().info("Report written to " + multiReport.getAbsolutePath());
+			} catch (IOException e) {
+				getLog().warn("Could not write the report " + multiReport.getAbsolutePath() + ": " + e.getMessage());
+			}
+		}
+
+		if (Boolean.TRUE.equals(trace)) {
+			writeTrace();
+		}
+	}
+
+
+	private void writeReport(List<Result> results) throws IOException {
+		if (multiReport.getAbsoluteFile().getParentFile() != null) {
+			multiReport.getAbsoluteFile().getParentFile().mkdirs();
+		}
+
+		Writer writer = new OutputStreamWriter(new FileOutputStream(multiReport), "UTF-8");
+
+		try {
+			writer.write("[\n");
+
+			for (int i = 0; i < results.size(); i++) {
+				Result result = results.get(i);
+				writer.write(i > 0 ? ",\n" : "");
+				writer.write("  {\"repository\": " + quote(result.directory.getAbsolutePath()) + ", \"goal\": " + quote(goal) + ", \"status\": " + quote(result.status) + ", \"durationMillis\": " + result.duration);
+				writer.write(", \"message\": " + (result.message == null ? "null" : quote(result.message)) + "}");
+			}
+
+			writer.write("\n]\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+
+	private String quote(String value) {
+		return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+
+	private void writeTrace() {
+		File file = traceFile == null ? new File("target/gitflow-trace.json") : traceFile;
+		Tracer.disable();
+
+		for (String line : Tracer.buildSummary()) {
+			getLog().info(line);
+		}
+
+		try {
+			Tracer.writeChromeTrace(file);
+			getLog().info("Trace written to " + file.getAbsolutePath());
+		} catch (IOException e) {
+			getLog().warn("Could not write the trace " + file.getAbsolutePath() + ": " + e.getMessage());
+		}
+	}
+
+
+	private static class Result {
+		private static final String OK 		= "OK";
+		private static final String FAILED 	= "FAILED";
+		private static final String SKIPPED = "SKIPPED";
+
+		private final File directory;
+		private final String name;
+		private volatile String status = SKIPPED;
+		private volatile String message;
+		private volatile long duration;
+
+		private Result(File directory) {
+			this.directory 	= directory;
+			this.name 		= directory.getName();
+		}
+
+		private void finish(String status, String message) {
+			finish(status, message, 0);
+		}
+
+		private void finish(String status, String message, long duration) {
+			this.status 	= status;
+			this.message 	= message;
+			this.duration 	= duration;
+		}
+	}
+}
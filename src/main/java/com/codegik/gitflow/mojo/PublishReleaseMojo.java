@@ -34,14 +34,13 @@ public class PublishReleaseMojo extends DefaultGitFlowMojo {
 			throw new MojoExecutionException("The release " + getVersion() + " was never finished, please execute finish-release goal before!");
 		}
 
-		// Realiza o merge da tag para o master (using theirs)
-		getGitFlow().checkoutBranch(getGitFlow().getGitFlowPattern().getMasterName());
-
+		// Realiza o merge da tag para o master (using theirs) sem checkout
 		MergeGitFlow mergeGitFlow = new MergeGitFlow();
 		mergeGitFlow.setBranchName(getGitFlow().getGitFlowPattern().getMasterName());
 		mergeGitFlow.setErrorMessage("publish-release -Dversion=" + getVersion());
 		mergeGitFlow.setTargetRef(tagRef);
 		mergeGitFlow.addIgnoringFiles(getGitFlow().getGitFlowPattern().getPomFileName());
+		mergeGitFlow.setInCore(true);
 
 		/**
 		 * TODO
@@ -49,14 +48,19 @@ public class PublishReleaseMojo extends DefaultGitFlowMojo {
 		 * durante o periodo de homologacao de uma release?
 		 * Solucao: replicar as correcoes de hotfix para a versao que esta em homologacao
 		 */
-		getGitFlow().merge(mergeGitFlow, MergeStrategy.THEIRS);
-		compileProject();
-		getGitFlow().push();
-
-		// Remove os branches de feature, bugfix e o branch da release
-		getGitFlow().deleteRemoteBranch(getVersion(), DefaultBranchType.feature);
-		getGitFlow().deleteRemoteBranch(getVersion(), DefaultBranchType.bugfix);
-		getGitFlow().deleteRemoteBranch(getGitFlow().buildReleaseBranchName(getVersion()));
+		if (step("merge-master")) {
+			getGitFlow().merge(mergeGitFlow, MergeStrategy.THEIRS);
+			getGitFlow().checkoutBranch(getGitFlow().getGitFlowPattern().getMasterName());
+			compileProject(mergeGitFlow);
+			getGitFlow().push();
+		}
+
+		if (step("delete-branches")) {
+			// Remove os branches de feature, bugfix e o branch da release
+			getGitFlow().deleteRemoteBranch(getVersion(), DefaultBranchType.feature);
+			getGitFlow().deleteRemoteBranch(getVersion(), DefaultBranchType.bugfix);
+			getGitFlow().deleteRemoteBranch(getGitFlow().buildReleaseBranchName(getVersion()));
+		}
 	}
 
 
@@ -66,14 +70,8 @@ public class PublishReleaseMojo extends DefaultGitFlowMojo {
 
 
 	@Override
-	public void rollback(Exception e) throws MojoExecutionException {
-		try {
-			getLog().error(e.getMessage());
-			getLog().info("Rolling back all changes");
-			getGitFlow().reset(getGitFlow().getGitFlowPattern().getMasterName());
-			getGitFlow().checkoutBranchForced(getGitFlow().getGitFlowPattern().getMasterName());
-		} catch (Exception e1) {;}
-		throw new MojoExecutionException("ERROR", e);
+	protected String getReleaseVersion() {
+		return getVersion();
 	}
 
 
@@ -42,15 +42,8 @@ public class StartDevelopmentMojo extends DefaultGitFlowMojo {
 
 
 	@Override
-	public void rollback(Exception e) throws MojoExecutionException {
-		try {
-			getLog().error(e.getMessage());
-			getLog().info("Rolling back all changes");
-			getGitFlow().reset(getGitFlow().getGitFlowPattern().getDevelopName());
-			getGitFlow().checkoutBranchForced(getGitFlow().getGitFlowPattern().getDevelopName());
-			getGitFlow().deleteLocalBranch(getFullBranchName());
-		} catch (Exception e1) {;}
-		throw new MojoExecutionException("ERROR", e);
+	protected String getReleaseVersion() throws Exception {
+		return getGitFlow().validateFullBranchName(getFullBranchName()).get("version");
 	}
 
 
@@ -1,5 +1,8 @@
 package com.codegik.gitflow.mojo;
 
+import java.io.File;
+import java.util.List;
+
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -39,10 +42,10 @@ public class StartHotfixMojo extends DefaultGitFlowMojo {
 			newVersion = getGitFlow().increaseVersionBasedOnTag(getProject().getVersion());
 		}
 
-		updatePomVersion(newVersion);
+		List<File> poms = updatePomVersion(newVersion);
 		compileProject();
 
-		getGitFlow().commit("[GitFlow::start-hotfix] Create hotfix branch " + getBranchName() + ": Bumped version number to " + newVersion);
+		getGitFlow().commit("[GitFlow::start-hotfix] Create hotfix branch " + getBranchName() + ": Bumped version number to " + newVersion, getGitFlow().getRepositoryPaths(poms));
 		getGitFlow().pushBranch(getBranchName());
 	}
 
@@ -58,19 +61,6 @@ public class StartHotfixMojo extends DefaultGitFlowMojo {
 	}
 
 
-	@Override
-	public void rollback(Exception e) throws MojoExecutionException {
-		try {
-			getLog().error(e.getMessage());
-			getLog().info("Rollbacking all changes");
-			getGitFlow().reset(getGitFlow().getGitFlowPattern().getMasterName());
-			getGitFlow().checkoutBranchForced(getGitFlow().getGitFlowPattern().getMasterName());
-			getGitFlow().deleteRemoteBranch(getBranchName());
-		} catch (Exception e1) {;}
-		throw new MojoExecutionException("ERROR", e);
-	}
-
-
 	public String getBranchName() {
 		return branchName;
 	}
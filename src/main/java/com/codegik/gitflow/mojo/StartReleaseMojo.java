@@ -1,5 +1,8 @@
 package com.codegik.gitflow.mojo;
 
+import java.io.File;
+import java.util.List;
+
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -31,10 +34,10 @@ public class StartReleaseMojo extends DefaultGitFlowMojo {
 
 		String newVersion = getVersion();
 
-		updatePomVersion(newVersion + getGitFlow().getGitFlowPattern().getSuffixRelease());
+		List<File> poms = updatePomVersion(newVersion + getGitFlow().getGitFlowPattern().getSuffixRelease());
 		compileProject();
 
-		getGitFlow().commit("[GitFlow::start-release] Create release branch " + getBranchName() + ": Bumped version number to " + newVersion + getGitFlow().getGitFlowPattern().getSuffixRelease());
+		getGitFlow().commit("[GitFlow::start-release] Create release branch " + getBranchName() + ": Bumped version number to " + newVersion + getGitFlow().getGitFlowPattern().getSuffixRelease(), getGitFlow().getRepositoryPaths(poms));
 		getGitFlow().pushBranch(getBranchName());
 	}
 
@@ -63,15 +66,8 @@ public class StartReleaseMojo extends DefaultGitFlowMojo {
 
 
 	@Override
-	public void rollback(Exception e) throws MojoExecutionException {
-		try {
-			getLog().error(e.getMessage());
-			getLog().info("Rolling back all changes");
-			getGitFlow().reset(getGitFlow().getGitFlowPattern().getDevelopName());
-			getGitFlow().checkoutBranchForced(getGitFlow().getGitFlowPattern().getDevelopName());
-			getGitFlow().deleteLocalBranch(getBranchName());
-		} catch (Exception e1) {;}
-		throw new MojoExecutionException("ERROR", e);
+	protected String getReleaseVersion() {
+		return getVersion();
 	}
 
 
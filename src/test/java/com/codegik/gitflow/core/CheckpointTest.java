@@ -0,0 +1,182 @@
+package com.codegik.gitflow.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class CheckpointTest {
+	private static final String SIGNATURE = "version=1.4;gitTransport=jgit;";
+
+	private File root;
+	private Git git;
+	private ObjectId master;
+
+
+	@Before
+	public void setUp() throws Exception {
+		root = File.createTempFile("gitflow", "");
+		root.delete();
+
+		git 	= Git.init().setDirectory(root).call();
+		master 	= git.commit().setMessage("init").call();
+		git.branchCreate().setName("develop").call();
+	}
+
+
+	@After
+	public void tearDown() throws Exception {
+		git.close();
+		FileUtils.delete(root, FileUtils.RECURSIVE);
+	}
+
+
+	@Test
+	public void loadWhatWasSaved() throws Exception {
+		Map<String, String> pushes = new LinkedHashMap<String, String>();
+		pushes.put("refs/heads/release/1.4", "refs/heads/release/1.4:refs/heads/release/1.4");
+		pushes.put("refs/heads/develop", "refs/heads/develop:refs/heads/develop");
+		pushes.put("refs/tags/1.4.0", "refs/tags/1.4.0:refs/tags/1.4.0");
+
+		Checkpoint checkpoint = buildCheckpoint();
+		checkpoint.setPushes(pushes, true);
+		checkpoint.save();
+
+		Checkpoint loaded = newCheckpoint();
+
+		assertTrue(loaded.load());
+		assertEquals(SIGNATURE, loaded.getSignature());
+		assertEquals("master", loaded.getStartBranch());
+		assertEquals("develop", loaded.getBranch());
+		assertEquals(Arrays.asList("bump-version", "merge-develop"), loaded.getSteps());
+		assertEquals("1.4.1", loaded.getValue("tag"));
+		assertTrue(loaded.isSetUpstream());
+
+		// A ordem de insercao eh mantida, nao a ordem das chaves do Properties
+		assertEquals(Arrays.asList("refs/heads/release/1.4", "refs/heads/develop", "refs/tags/1.4.0"), new ArrayList<String>(loaded.getStartRefs().keySet()));
+		assertEquals(ObjectId.zeroId(), loaded.getStartRefs().get("refs/heads/release/1.4"));
+		assertEquals(master, loaded.getStartRefs().get("refs/heads/develop"));
+		assertEquals(Arrays.asList("refs/heads/release/1.4", "refs/heads/develop"), new ArrayList<String>(loaded.getRefs().keySet()));
+		assertEquals(pushes, loaded.getPushes());
+		assertEquals(new ArrayList<String>(pushes.keySet()), new ArrayList<String>(loaded.getPushes().keySet()));
+	}
+
+
+	@Test
+	public void replacePushes() throws Exception {
+		Checkpoint checkpoint = buildCheckpoint();
+		checkpoint.setPushes(Collections.singletonMap("refs/heads/develop", "refs/heads/develop:refs/heads/develop"), true);
+		checkpoint.setPushes(Collections.singletonMap("refs/heads/master", "refs/heads/master:refs/heads/master"), false);
+		checkpoint.save();
+
+		Checkpoint loaded = newCheckpoint();
+		loaded.load();
+
+		assertEquals(Collections.singletonMap("refs/heads/master", "refs/heads/master:refs/heads/master"), loaded.getPushes());
+		assertFalse(loaded.isSetUpstream());
+	}
+
+
+	@Test
+	public void restorePushBatch() throws Exception {
+		PushBatch pushBatch = new PushBatch();
+		pushBatch.add("refs/heads/release/1.4", "refs/heads/release/1.4:refs/heads/release/1.4", true);
+		pushBatch.add("refs/heads/develop", "refs/heads/develop:refs/heads/develop", false);
+
+		Checkpoint checkpoint = buildCheckpoint();
+		checkpoint.setPushes(pushBatch.getUpdates(), pushBatch.isSetUpstream());
+		checkpoint.save();
+
+		Checkpoint loaded 	= newCheckpoint();
+		PushBatch restored 	= new PushBatch();
+		loaded.load();
+		loaded.validate(SIGNATURE, "master", git.getRepository());
+		loaded.restorePushes(restored);
+
+		assertEquals(new ArrayList<String>(pushBatch.getRefSpecs()), new ArrayList<String>(restored.getRefSpecs()));
+		assertTrue(restored.isSetUpstream());
+	}
+
+
+	@Test
+	public void refuseOtherSignature() throws Exception {
+		buildCheckpoint().save();
+
+		Checkpoint loaded = newCheckpoint();
+		loaded.load();
+
+		assertRefused(loaded, "version=1.5;gitTransport=jgit;", "master", "was saved with other parameters");
+		assertRefused(loaded, SIGNATURE, "develop", "was saved on branch master");
+	}
+
+
+	@Test
+	public void refuseMovedStartRef() throws Exception {
+		buildCheckpoint().save();
+
+		// Outro commit no develop depois do rollback
+		git.checkout().setName("develop").call();
+		git.commit().setMessage("other").call();
+		git.checkout().setName("master").call();
+
+		Checkpoint loaded = newCheckpoint();
+		loaded.load();
+
+		assertRefused(loaded, SIGNATURE, "master", "The ref refs/heads/develop was changed after the checkpoint");
+	}
+
+
+	private Checkpoint buildCheckpoint() throws Exception {
+		ObjectId commit 		= git.commit().setMessage("step").call();
+		Checkpoint checkpoint 	= newCheckpoint();
+
+		// O develop volta para o master, como depois do rollback
+		git.branchCreate().setName("develop").setForce(true).setStartPoint(master.name()).call();
+
+		checkpoint.setSignature(SIGNATURE);
+		checkpoint.setStartBranch("master");
+		checkpoint.putStartRef("refs/heads/release/1.4", ObjectId.zeroId());
+		checkpoint.putStartRef("refs/heads/develop", master);
+		checkpoint.putStartRef("refs/tags/1.4.0", ObjectId.zeroId());
+		checkpoint.putStartRef("refs/heads/develop", commit);
+		checkpoint.putRef("refs/heads/release/1.4", commit);
+		checkpoint.putRef("refs/heads/develop", commit);
+		checkpoint.addStep("bump-version");
+		checkpoint.addStep("merge-develop");
+		checkpoint.setBranch("develop");
+		checkpoint.putValue("tag", "1.4.1");
+
+		return checkpoint;
+	}
+
+
+	private Checkpoint newCheckpoint() {
+		return new Checkpoint(new File(git.getRepository().getDirectory(), "gitflow"), "finish-release");
+	}
+
+
+	private void assertRefused(Checkpoint checkpoint, String signature, String branch, String message) throws Exception {
+		try {
+			checkpoint.validate(signature, branch, git.getRepository());
+			fail("The checkpoint must be refused: " + message);
+		} catch (MojoExecutionException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(message));
+		}
+	}
+}
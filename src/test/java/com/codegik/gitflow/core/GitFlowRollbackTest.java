@@ -0,0 +1,170 @@
+package com.codegik.gitflow.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.util.FileUtils;
+import org.eclipse.jgit.util.IO;
+import org.eclipse.jgit.util.RawParseUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codegik.gitflow.core.impl.DefaultGitFlow;
+import com.codegik.gitflow.core.impl.DefaultGitFlowPattern;
+
+
+public class GitFlowRollbackTest {
+	private File root;
+	private File work;
+	private File origin;
+	private ObjectId master;
+	private ObjectId develop;
+	private DefaultGitFlow gitFlow;
+
+
+	@Before
+	public void setUp() throws Exception {
+		root 	= File.createTempFile("gitflow", "");
+		work 	= new File(root, "work");
+		origin 	= new File(root, "origin.git");
+
+		root.delete();
+		Git.init().setBare(true).setDirectory(origin).call().close();
+
+		Git git = Git.init().setDirectory(work).call();
+
+		try {
+			StoredConfig config = git.getRepository().getConfig();
+			config.setString("remote", "origin", "url", "file://" + origin.getAbsolutePath());
+			config.setString("remote", "origin", "fetch", "+refs/heads/*:refs/remotes/origin/*");
+			config.save();
+
+			write("a.txt", "master");
+			git.add().addFilepattern(".").call();
+			master = git.commit().setMessage("init").call();
+			git.branchCreate().setName("develop").call();
+
+			git.checkout().setName("develop").call();
+			write("a.txt", "develop");
+			develop = git.commit().setAll(true).setMessage("develop").call();
+			git.checkout().setName("master").call();
+
+			git.push().setRefSpecs(new RefSpec("refs/heads/master:refs/heads/master"), new RefSpec("refs/heads/develop:refs/heads/develop")).call();
+			git.fetch().call();
+		} finally {
+			git.close();
+		}
+
+		gitFlow = new DefaultGitFlow(new DefaultGitFlowPattern(), new SystemStreamLog(), work);
+		gitFlow.validateCleanWorkingTree();
+		gitFlow.startJournal();
+		gitFlow.loadRemoteSnapshot();
+		gitFlow.startPushBatch();
+	}
+
+
+	@After
+	public void tearDown() throws Exception {
+		gitFlow.close();
+		FileUtils.delete(root, FileUtils.RECURSIVE);
+	}
+
+
+	@Test
+	public void rollbackAfterLocalCommitAndQueuedPush() throws Exception {
+		gitFlow.checkoutBranch("develop");
+		write("a.txt", "changed by goal");
+		gitFlow.commit("goal commit");
+		gitFlow.createBranch("release/1.4");
+		gitFlow.tag("1.4.0", "goal tag");
+		gitFlow.pushBranch("release/1.4");
+		gitFlow.push("develop");
+
+		assertEquals(2, gitFlow.getPushBatch().getRefSpecs().size());
+
+		// O passo falha antes do flush, como no catch de GitFlowMojo.execute
+		gitFlow.discardPushBatch();
+		gitFlow.rollback();
+
+		assertLocalRestored();
+		assertEquals(develop, remoteId("refs/heads/develop"));
+		assertNull(remoteId("refs/heads/release/1.4"));
+	}
+
+
+	@Test
+	public void rollbackAfterFlushedPush() throws Exception {
+		gitFlow.checkoutBranch("develop");
+		write("a.txt", "changed by goal");
+		gitFlow.commit("goal commit");
+		gitFlow.createBranch("release/1.4");
+		gitFlow.pushBranch("release/1.4");
+		gitFlow.push("develop");
+		gitFlow.flushPushBatch();
+
+		ObjectId pushed = gitFlow.getGit().getRepository().resolve("refs/heads/develop");
+		assertEquals(pushed, remoteId("refs/heads/develop"));
+		assertEquals(pushed, remoteId("refs/heads/release/1.4"));
+
+		// O passo seguinte falha com o working tree alterado
+		write("a.txt", "not committed");
+		gitFlow.rollback();
+
+		assertLocalRestored();
+		assertEquals(develop, remoteId("refs/heads/develop"));
+		assertNull(remoteId("refs/heads/release/1.4"));
+		assertEquals(master, remoteId("refs/heads/master"));
+	}
+
+
+	private void assertLocalRestored() throws Exception {
+		Git git = gitFlow.getGit();
+
+		assertEquals("master", git.getRepository().getBranch());
+		assertEquals(Constants.R_HEADS + "master", git.getRepository().getRef(Constants.HEAD).getTarget().getName());
+		assertEquals(master, git.getRepository().resolve("refs/heads/master"));
+		assertEquals(develop, git.getRepository().resolve("refs/heads/develop"));
+		assertNull(git.getRepository().resolve("refs/heads/release/1.4"));
+		assertNull(git.getRepository().resolve("refs/tags/1.4.0"));
+		assertEquals("master", read("a.txt"));
+		assertTrue(git.status().call().isClean());
+	}
+
+
+	private ObjectId remoteId(String refName) throws Exception {
+		Git git = Git.open(origin);
+
+		try {
+			return git.getRepository().resolve(refName);
+		} finally {
+			git.close();
+		}
+	}
+
+
+	private void write(String path, String content) throws Exception {
+		FileWriter writer = new FileWriter(new File(work, path));
+
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+
+	private String read(String path) throws Exception {
+		return RawParseUtils.decode(IO.readFully(new File(work, path)));
+	}
+}
@@ -0,0 +1,61 @@
+package com.codegik.gitflow.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+
+public class PathSuffixMatcherTest {
+	private PathSuffixMatcher matcher = new PathSuffixMatcher(Arrays.asList("pom.xml", "src/main/resources/version.properties"));
+
+
+	@Test
+	public void matchExactPath() {
+		assertTrue(matcher.matches("pom.xml"));
+		assertTrue(matcher.matches("src/main/resources/version.properties"));
+	}
+
+
+	@Test
+	public void matchNestedPath() {
+		assertTrue(matcher.matches("module/pom.xml"));
+		assertTrue(matcher.matches("parent/module/pom.xml"));
+		assertTrue(matcher.matches("module/src/main/resources/version.properties"));
+	}
+
+
+	@Test
+	public void matchWholeSegmentsOnly() {
+		// Diferente do String.contains usado antes, o nome do arquivo deve ser igual ao segmento
+		assertFalse(matcher.matches("mypom.xml"));
+		assertFalse(matcher.matches("module/mypom.xml"));
+		assertFalse(matcher.matches("pom.xml.template"));
+		assertFalse(matcher.matches("pom.xml/readme.txt"));
+		assertFalse(matcher.matches("main/resources/version.properties"));
+		assertFalse(matcher.matches("src/test/resources/version.properties"));
+		assertFalse(matcher.matches("version.properties"));
+	}
+
+
+	@Test
+	public void matchNothingWithoutPatterns() {
+		PathSuffixMatcher empty = new PathSuffixMatcher(Collections.<String>emptyList());
+
+		assertFalse(empty.matches("pom.xml"));
+		assertFalse(empty.matches(""));
+	}
+
+
+	@Test
+	public void ignoreSlashesAroundPattern() {
+		PathSuffixMatcher slashes = new PathSuffixMatcher(Arrays.asList("/module/pom.xml/"));
+
+		assertTrue(slashes.matches("module/pom.xml"));
+		assertTrue(slashes.matches("parent/module/pom.xml"));
+		assertFalse(slashes.matches("pom.xml"));
+	}
+}
@@ -0,0 +1,96 @@
+package com.codegik.gitflow.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+public class VersionTest {
+
+
+	@Test
+	public void parseNumericVersions() {
+		assertEquals("1.4.3", Version.parse("1.4.3").toString());
+		assertEquals("1.4", Version.parse("1.4").toString());
+		assertEquals("7", Version.parse("7").toString());
+		assertEquals("1.4.3.1", Version.parse("1.4.3.1").toString());
+		assertEquals("10.0.200", Version.parse("010.0.200").toString());
+		assertEquals(3, Version.parse("1.4.3").size());
+		assertEquals(4, Version.parse("1.4.3").get(1));
+	}
+
+
+	@Test
+	public void parseRefusesNotNumericVersions() {
+		assertNull(Version.parse(null));
+		assertNull(Version.parse(""));
+		assertNull(Version.parse("1.4.3-SNAPSHOT"));
+		assertNull(Version.parse("1..3"));
+		assertNull(Version.parse(".1.4"));
+		assertNull(Version.parse("1.4."));
+		assertNull(Version.parse("v1.4"));
+		assertNull(Version.parse("1.99999999999"));
+	}
+
+
+	@Test
+	public void compareNumerically() {
+		assertTrue(Version.parse("1.4.10").compareTo(Version.parse("1.4.9")) > 0);
+		assertTrue(Version.parse("1.4.9").compareTo(Version.parse("1.10.0")) < 0);
+		assertTrue(Version.parse("2.0.0").compareTo(Version.parse("1.99.99")) > 0);
+		assertEquals(0, Version.parse("1.4.3").compareTo(Version.parse("1.4.3")));
+	}
+
+
+	@Test
+	public void compareMissingComponentsAsZero() {
+		assertEquals(0, Version.parse("1.4").compareTo(Version.parse("1.4.0")));
+		assertTrue(Version.parse("1.4").compareTo(Version.parse("1.4.1")) < 0);
+	}
+
+
+	@Test
+	public void packOnlySmallVersions() {
+		assertTrue(Version.parse("1.4.3.2").getPacked() >= 0);
+		assertTrue(Version.parse("32767.0.0").getPacked() >= 0);
+		assertEquals(-1L, Version.parse("32768.0.0").getPacked());
+		assertEquals(-1L, Version.parse("1.4.3.2.1").getPacked());
+	}
+
+
+	@Test
+	public void compareNotPackedVersions() {
+		// Componente maior que 32767 e mais de 4 componentes usam a comparacao por componente
+		assertTrue(Version.parse("1.40000.0").compareTo(Version.parse("1.39999.9")) > 0);
+		assertTrue(Version.parse("1.4.32768").compareTo(Version.parse("1.4.3")) > 0);
+		assertTrue(Version.parse("1.4.3.2.1").compareTo(Version.parse("1.4.3.2")) > 0);
+		assertTrue(Version.parse("1.4.3.2.1").compareTo(Version.parse("1.4.3.3")) < 0);
+		assertEquals(0, Version.parse("1.4.3.2.0").compareTo(Version.parse("1.4.3.2")));
+		assertEquals(0, Version.parse("40000.1").compareTo(Version.parse("40000.1.0")));
+	}
+
+
+	@Test
+	public void incrementLastComponent() {
+		assertEquals("1.4.4", Version.parse("1.4.3").increment().toString());
+		assertEquals("1.4.10", Version.parse("1.4.9").increment().toString());
+		assertEquals("1.5", Version.parse("1.4").increment().toString());
+		assertEquals("1.4.32768", Version.parse("1.4.32767").increment().toString());
+	}
+
+
+	@Test
+	public void incrementComponentResetsTheNextOnes() {
+		assertEquals("1.5.0", Version.parse("1.4.3").increment(1).toString());
+		assertEquals("2.0.0", Version.parse("1.4.3").increment(0).toString());
+	}
+
+
+	@Test
+	public void truncate() {
+		assertEquals("1.4", Version.parse("1.4.3").truncate(2).toString());
+		assertEquals("1.4.3", Version.parse("1.4.3").truncate(5).toString());
+	}
+}
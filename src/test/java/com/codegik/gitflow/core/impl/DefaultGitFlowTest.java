@@ -0,0 +1,66 @@
+package com.codegik.gitflow.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.eclipse.jgit.api.CheckoutCommand.Stage;
+import org.junit.Test;
+
+
+public class DefaultGitFlowTest {
+	private DefaultGitFlow gitFlow = new DefaultGitFlow(new DefaultGitFlowPattern(), new SystemStreamLog());
+
+
+	@Test
+	public void increaseVersion() throws Exception {
+		assertEquals("1.4.4", gitFlow.increaseVersion("1.4.3"));
+		assertEquals("1.4.10", gitFlow.increaseVersion("1.4.9"));
+	}
+
+
+	@Test
+	public void increaseVersionRefusesVersionsOutOfPattern() throws Exception {
+		for (String version : new String[] { "1.4", "7", "1.4.3.1", "1.4.3-SNAPSHOT" }) {
+			try {
+				gitFlow.increaseVersion(version);
+				fail("The version " + version + " must be refused");
+			} catch (MojoExecutionException e) {
+				assertTrue(e.getMessage().contains("does not match with pattern"));
+			}
+		}
+	}
+
+
+	@Test
+	public void whatIsTheBigger() throws Exception {
+		assertTrue(gitFlow.whatIsTheBigger("1.4.10", "1.4.9") > 0);
+		assertTrue(gitFlow.whatIsTheBigger("1.4.3", "2.0.0") < 0);
+		assertEquals(0, gitFlow.whatIsTheBigger("1.4.3", "1.4.3").intValue());
+	}
+
+
+	@Test(expected = MojoExecutionException.class)
+	public void whatIsTheBiggerRefusesVersionsOutOfPattern() throws Exception {
+		gitFlow.whatIsTheBigger("1.4", "1.4.0");
+	}
+
+
+	@Test
+	public void isReleaseSmallerThanCurrentVersion() throws Exception {
+		assertTrue(gitFlow.isReleaseSmallerThanCurrentVersion("1.4", "1.5.0"));
+		assertFalse(gitFlow.isReleaseSmallerThanCurrentVersion("1.4", "1.4.3"));
+		assertFalse(gitFlow.isReleaseSmallerThanCurrentVersion("1.5", "1.4.3"));
+		assertEquals(Stage.OURS, gitFlow.defineStageForMerge("1.5.0", "1.4"));
+		assertEquals(Stage.THEIRS, gitFlow.defineStageForMerge("1.4.3", "1.4"));
+	}
+
+
+	@Test(expected = MojoExecutionException.class)
+	public void isReleaseSmallerThanCurrentVersionRefusesReleaseOutOfPattern() throws Exception {
+		gitFlow.isReleaseSmallerThanCurrentVersion("1.4.0", "1.5.0");
+	}
+}
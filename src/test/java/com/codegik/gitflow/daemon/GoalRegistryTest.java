@@ -0,0 +1,64 @@
+package com.codegik.gitflow.daemon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.junit.Test;
+
+
+public class GoalRegistryTest {
+	private Map<String, String> properties = new HashMap<String, String>();
+
+
+	@Test
+	public void resolveExplicitVersion() {
+		assertEquals("1.4.3", GoalRegistry.resolveVersion(buildModel("1.4.3", null), properties));
+		assertNull(GoalRegistry.resolveVersion(buildModel(null, null), properties));
+	}
+
+
+	@Test
+	public void resolveVersionInheritedFromParent() {
+		assertEquals("1.4.3", GoalRegistry.resolveVersion(buildModel(null, "1.4.3"), properties));
+		assertEquals("1.4.3", GoalRegistry.resolveVersion(buildModel("${project.parent.version}", "1.4.3"), properties));
+	}
+
+
+	@Test
+	public void resolveVersionProperties() {
+		Model model = buildModel("${revision}${changelist}", null);
+		model.getProperties().setProperty("revision", "1.4.3");
+		model.getProperties().setProperty("changelist", "");
+
+		assertEquals("1.4.3", GoalRegistry.resolveVersion(model, properties));
+
+		// As propriedades -D ganham das propriedades do pom
+		properties.put("revision", "1.4.4");
+		assertEquals("1.4.4", GoalRegistry.resolveVersion(model, properties));
+	}
+
+
+	@Test
+	public void keepUnknownProperties() {
+		assertEquals("${unknown}", GoalRegistry.resolveVersion(buildModel("${unknown}", null), properties));
+	}
+
+
+	private Model buildModel(String version, String parentVersion) {
+		Model model = new Model();
+		model.setVersion(version);
+
+		if (parentVersion != null) {
+			Parent parent = new Parent();
+			parent.setVersion(parentVersion);
+			model.setParent(parent);
+		}
+
+		return model;
+	}
+}